@@ -3,6 +3,11 @@ package nl.rabobank.statementprocessor;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
+/**
+ * Serves the validation endpoints, or with the batch profile (--spring.profiles.active=batch) validates the statement
+ * files in a directory without starting a web server, see FileDropRunner
+ */
+
 @SpringBootApplication
 public class StatementProcessorApplication {
 
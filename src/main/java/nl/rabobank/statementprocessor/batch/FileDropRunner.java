@@ -0,0 +1,81 @@
+package nl.rabobank.statementprocessor.batch;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.rabobank.statementprocessor.services.FileDropService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+
+/**
+ * Runner of the batch profile, which validates the statement files in a directory instead of serving HTTP requests
+ * The pending files are validated at startup, after which the application exits, unless watching is enabled: then the
+ * directory is scanned again whenever a file appears in it, until the application is stopped
+ * A file is picked up as soon as it appears, so it should be moved into the directory once it is complete
+ */
+
+@Slf4j
+@Component
+@Profile("batch")
+public class FileDropRunner implements CommandLineRunner {
+
+    private final FileDropService fileDropService;
+    private final Path directory;
+    private final Path reportDirectory;
+    private final boolean watch;
+
+    @Autowired
+    public FileDropRunner(final FileDropService fileDropService,
+                          @Value("${statement.file-drop.directory}") final String directory,
+                          @Value("${statement.file-drop.report-directory}") final String reportDirectory,
+                          @Value("${statement.file-drop.watch:false}") final boolean watch) {
+        this.fileDropService = fileDropService;
+        this.directory = Paths.get(directory).toAbsolutePath();
+        this.reportDirectory = Paths.get(reportDirectory).toAbsolutePath();
+        this.watch = watch;
+    }
+
+    @Override
+    public void run(final String... args) throws IOException, InterruptedException {
+        if (!Files.isDirectory(directory)) {
+            throw new IllegalStateException("Statement directory " + directory + " does not exist");
+        }
+        if (!watch) {
+            validatePendingFiles();
+            return;
+        }
+        // Registered before the first scan, so that a file that appears during the scan is not missed
+        try (WatchService watchService = directory.getFileSystem().newWatchService()) {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE);
+            log.info("Watching {} for statement files", directory);
+            validatePendingFiles();
+            while (true) {
+                WatchKey key = watchService.take();
+                // The events themselves are not needed, the scan finds every file without a report
+                key.pollEvents();
+                validatePendingFiles();
+                if (!key.reset()) {
+                    log.error("Statement directory {} can no longer be watched", directory);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void validatePendingFiles() throws IOException, InterruptedException {
+        List<Path> files = fileDropService.findPendingFiles(directory, reportDirectory);
+        if (!files.isEmpty()) {
+            fileDropService.validateFiles(files, reportDirectory);
+        }
+    }
+}
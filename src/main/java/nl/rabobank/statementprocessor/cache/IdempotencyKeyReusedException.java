@@ -0,0 +1,15 @@
+package nl.rabobank.statementprocessor.cache;
+
+/**
+ * Exception that is thrown when an Idempotency-Key is sent again with another request body, the cached result belongs
+ * to the first body and answering the second with it would hide that this body was never validated
+ */
+
+public class IdempotencyKeyReusedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public IdempotencyKeyReusedException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,245 @@
+package nl.rabobank.statementprocessor.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import nl.rabobank.statementprocessor.util.Murmur3;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of rendered validation results, so that a statement that is uploaded again is answered without parsing or
+ * validating it again
+ * A result is found by the SHA-256 digest of the request body, or by the Idempotency-Key header of the request
+ * A result stored under an Idempotency-Key keeps the SHA-256 digest of its body, and is only returned for a request
+ * with the same body, so a reused or guessed key does not return the result of another statement
+ * Memory is bounded by the total number of bytes of the cached results, and every result expires after the TTL
+ * Since the TTL starts when a result is stored, the oldest result is both the first to expire and the one evicted when
+ * the cache is full, so entries are kept in insertion order and both are removed from the head
+ * Metrics: statement.cache.requests (tagged hit or miss), statement.cache.evictions (tagged size or expired),
+ * statement.cache.size (bytes) and statement.cache.entries
+ * All methods are thread-safe
+ */
+
+public class ValidationResultCache {
+
+    // Rough heap usage of an entry besides the bytes of the result and body digest: key, entry, map node and headers
+    static final int ENTRY_OVERHEAD = 128;
+    // Results larger than this fraction of the maximum size are not cached, so one result cannot flush the cache
+    private static final int MAX_ENTRY_FRACTION = 4;
+
+    private static final long IDEMPOTENCY_KEY_SEED = 0x5EEDL;
+    private static final String BODY_DIGEST_ALGORITHM = "SHA-256";
+
+    private final long maxBytes;
+    private final long ttlMillis;
+    private final Clock clock;
+    private final Map<Key, Entry> entries = new LinkedHashMap<>();
+    private long bytes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter sizeEvictions;
+    private final Counter expiredEvictions;
+
+    public ValidationResultCache(final long maxBytes, final Duration ttl, final MeterRegistry registry) {
+        this(maxBytes, ttl, registry, Clock.systemUTC());
+    }
+
+    ValidationResultCache(final long maxBytes, final Duration ttl, final MeterRegistry registry, final Clock clock) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Maximum size must be positive");
+        }
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("TTL must be positive");
+        }
+        this.maxBytes = maxBytes;
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+        this.hits = requestCounter(registry, "hit");
+        this.misses = requestCounter(registry, "miss");
+        this.sizeEvictions = evictionCounter(registry, "size");
+        this.expiredEvictions = evictionCounter(registry, "expired");
+        Gauge.builder("statement.cache.size", this, ValidationResultCache::size)
+                .description("Number of bytes of the cached validation results")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("statement.cache.entries", this, ValidationResultCache::entryCount)
+                .description("Number of cached validation results")
+                .register(registry);
+    }
+
+    /**
+     * Key of the result of a request body, a scope separates requests whose bodies are identical but which are
+     * parsed or validated differently
+     * The key is the first 128 bits of the SHA-256 digest, as a client that finds another body with the same key gets
+     * the result of that body. Murmur3 would be faster, but its collisions can be found whatever the seed
+     */
+    public static Key bodyKey(final String scope, final byte[] body) {
+        ByteBuffer digest = ByteBuffer.wrap(newBodyDigest().digest(body));
+        return new Key(scope, digest.getLong(), digest.getLong());
+    }
+
+    // Key of the result of a request with an Idempotency-Key header, Murmur3 suffices as the result is only returned for
+    // a body with the digest it was stored with
+    public static Key idempotencyKey(final String scope, final String idempotencyKey) {
+        long[] hash = Murmur3.hash128(idempotencyKey.getBytes(StandardCharsets.UTF_8), IDEMPOTENCY_KEY_SEED);
+        return new Key(scope, hash[0], hash[1]);
+    }
+
+    // Digest of a request body that is stored with the result of an Idempotency-Key, see get(Key, BodyDigest)
+    public static MessageDigest newBodyDigest() {
+        try {
+            return MessageDigest.getInstance(BODY_DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("Every JVM supports " + BODY_DIGEST_ALGORITHM, exception);
+        }
+    }
+
+    /**
+     * Looks the result up
+     * @return the rendered result, or null if it is not cached or has expired
+     */
+    public byte[] get(final Key key) {
+        Entry entry = getEntry(key);
+        return entry != null ? entry.getResult() : null;
+    }
+
+    /**
+     * Looks the result of a request with an Idempotency-Key up
+     * The digest of the body is only asked for when a result is cached, and outside the lock, as it may read the body
+     * @return the rendered result, or null if it is not cached or has expired
+     * @throws IdempotencyKeyReusedException if the result was stored for a body with another digest
+     */
+    public byte[] get(final Key key, final BodyDigest bodyDigest) throws IOException {
+        Entry entry = getEntry(key);
+        if (entry == null) {
+            return null;
+        }
+        if (!MessageDigest.isEqual(entry.getBodyDigest(), bodyDigest.digest())) {
+            throw new IdempotencyKeyReusedException("Idempotency-Key was used before for another request body");
+        }
+        return entry.getResult();
+    }
+
+    /**
+     * Stores the rendered result, evicting the oldest results until it fits
+     * The array is kept as-is, so it must not be changed afterwards
+     */
+    public void put(final Key key, final byte[] result) {
+        put(key, result, null);
+    }
+
+    // Stores the rendered result of a request with an Idempotency-Key, with the digest of the body it was validated for
+    public synchronized void put(final Key key, final byte[] result, final byte[] bodyDigest) {
+        Entry entry = new Entry(result, bodyDigest, clock.millis() + ttlMillis);
+        long entrySize = entrySize(entry);
+        if (entrySize > maxBytes / MAX_ENTRY_FRACTION) {
+            return;
+        }
+        removeExpired(clock.millis());
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            bytes -= entrySize(previous);
+        }
+        Iterator<Entry> oldest = entries.values().iterator();
+        while (bytes + entrySize > maxBytes && oldest.hasNext()) {
+            bytes -= entrySize(oldest.next());
+            oldest.remove();
+            sizeEvictions.increment();
+        }
+        entries.put(key, entry);
+        bytes += entrySize;
+    }
+
+    public synchronized long size() {
+        return bytes;
+    }
+
+    public synchronized int entryCount() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    private synchronized Entry getEntry(final Key key) {
+        removeExpired(clock.millis());
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry;
+    }
+
+    // Entries are in insertion order and share the TTL, so the expired ones are at the head
+    private void removeExpired(final long now) {
+        Iterator<Entry> oldest = entries.values().iterator();
+        while (oldest.hasNext()) {
+            Entry entry = oldest.next();
+            if (entry.getExpiresAt() > now) {
+                break;
+            }
+            bytes -= entrySize(entry);
+            oldest.remove();
+            expiredEvictions.increment();
+        }
+    }
+
+    private static long entrySize(final Entry entry) {
+        int bodyDigestLength = entry.getBodyDigest() != null ? entry.getBodyDigest().length : 0;
+        return entry.getResult().length + bodyDigestLength + ENTRY_OVERHEAD;
+    }
+
+    private static Counter requestCounter(final MeterRegistry registry, final String result) {
+        return Counter.builder("statement.cache.requests")
+                .description("Number of validation result cache lookups per result")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static Counter evictionCounter(final MeterRegistry registry, final String cause) {
+        return Counter.builder("statement.cache.evictions")
+                .description("Number of validation results removed from the cache per cause")
+                .tag("cause", cause)
+                .register(registry);
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static final class Key {
+        private final String scope;
+        private final long high;
+        private final long low;
+    }
+
+    // Computes the digest of a request body, which may mean reading the rest of the body
+    @FunctionalInterface
+    public interface BodyDigest {
+        byte[] digest() throws IOException;
+    }
+
+    @Data
+    @AllArgsConstructor
+    private static final class Entry {
+        private final byte[] result;
+        // Null for a result that is stored under a body key
+        private final byte[] bodyDigest;
+        private final long expiresAt;
+    }
+}
@@ -0,0 +1,265 @@
+package nl.rabobank.statementprocessor.codec;
+
+import nl.rabobank.statementprocessor.model.ColumnarStatement;
+import nl.rabobank.statementprocessor.model.Record;
+import nl.rabobank.statementprocessor.model.Statement;
+import nl.rabobank.statementprocessor.parsers.StatementParseException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class that encodes statements in a compact binary format, and decodes that format into a ColumnarStatement
+ * All numbers are big-endian and fixed-width, and the records are stored column by column, so that every column is
+ * decoded by a single bulk copy instead of number by number:
+ * - header: the magic "STMT", the version, the number of records and the number of distinct account numbers (4 bytes
+ *   each)
+ * - dictionary: every account number as a 2-byte length (-1 for none) followed by its UTF-8 bytes
+ * - columns: the transaction references, start balances, mutations and end balances (8 bytes per record each), then
+ *   the index of the account number of every record in the dictionary (4 bytes per record)
+ * - descriptions: every description as a 4-byte length (-1 for none) followed by its UTF-8 bytes
+ * Descriptions are neither validated nor part of the response, so decoding stops after the columns
+ * A file is decoded by memory-mapping it, so the columns are copied from the page cache into the arrays without
+ * passing through a stream
+ * Input that is not a valid binary statement results in a StatementParseException
+ */
+
+public final class BinaryStatementCodec {
+
+    public static final int MAGIC = 0x53544D54;
+    public static final int VERSION = 1;
+
+    private static final int NONE = -1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_RECORDS = Integer.MAX_VALUE - 8;
+    private static final int RECORD_SIZE = 4 * Long.BYTES + Integer.BYTES;
+
+    private BinaryStatementCodec() {
+    }
+
+    // Writes the statement to the output, which is flushed but not closed
+    public static void encode(final Statement statement, final OutputStream output) throws IOException {
+        List<Record> records = statement.getRecords();
+        ColumnarStatement columns = ColumnarStatement.of(statement);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output, BUFFER_SIZE));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(columns.size());
+        out.writeInt(columns.getAccountCount());
+        for (int accountId = 0; accountId < columns.getAccountCount(); accountId++) {
+            byte[] accountNumber = utf8(columns.getAccountNumberOfId(accountId));
+            if (accountNumber != null && accountNumber.length > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("Account number of " + accountNumber.length + " bytes is too long");
+            }
+            out.writeShort(accountNumber == null ? NONE : accountNumber.length);
+            if (accountNumber != null) {
+                out.write(accountNumber);
+            }
+        }
+        for (int index = 0; index < columns.size(); index++) {
+            out.writeLong(columns.getTransactionReference(index));
+        }
+        for (int index = 0; index < columns.size(); index++) {
+            out.writeLong(columns.getStartBalance(index));
+        }
+        for (int index = 0; index < columns.size(); index++) {
+            out.writeLong(columns.getMutation(index));
+        }
+        for (int index = 0; index < columns.size(); index++) {
+            out.writeLong(columns.getEndBalance(index));
+        }
+        for (int index = 0; index < columns.size(); index++) {
+            out.writeInt(columns.getAccountId(index));
+        }
+        for (Record record : records) {
+            byte[] description = utf8(record.getDescription());
+            out.writeInt(description == null ? NONE : description.length);
+            if (description != null) {
+                out.write(description);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Decodes a statement from a stream, which is read up to the end of the columns and not closed
+     * The counts in the header are not trusted for allocating: the dictionary and the first column grow as they are
+     * read, the other columns are allocated once the first is complete
+     */
+    public static ColumnarStatement decode(final InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input, BUFFER_SIZE));
+        try {
+            int size = readHeader(in.readInt(), in.readInt(), in.readInt());
+            int accountCount = readAccountCount(in.readInt(), size);
+            String[] accountNumbers = new String[Math.min(accountCount, BUFFER_SIZE)];
+            for (int accountId = 0; accountId < accountCount; accountId++) {
+                int length = readAccountNumberLength(in.readShort());
+                if (accountId == accountNumbers.length) {
+                    accountNumbers = Arrays.copyOf(accountNumbers,
+                            (int) Math.min(accountCount, 2L * accountNumbers.length));
+                }
+                if (length != NONE) {
+                    byte[] accountNumber = new byte[length];
+                    in.readFully(accountNumber);
+                    accountNumbers[accountId] = new String(accountNumber, StandardCharsets.UTF_8);
+                }
+            }
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long[] transactionReferences = readLongs(in, new long[Math.min(size, BUFFER_SIZE)], size, buffer);
+            long[] startBalances = readLongs(in, new long[size], size, buffer);
+            long[] mutations = readLongs(in, new long[size], size, buffer);
+            long[] endBalances = readLongs(in, new long[size], size, buffer);
+            int[] accountIds = readInts(in, new int[size], size, buffer);
+            return columnarStatement(size, transactionReferences, startBalances, mutations, endBalances, accountIds,
+                    accountNumbers);
+        } catch (EOFException e) {
+            throw new StatementParseException("Binary statement ends before its last record", e);
+        }
+    }
+
+    // Decodes a statement from a file by memory-mapping it, files of up to 2 GB are supported
+    public static ColumnarStatement decode(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new StatementParseException("Binary statement file " + file + " is larger than 2 GB");
+            }
+            return decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // Decodes a statement from the remaining bytes of the buffer, without changing its position
+    public static ColumnarStatement decode(final ByteBuffer buffer) {
+        ByteBuffer in = buffer.slice();
+        try {
+            int size = readHeader(in.getInt(), in.getInt(), in.getInt());
+            int accountCount = readAccountCount(in.getInt(), size);
+            // Every account number takes at least its length, so the counts are checked against the bytes first
+            if (in.remaining() < (long) size * RECORD_SIZE + (long) accountCount * Short.BYTES) {
+                throw new BufferUnderflowException();
+            }
+            String[] accountNumbers = new String[accountCount];
+            for (int accountId = 0; accountId < accountNumbers.length; accountId++) {
+                int length = readAccountNumberLength(in.getShort());
+                if (length != NONE) {
+                    byte[] accountNumber = new byte[length];
+                    in.get(accountNumber);
+                    accountNumbers[accountId] = new String(accountNumber, StandardCharsets.UTF_8);
+                }
+            }
+            if (in.remaining() < (long) size * RECORD_SIZE) {
+                throw new BufferUnderflowException();
+            }
+            long[] transactionReferences = getLongs(in, size);
+            long[] startBalances = getLongs(in, size);
+            long[] mutations = getLongs(in, size);
+            long[] endBalances = getLongs(in, size);
+            int[] accountIds = new int[size];
+            in.asIntBuffer().get(accountIds);
+            return columnarStatement(size, transactionReferences, startBalances, mutations, endBalances, accountIds,
+                    accountNumbers);
+        } catch (BufferUnderflowException e) {
+            throw new StatementParseException("Binary statement ends before its last record", e);
+        }
+    }
+
+    // Returns the number of records
+    private static int readHeader(final int magic, final int version, final int size) {
+        if (magic != MAGIC) {
+            throw new StatementParseException("Not a binary statement");
+        }
+        if (version != VERSION) {
+            throw new StatementParseException("Unsupported binary statement version " + version);
+        }
+        if (size < 0 || size > MAX_RECORDS) {
+            throw new StatementParseException("Invalid number of records " + size);
+        }
+        return size;
+    }
+
+    // Every account number in the dictionary belongs to a record, so there cannot be more than records
+    private static int readAccountCount(final int accountCount, final int size) {
+        if (accountCount < 0 || accountCount > size) {
+            throw new StatementParseException("Invalid number of account numbers " + accountCount);
+        }
+        return accountCount;
+    }
+
+    private static int readAccountNumberLength(final short length) {
+        if (length < NONE) {
+            throw new StatementParseException("Invalid account number length " + length);
+        }
+        return length;
+    }
+
+    // Reads the column in chunks through the buffer, growing it as needed
+    private static long[] readLongs(final DataInputStream in, final long[] initial, final int size, final byte[] buffer)
+            throws IOException {
+        long[] column = initial;
+        LongBuffer values = ByteBuffer.wrap(buffer).asLongBuffer();
+        for (int done = 0; done < size; ) {
+            int count = Math.min(size - done, buffer.length / Long.BYTES);
+            if (done + count > column.length) {
+                column = Arrays.copyOf(column, (int) Math.min(size, Math.max(2L * column.length, done + count)));
+            }
+            in.readFully(buffer, 0, count * Long.BYTES);
+            values.clear();
+            values.get(column, done, count);
+            done += count;
+        }
+        return column;
+    }
+
+    private static int[] readInts(final DataInputStream in, final int[] column, final int size, final byte[] buffer)
+            throws IOException {
+        IntBuffer values = ByteBuffer.wrap(buffer).asIntBuffer();
+        for (int done = 0; done < size; ) {
+            int count = Math.min(size - done, buffer.length / Integer.BYTES);
+            in.readFully(buffer, 0, count * Integer.BYTES);
+            values.clear();
+            values.get(column, done, count);
+            done += count;
+        }
+        return column;
+    }
+
+    private static long[] getLongs(final ByteBuffer in, final int size) {
+        long[] column = new long[size];
+        in.asLongBuffer().get(column);
+        in.position(in.position() + size * Long.BYTES);
+        return column;
+    }
+
+    private static ColumnarStatement columnarStatement(final int size, final long[] transactionReferences,
+                                                       final long[] startBalances, final long[] mutations,
+                                                       final long[] endBalances, final int[] accountIds,
+                                                       final String[] accountNumbers) {
+        for (int index = 0; index < size; index++) {
+            if (accountIds[index] < 0 || accountIds[index] >= accountNumbers.length) {
+                throw new StatementParseException("Invalid account number index " + accountIds[index]
+                        + " of record " + (index + 1));
+            }
+        }
+        return new ColumnarStatement(size, transactionReferences, startBalances, mutations, endBalances, accountIds,
+                accountNumbers);
+    }
+
+    private static byte[] utf8(final String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,70 @@
+package nl.rabobank.statementprocessor.codec;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import nl.rabobank.statementprocessor.model.Record;
+import nl.rabobank.statementprocessor.model.Statement;
+import nl.rabobank.statementprocessor.view.RecordView;
+import nl.rabobank.statementprocessor.view.ValidationResultView;
+
+import java.io.IOException;
+
+/**
+ * Registry of the JSON codecs of the application, created once and shared by all threads
+ * Gson instances and type adapters are immutable, so they are safe for concurrent use
+ * Record, Statement, RecordView and ValidationResultView are handled by hand-written adapters, other types by
+ * Gson's reflective adapters as usual
+ */
+
+public final class JsonCodecs {
+
+    private static final TypeAdapter<Record> RECORD_ADAPTER = new RecordTypeAdapter();
+    private static final TypeAdapter<Statement> STATEMENT_ADAPTER = new StatementTypeAdapter(RECORD_ADAPTER);
+    private static final TypeAdapter<RecordView> RECORD_VIEW_ADAPTER = new RecordViewTypeAdapter();
+    private static final TypeAdapter<ValidationResultView> VALIDATION_RESULT_VIEW_ADAPTER =
+            new ValidationResultViewTypeAdapter(RECORD_VIEW_ADAPTER);
+
+    private static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(Record.class, RECORD_ADAPTER)
+            .registerTypeAdapter(Statement.class, STATEMENT_ADAPTER)
+            .registerTypeAdapter(RecordView.class, RECORD_VIEW_ADAPTER)
+            .registerTypeAdapter(ValidationResultView.class, VALIDATION_RESULT_VIEW_ADAPTER)
+            .create();
+
+    private JsonCodecs() {
+    }
+
+    public static Gson gson() {
+        return GSON;
+    }
+
+    public static TypeAdapter<Record> recordAdapter() {
+        return RECORD_ADAPTER;
+    }
+
+    public static TypeAdapter<Statement> statementAdapter() {
+        return STATEMENT_ADAPTER;
+    }
+
+    public static TypeAdapter<ValidationResultView> validationResultViewAdapter() {
+        return VALIDATION_RESULT_VIEW_ADAPTER;
+    }
+
+    // Reads a number like Gson's own long adapter: a quoted number is accepted, anything else is a syntax error
+    static long nextLong(final JsonReader in) throws IOException {
+        try {
+            return in.nextLong();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    // Reads a string like Gson's own String adapter, which also turns a boolean into a string
+    static String nextString(final JsonReader in) throws IOException {
+        return in.peek() == JsonToken.BOOLEAN ? Boolean.toString(in.nextBoolean()) : in.nextString();
+    }
+}
@@ -0,0 +1,521 @@
+package nl.rabobank.statementprocessor.codec;
+
+import nl.rabobank.statementprocessor.model.ColumnarStatement;
+import nl.rabobank.statementprocessor.util.SeededHash;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Class that decodes a JSON statement from its UTF-8 bytes into a ColumnarStatement, specialized for the fixed shape
+ * of Statement and Record instead of going through tokens like Gson does:
+ * - field names are recognized by their length and compared byte by byte, no String is created for them
+ * - numbers are parsed from their digits straight into the long columns
+ * - account numbers are dictionary-encoded on their bytes, a String is only created once per distinct account number
+ * - descriptions are kept as offsets into the bytes, a String is only created for a record that is turned back into a
+ *   Record, such as an error record
+ * So apart from the columns hardly anything is allocated, the bytes are kept by the statement for the descriptions
+ * Only the common form of a statement is decoded: a "records" array of objects with the six Record fields, integral
+ * numbers and strings (or null), and whitespace. Anything else, such as unknown fields, quoted or decimal numbers,
+ * escapes in account numbers, or input that is not valid JSON, makes decode return null, and the statement should then
+ * be decoded by Gson, which accepts more and reports the errors
+ */
+
+public final class JsonStatementDecoder {
+
+    private static final byte[] RECORDS = ascii("records");
+    private static final byte[] TRANSACTION_REFERENCE = ascii("transactionReference");
+    private static final byte[] ACCOUNT_NUMBER = ascii("accountNumber");
+    private static final byte[] DESCRIPTION = ascii("description");
+    private static final byte[] START_BALANCE = ascii("startBalance");
+    private static final byte[] MUTATION = ascii("mutation");
+    private static final byte[] END_BALANCE = ascii("endBalance");
+    private static final byte[] NULL = ascii("null");
+
+    private static final int NONE = -1;
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_SAFE_DIGITS = 18;
+    // Bytes of a typical record, to size the columns up front
+    private static final int EXPECTED_RECORD_SIZE = 160;
+
+    private final byte[] json;
+    private final int end;
+    private int position;
+    // End of the last string that was read, its start is returned
+    private int stringEnd;
+
+    private int size;
+    private long[] transactionReferences;
+    private long[] startBalances;
+    private long[] mutations;
+    private long[] endBalances;
+    private int[] accountIds;
+    private int[] descriptionStarts;
+    private int[] descriptionEnds;
+
+    // Open-addressing table of account ids + 1 by the seeded hash of the bytes of their account number, 0 marks an empty
+    // slot. The hash is seeded so that account numbers cannot be chosen to share one probe chain
+    private int[] accountSlots = new int[MIN_CAPACITY];
+    private int[] accountStarts = new int[MIN_CAPACITY];
+    private int[] accountEnds = new int[MIN_CAPACITY];
+    private int accountCount;
+    private int nullAccountId = NONE;
+
+    private JsonStatementDecoder(final byte[] json, final int length) {
+        this.json = json;
+        this.end = length;
+        int capacity = Math.max(MIN_CAPACITY, length / EXPECTED_RECORD_SIZE);
+        transactionReferences = new long[capacity];
+        startBalances = new long[capacity];
+        mutations = new long[capacity];
+        endBalances = new long[capacity];
+        accountIds = new int[capacity];
+        descriptionStarts = new int[capacity];
+        descriptionEnds = new int[capacity];
+    }
+
+    public static ColumnarStatement decode(final byte[] json) {
+        return decode(json, json.length);
+    }
+
+    /**
+     * Decodes the statement in the first length bytes, the array must not be changed afterwards, the descriptions are
+     * read from it
+     * @return the statement, or null if the input is not in the form this decoder handles
+     */
+    public static ColumnarStatement decode(final byte[] json, final int length) {
+        try {
+            return new JsonStatementDecoder(json, length).decodeStatement();
+        } catch (UnsupportedInput e) {
+            return null;
+        }
+    }
+
+    private ColumnarStatement decodeStatement() {
+        skipWhitespace();
+        expect('{');
+        skipWhitespace();
+        // A statement without records, or with more than one records field, is left to Gson
+        int nameStart = readString(false);
+        if (!matches(nameStart, RECORDS)) {
+            throw UnsupportedInput.INSTANCE;
+        }
+        skipWhitespace();
+        expect(':');
+        skipWhitespace();
+        expect('[');
+        decodeRecords();
+        skipWhitespace();
+        expect('}');
+        skipWhitespace();
+        if (position != end) {
+            throw UnsupportedInput.INSTANCE;
+        }
+        return build();
+    }
+
+    private void decodeRecords() {
+        skipWhitespace();
+        if (peek() == ']') {
+            position++;
+            return;
+        }
+        while (true) {
+            decodeRecord();
+            skipWhitespace();
+            byte next = next();
+            if (next == ']') {
+                return;
+            }
+            if (next != ',') {
+                throw UnsupportedInput.INSTANCE;
+            }
+            skipWhitespace();
+        }
+    }
+
+    // A field that occurs more than once keeps its last value, and a null keeps the default, like RecordTypeAdapter
+    private void decodeRecord() {
+        expect('{');
+        long transactionReference = 0;
+        long startBalance = 0;
+        long mutation = 0;
+        long endBalance = 0;
+        int accountStart = NONE;
+        int accountEnd = NONE;
+        int descriptionStart = NONE;
+        int descriptionEnd = NONE;
+
+        skipWhitespace();
+        if (peek() == '}') {
+            position++;
+        } else {
+            while (true) {
+                int nameStart = readString(false);
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                if (peek() == 'n') {
+                    expectLiteral(NULL);
+                } else {
+                    // The names of the fields differ in length, so the length tells which one it can be
+                    switch (stringEnd - nameStart) {
+                        case 20:
+                            expectName(nameStart, TRANSACTION_REFERENCE);
+                            transactionReference = readLong();
+                            break;
+                        case 13:
+                            expectName(nameStart, ACCOUNT_NUMBER);
+                            accountStart = readString(false);
+                            accountEnd = stringEnd;
+                            break;
+                        case 11:
+                            expectName(nameStart, DESCRIPTION);
+                            descriptionStart = readString(true);
+                            descriptionEnd = stringEnd;
+                            break;
+                        case 12:
+                            expectName(nameStart, START_BALANCE);
+                            startBalance = readLong();
+                            break;
+                        case 8:
+                            expectName(nameStart, MUTATION);
+                            mutation = readLong();
+                            break;
+                        case 10:
+                            expectName(nameStart, END_BALANCE);
+                            endBalance = readLong();
+                            break;
+                        default:
+                            throw UnsupportedInput.INSTANCE;
+                    }
+                }
+                skipWhitespace();
+                byte next = next();
+                if (next == '}') {
+                    break;
+                }
+                if (next != ',') {
+                    throw UnsupportedInput.INSTANCE;
+                }
+                skipWhitespace();
+            }
+        }
+
+        if (size == transactionReferences.length) {
+            grow();
+        }
+        transactionReferences[size] = transactionReference;
+        startBalances[size] = startBalance;
+        mutations[size] = mutation;
+        endBalances[size] = endBalance;
+        accountIds[size] = accountId(accountStart, accountEnd);
+        descriptionStarts[size] = descriptionStart;
+        descriptionEnds[size] = descriptionEnd;
+        size++;
+    }
+
+    // An integer without exponent or fraction that fits in a long, up to 18 digits cannot overflow, longer ones are
+    // accumulated as a negative number, which has the larger range
+    private long readLong() {
+        boolean negative = peek() == '-';
+        if (negative) {
+            position++;
+        }
+        int digitsStart = position;
+        int index = position;
+        long value = 0;
+        int limit = Math.min(end, digitsStart + MAX_SAFE_DIGITS);
+        int digit;
+        while (index < limit && (digit = json[index] - '0') >= 0 && digit <= 9) {
+            value = value * 10 + digit;
+            index++;
+        }
+        value = -value;
+        while (index < end && (digit = json[index] - '0') >= 0 && digit <= 9) {
+            if (value < (Long.MIN_VALUE + digit) / 10) {
+                throw UnsupportedInput.INSTANCE;
+            }
+            value = value * 10 - digit;
+            index++;
+        }
+        position = index;
+        int digits = index - digitsStart;
+        if (digits == 0 || digits > 1 && json[digitsStart] == '0') {
+            throw UnsupportedInput.INSTANCE;
+        }
+        if (index < end && (json[index] == '.' || json[index] == 'e' || json[index] == 'E')) {
+            throw UnsupportedInput.INSTANCE;
+        }
+        if (negative) {
+            return value;
+        }
+        if (value == Long.MIN_VALUE) {
+            throw UnsupportedInput.INSTANCE;
+        }
+        return -value;
+    }
+
+    /**
+     * Reads a string, its content runs from the returned position up to stringEnd, so a field name is compared with
+     * matches before the next string is read
+     * Bytes of multi-byte UTF-8 characters never equal a quote or backslash, so the bytes can be scanned as they are
+     */
+    private int readString(final boolean allowEscapes) {
+        expect('"');
+        int start = position;
+        int index = position;
+        while (index < end) {
+            byte current = json[index];
+            if (current == '"') {
+                stringEnd = index;
+                position = index + 1;
+                return start;
+            }
+            // Control characters are 0 to 0x1F, the bytes of multi-byte characters are negative
+            if ((current & 0xE0) == 0) {
+                throw UnsupportedInput.INSTANCE;
+            }
+            if (current == '\\') {
+                if (!allowEscapes) {
+                    throw UnsupportedInput.INSTANCE;
+                }
+                position = index;
+                skipEscape();
+                index = position;
+            } else {
+                index++;
+            }
+        }
+        throw UnsupportedInput.INSTANCE;
+    }
+
+    private void skipEscape() {
+        if (end - position < 2) {
+            throw UnsupportedInput.INSTANCE;
+        }
+        byte escaped = json[position + 1];
+        switch (escaped) {
+            case '"':
+            case '\\':
+            case '/':
+            case 'b':
+            case 'f':
+            case 'n':
+            case 'r':
+            case 't':
+                position += 2;
+                return;
+            case 'u':
+                if (end - position < 6) {
+                    throw UnsupportedInput.INSTANCE;
+                }
+                for (int index = position + 2; index < position + 6; index++) {
+                    if (Character.digit(json[index], 16) < 0) {
+                        throw UnsupportedInput.INSTANCE;
+                    }
+                }
+                position += 6;
+                return;
+            default:
+                throw UnsupportedInput.INSTANCE;
+        }
+    }
+
+    // The id of the account number between start and end in the dictionary, which is added to if it is not there yet
+    private int accountId(final int start, final int end) {
+        if (start == NONE) {
+            if (nullAccountId == NONE) {
+                nullAccountId = addAccount(NONE, NONE);
+            }
+            return nullAccountId;
+        }
+        int mask = accountSlots.length - 1;
+        int slot = SeededHash.hash(json, start, end) & mask;
+        int entry;
+        while ((entry = accountSlots[slot]) != 0) {
+            int accountId = entry - 1;
+            if (accountStarts[accountId] != NONE
+                    && Arrays.equals(json, accountStarts[accountId], accountEnds[accountId], json, start, end)) {
+                return accountId;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int accountId = addAccount(start, end);
+        accountSlots[slot] = accountId + 1;
+        if (2 * accountCount > accountSlots.length) {
+            rehashAccounts();
+        }
+        return accountId;
+    }
+
+    private int addAccount(final int start, final int end) {
+        if (accountCount == accountStarts.length) {
+            accountStarts = Arrays.copyOf(accountStarts, accountCount * 2);
+            accountEnds = Arrays.copyOf(accountEnds, accountCount * 2);
+        }
+        accountStarts[accountCount] = start;
+        accountEnds[accountCount] = end;
+        return accountCount++;
+    }
+
+    private void rehashAccounts() {
+        int[] slots = new int[accountSlots.length * 2];
+        int mask = slots.length - 1;
+        for (int accountId = 0; accountId < accountCount; accountId++) {
+            int start = accountStarts[accountId];
+            if (start == NONE) {
+                continue;
+            }
+            int slot = SeededHash.hash(json, start, accountEnds[accountId]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = accountId + 1;
+        }
+        accountSlots = slots;
+    }
+
+    private ColumnarStatement build() {
+        String[] accountNumbers = new String[accountCount];
+        for (int accountId = 0; accountId < accountCount; accountId++) {
+            int start = accountStarts[accountId];
+            accountNumbers[accountId] = start == NONE ? null
+                    : new String(json, start, accountEnds[accountId] - start, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = json;
+        int[] starts = descriptionStarts;
+        int[] ends = descriptionEnds;
+        return new ColumnarStatement(size, transactionReferences, startBalances, mutations, endBalances, accountIds,
+                accountNumbers, index -> starts[index] == NONE ? null : decodeString(bytes, starts[index], ends[index]));
+    }
+
+    // Decodes the content of a string that was validated by readString, escapes included
+    static String decodeString(final byte[] json, final int start, final int end) {
+        int escape = start;
+        while (escape < end && json[escape] != '\\') {
+            escape++;
+        }
+        if (escape == end) {
+            return new String(json, start, end - start, StandardCharsets.UTF_8);
+        }
+        StringBuilder decoded = new StringBuilder(end - start);
+        int segmentStart = start;
+        while (escape < end) {
+            decoded.append(new String(json, segmentStart, escape - segmentStart, StandardCharsets.UTF_8));
+            byte escaped = json[escape + 1];
+            switch (escaped) {
+                case 'b':
+                    decoded.append('\b');
+                    break;
+                case 'f':
+                    decoded.append('\f');
+                    break;
+                case 'n':
+                    decoded.append('\n');
+                    break;
+                case 'r':
+                    decoded.append('\r');
+                    break;
+                case 't':
+                    decoded.append('\t');
+                    break;
+                case 'u':
+                    decoded.append((char) Integer.parseInt(new String(json, escape + 2, 4, StandardCharsets.US_ASCII), 16));
+                    escape += 4;
+                    break;
+                default:
+                    decoded.append((char) escaped);
+            }
+            escape += 2;
+            segmentStart = escape;
+            while (escape < end && json[escape] != '\\') {
+                escape++;
+            }
+        }
+        decoded.append(new String(json, segmentStart, end - segmentStart, StandardCharsets.UTF_8));
+        return decoded.toString();
+    }
+
+    private void grow() {
+        int capacity = transactionReferences.length * 2;
+        transactionReferences = Arrays.copyOf(transactionReferences, capacity);
+        startBalances = Arrays.copyOf(startBalances, capacity);
+        mutations = Arrays.copyOf(mutations, capacity);
+        endBalances = Arrays.copyOf(endBalances, capacity);
+        accountIds = Arrays.copyOf(accountIds, capacity);
+        descriptionStarts = Arrays.copyOf(descriptionStarts, capacity);
+        descriptionEnds = Arrays.copyOf(descriptionEnds, capacity);
+    }
+
+    // Field names are short, a plain loop compares them faster than Arrays.equals with its range checks
+    private boolean matches(final int start, final byte[] name) {
+        if (stringEnd - start != name.length) {
+            return false;
+        }
+        for (int index = 0; index < name.length; index++) {
+            if (json[start + index] != name[index]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void expectName(final int start, final byte[] name) {
+        if (!matches(start, name)) {
+            throw UnsupportedInput.INSTANCE;
+        }
+    }
+
+    private void expectLiteral(final byte[] literal) {
+        if (end - position < literal.length
+                || !Arrays.equals(json, position, position + literal.length, literal, 0, literal.length)) {
+            throw UnsupportedInput.INSTANCE;
+        }
+        position += literal.length;
+    }
+
+    private void expect(final char expected) {
+        if (position >= end || json[position] != expected) {
+            throw UnsupportedInput.INSTANCE;
+        }
+        position++;
+    }
+
+    private byte next() {
+        byte current = peek();
+        position++;
+        return current;
+    }
+
+    private byte peek() {
+        if (position >= end) {
+            throw UnsupportedInput.INSTANCE;
+        }
+        return json[position];
+    }
+
+    private void skipWhitespace() {
+        while (position < end) {
+            byte current = json[position];
+            if (current != ' ' && current != '\n' && current != '\r' && current != '\t') {
+                return;
+            }
+            position++;
+        }
+    }
+
+    private static byte[] ascii(final String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // Thrown to fall back to Gson, without a stack trace, as it is not an error
+    private static final class UnsupportedInput extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private static final UnsupportedInput INSTANCE = new UnsupportedInput();
+
+        private UnsupportedInput() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package nl.rabobank.statementprocessor.codec;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import nl.rabobank.statementprocessor.model.Record;
+
+import java.io.IOException;
+
+/**
+ * Hand-written Gson adapter for Record, which reads the long fields directly instead of through reflection
+ * It produces and accepts exactly what Gson's reflective adapter does: nulls are omitted on write, a null for a
+ * number keeps its default value on read and unknown fields are skipped
+ */
+
+public final class RecordTypeAdapter extends TypeAdapter<Record> {
+
+    @Override
+    public void write(final JsonWriter out, final Record record) throws IOException {
+        if (record == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("transactionReference").value(record.getTransactionReference());
+        if (record.getAccountNumber() != null) {
+            out.name("accountNumber").value(record.getAccountNumber());
+        }
+        if (record.getDescription() != null) {
+            out.name("description").value(record.getDescription());
+        }
+        out.name("startBalance").value(record.getStartBalance());
+        out.name("mutation").value(record.getMutation());
+        out.name("endBalance").value(record.getEndBalance());
+        out.endObject();
+    }
+
+    @Override
+    public Record read(final JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        long transactionReference = 0;
+        String accountNumber = null;
+        String description = null;
+        long startBalance = 0;
+        long mutation = 0;
+        long endBalance = 0;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "transactionReference":
+                    transactionReference = JsonCodecs.nextLong(in);
+                    break;
+                case "accountNumber":
+                    accountNumber = JsonCodecs.nextString(in);
+                    break;
+                case "description":
+                    description = JsonCodecs.nextString(in);
+                    break;
+                case "startBalance":
+                    startBalance = JsonCodecs.nextLong(in);
+                    break;
+                case "mutation":
+                    mutation = JsonCodecs.nextLong(in);
+                    break;
+                case "endBalance":
+                    endBalance = JsonCodecs.nextLong(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return Record.builder()
+                .transactionReference(transactionReference)
+                .accountNumber(accountNumber)
+                .description(description)
+                .startBalance(startBalance)
+                .mutation(mutation)
+                .endBalance(endBalance)
+                .build();
+    }
+}
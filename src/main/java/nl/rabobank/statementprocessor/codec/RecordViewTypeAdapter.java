@@ -0,0 +1,55 @@
+package nl.rabobank.statementprocessor.codec;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import nl.rabobank.statementprocessor.view.RecordView;
+
+import java.io.IOException;
+
+/**
+ * Hand-written Gson adapter for RecordView, with the same output as Gson's reflective adapter
+ */
+
+public final class RecordViewTypeAdapter extends TypeAdapter<RecordView> {
+
+    @Override
+    public void write(final JsonWriter out, final RecordView recordView) throws IOException {
+        if (recordView == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("transactionReference").value(recordView.getTransactionReference());
+        if (recordView.getAccountNumber() != null) {
+            out.name("accountNumber").value(recordView.getAccountNumber());
+        }
+        out.endObject();
+    }
+
+    @Override
+    public RecordView read(final JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        long transactionReference = 0;
+        String accountNumber = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+            } else if ("transactionReference".equals(name)) {
+                transactionReference = JsonCodecs.nextLong(in);
+            } else if ("accountNumber".equals(name)) {
+                accountNumber = JsonCodecs.nextString(in);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return new RecordView(transactionReference, accountNumber);
+    }
+}
@@ -0,0 +1,66 @@
+package nl.rabobank.statementprocessor.codec;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import nl.rabobank.statementprocessor.model.Record;
+import nl.rabobank.statementprocessor.model.Statement;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hand-written Gson adapter for Statement, the records are handled by the RecordTypeAdapter
+ */
+
+public final class StatementTypeAdapter extends TypeAdapter<Statement> {
+
+    private final TypeAdapter<Record> recordAdapter;
+
+    public StatementTypeAdapter(final TypeAdapter<Record> recordAdapter) {
+        this.recordAdapter = recordAdapter;
+    }
+
+    @Override
+    public void write(final JsonWriter out, final Statement statement) throws IOException {
+        if (statement == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (statement.getRecords() != null) {
+            out.name("records").beginArray();
+            for (Record record : statement.getRecords()) {
+                recordAdapter.write(out, record);
+            }
+            out.endArray();
+        }
+        out.endObject();
+    }
+
+    @Override
+    public Statement read(final JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<Record> records = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            if ("records".equals(in.nextName()) && in.peek() != JsonToken.NULL) {
+                records = new ArrayList<>();
+                in.beginArray();
+                while (in.hasNext()) {
+                    records.add(recordAdapter.read(in));
+                }
+                in.endArray();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return new Statement(records);
+    }
+}
@@ -0,0 +1,64 @@
+package nl.rabobank.statementprocessor.codec;
+
+import com.google.gson.stream.JsonWriter;
+import nl.rabobank.statementprocessor.model.Record;
+import nl.rabobank.statementprocessor.model.Result;
+import nl.rabobank.statementprocessor.model.ValidationResult;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Class that writes a ValidationResult as JSON, in the same form as the response body of its ValidationResultView
+ * Null values are written as null, like the Jackson message converter does for the view
+ * The error records are written one by one, straight from the Records, so no RecordView list is built and the
+ * output does not have to be buffered as a whole
+ * When the error records are capped, only the first ones are written, followed by the total number of error records
+ * ('errorRecordCount') and the cursor of the rest ('nextCursor')
+ */
+
+public final class ValidationResultJsonWriter {
+
+    private ValidationResultJsonWriter() {
+    }
+
+    public static void write(final ValidationResult validationResult, final Writer writer) throws IOException {
+        List<Record> errorRecords = validationResult.getErrorRecords();
+        write(validationResult, errorRecords == null ? 0 : errorRecords.size(), null, writer);
+    }
+
+    /**
+     * Writes the result with at most inlineLimit error records
+     * @param nextCursor cursor of the error records that are not written, or null if they cannot be fetched
+     */
+    public static void write(final ValidationResult validationResult, final int inlineLimit, final String nextCursor,
+                             final Writer writer) throws IOException {
+        JsonWriter out = new JsonWriter(writer);
+        out.setSerializeNulls(true);
+        out.beginObject();
+        Result result = validationResult.getResult();
+        out.name("result").value(result == null ? null : result.name());
+        out.name("errorRecords");
+        List<Record> errorRecords = validationResult.getErrorRecords();
+        if (errorRecords == null) {
+            out.nullValue();
+        } else {
+            int inlineCount = Math.min(inlineLimit, errorRecords.size());
+            out.beginArray();
+            for (Record record : errorRecords.subList(0, inlineCount)) {
+                out.beginObject();
+                out.name("transactionReference").value(record.getTransactionReference());
+                out.name("accountNumber").value(record.getAccountNumber());
+                out.endObject();
+            }
+            out.endArray();
+            if (inlineCount < errorRecords.size()) {
+                out.name("errorRecordCount").value(errorRecords.size());
+                out.name("nextCursor").value(nextCursor);
+            }
+        }
+        out.endObject();
+        out.flush();
+    }
+}
@@ -0,0 +1,85 @@
+package nl.rabobank.statementprocessor.codec;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import nl.rabobank.statementprocessor.model.Result;
+import nl.rabobank.statementprocessor.view.RecordView;
+import nl.rabobank.statementprocessor.view.ValidationResultView;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hand-written Gson adapter for ValidationResultView, the error records are handled by the RecordViewTypeAdapter
+ * An unknown result is read as null, like Gson's enum adapter does
+ */
+
+public final class ValidationResultViewTypeAdapter extends TypeAdapter<ValidationResultView> {
+
+    private final TypeAdapter<RecordView> recordViewAdapter;
+
+    public ValidationResultViewTypeAdapter(final TypeAdapter<RecordView> recordViewAdapter) {
+        this.recordViewAdapter = recordViewAdapter;
+    }
+
+    @Override
+    public void write(final JsonWriter out, final ValidationResultView validationResultView) throws IOException {
+        if (validationResultView == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (validationResultView.getResult() != null) {
+            out.name("result").value(validationResultView.getResult().name());
+        }
+        if (validationResultView.getErrorRecords() != null) {
+            out.name("errorRecords").beginArray();
+            for (RecordView recordView : validationResultView.getErrorRecords()) {
+                recordViewAdapter.write(out, recordView);
+            }
+            out.endArray();
+        }
+        out.endObject();
+    }
+
+    @Override
+    public ValidationResultView read(final JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Result result = null;
+        List<RecordView> errorRecords = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+            } else if ("result".equals(name)) {
+                result = readResult(JsonCodecs.nextString(in));
+            } else if ("errorRecords".equals(name)) {
+                errorRecords = new ArrayList<>();
+                in.beginArray();
+                while (in.hasNext()) {
+                    errorRecords.add(recordViewAdapter.read(in));
+                }
+                in.endArray();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return new ValidationResultView(result, errorRecords);
+    }
+
+    private static Result readResult(final String name) {
+        try {
+            return Result.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package nl.rabobank.statementprocessor.config;
+
+import nl.rabobank.statementprocessor.controllers.NonBlockingValidationServlet;
+import nl.rabobank.statementprocessor.metrics.ValidationMetrics;
+import nl.rabobank.statementprocessor.services.ErrorRecordStore;
+import nl.rabobank.statementprocessor.services.ValidationService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Registers the NonBlockingValidationServlet next to the DispatcherServlet, as a Spring MVC controller cannot read its
+ * request body without blocking
+ */
+
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class NonBlockingValidationConfiguration {
+
+    @Bean
+    public ServletRegistrationBean<NonBlockingValidationServlet> nonBlockingValidationServlet(
+            final ValidationService validationService, final ValidationMetrics metrics,
+            final ErrorRecordStore errorRecordStore,
+            @Value("${statement.error-records.inline-limit:1000}") final int inlineLimit,
+            @Value("${statement.nonblocking.timeout:5m}") final Duration timeout) {
+        ServletRegistrationBean<NonBlockingValidationServlet> registration = new ServletRegistrationBean<>(
+                new NonBlockingValidationServlet(validationService, metrics, errorRecordStore, inlineLimit, timeout),
+                NonBlockingValidationServlet.PATH);
+        registration.setAsyncSupported(true);
+        return registration;
+    }
+}
@@ -0,0 +1,32 @@
+package nl.rabobank.statementprocessor.config;
+
+import nl.rabobank.statementprocessor.index.ReferenceIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * Creates the cross-statement ReferenceIndex, which is only used when it is enabled
+ */
+
+@Configuration
+@ConditionalOnProperty(name = "statement.reference-index.enabled", havingValue = "true")
+public class ReferenceIndexConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public ReferenceIndex referenceIndex(@Value("${statement.reference-index.file}") final String file,
+                                         @Value("${statement.reference-index.capacity}") final int capacity,
+                                         @Value("${statement.reference-index.window}") final Duration window) throws IOException {
+        Path path = Paths.get(file).toAbsolutePath();
+        if (path.getParent() != null) {
+            path.getParent().toFile().mkdirs();
+        }
+        return new ReferenceIndex(path, capacity, window.toMillis());
+    }
+}
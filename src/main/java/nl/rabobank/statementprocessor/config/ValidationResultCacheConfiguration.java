@@ -0,0 +1,27 @@
+package nl.rabobank.statementprocessor.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import nl.rabobank.statementprocessor.cache.ValidationResultCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Creates the ValidationResultCache, which is only used when it is enabled
+ */
+
+@Configuration
+@ConditionalOnProperty(name = "statement.cache.enabled", havingValue = "true")
+public class ValidationResultCacheConfiguration {
+
+    @Bean
+    public ValidationResultCache validationResultCache(@Value("${statement.cache.max-size:64MB}") final DataSize maxSize,
+                                                       @Value("${statement.cache.ttl:10m}") final Duration ttl,
+                                                       final MeterRegistry registry) {
+        return new ValidationResultCache(maxSize.toBytes(), ttl, registry);
+    }
+}
@@ -0,0 +1,55 @@
+package nl.rabobank.statementprocessor.controllers;
+
+import nl.rabobank.statementprocessor.codec.JsonCodecs;
+import nl.rabobank.statementprocessor.model.ValidationResult;
+import nl.rabobank.statementprocessor.services.BatchResultWriter;
+import nl.rabobank.statementprocessor.services.BatchValidationService;
+import nl.rabobank.statementprocessor.view.BatchValidationResultView;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+@RestController
+public class BatchController {
+
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    private final BatchValidationService batchValidationService;
+
+    @Autowired
+    public BatchController(final BatchValidationService batchValidationService) {
+        this.batchValidationService = batchValidationService;
+    }
+
+    // Validates one statement per request line and writes one result per response line, as soon as it is available
+    @PostMapping(path = "/statement/validate/batch", consumes = APPLICATION_NDJSON_VALUE, produces = APPLICATION_NDJSON_VALUE)
+    public void validateBatch(final InputStream body, final HttpServletResponse response) throws IOException {
+        response.setContentType(APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        BufferedReader statements = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+
+        batchValidationService.validateBatch(statements, new BatchResultWriter() {
+            @Override
+            public void write(final long index, final ValidationResult validationResult) throws IOException {
+                JsonCodecs.gson().toJson(new BatchValidationResultView(index, validationResult), writer);
+                writer.write('\n');
+            }
+
+            @Override
+            public void flush() throws IOException {
+                writer.flush();
+            }
+        });
+    }
+}
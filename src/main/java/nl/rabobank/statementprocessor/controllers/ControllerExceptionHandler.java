@@ -2,7 +2,10 @@ package nl.rabobank.statementprocessor.controllers;
 
 import com.google.gson.JsonSyntaxException;
 import lombok.extern.slf4j.Slf4j;
+import nl.rabobank.statementprocessor.cache.IdempotencyKeyReusedException;
+import nl.rabobank.statementprocessor.filters.InflatedBodyTooLargeException;
 import nl.rabobank.statementprocessor.model.Result;
+import nl.rabobank.statementprocessor.parsers.StatementParseException;
 import nl.rabobank.statementprocessor.view.ValidationResultView;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -11,6 +14,7 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
 import java.util.ArrayList;
+import java.util.concurrent.RejectedExecutionException;
 
 @Slf4j
 @ControllerAdvice(basePackages="nl.rabobank.statementprocessor")
@@ -23,6 +27,34 @@ public class ControllerExceptionHandler extends ResponseEntityExceptionHandler {
         return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler
+    protected ResponseEntity<ValidationResultView> handleStatementParseException(final StatementParseException exception) {
+        log.error("Statement parsing error, exception: {}", exception.getMessage());
+        ValidationResultView response = new ValidationResultView(Result.BAD_REQUEST, new ArrayList<>());
+        return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler
+    protected ResponseEntity<ValidationResultView> handleRejectedExecutionException(final RejectedExecutionException exception) {
+        log.error("Validation capacity exhausted, exception: {}", exception.getMessage());
+        ValidationResultView response = new ValidationResultView(Result.SERVICE_UNAVAILABLE, new ArrayList<>());
+        return new ResponseEntity<>(response, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler
+    protected ResponseEntity<ValidationResultView> handleIdempotencyKeyReusedException(final IdempotencyKeyReusedException exception) {
+        log.error("Idempotency-Key reused, exception: {}", exception.getMessage());
+        ValidationResultView response = new ValidationResultView(Result.BAD_REQUEST, new ArrayList<>());
+        return new ResponseEntity<>(response, HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    @ExceptionHandler
+    protected ResponseEntity<ValidationResultView> handleInflatedBodyTooLargeException(final InflatedBodyTooLargeException exception) {
+        log.error("Request body too large, exception: {}", exception.getMessage());
+        ValidationResultView response = new ValidationResultView(Result.BAD_REQUEST, new ArrayList<>());
+        return new ResponseEntity<>(response, HttpStatus.PAYLOAD_TOO_LARGE);
+    }
+
     // Default behaviour for Exceptions that are not handled otherwise
     @ExceptionHandler
     protected ResponseEntity<ValidationResultView> handleOtherExceptions(final Exception exception) {
@@ -0,0 +1,47 @@
+package nl.rabobank.statementprocessor.controllers;
+
+import nl.rabobank.statementprocessor.model.ValidationJob;
+import nl.rabobank.statementprocessor.services.ValidationJobService;
+import nl.rabobank.statementprocessor.view.ValidationJobView;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+
+@RestController
+public class JobController {
+
+    private static final String JOBS_URI = "/statement/jobs";
+
+    private final ValidationJobService validationJobService;
+
+    @Autowired
+    public JobController(final ValidationJobService validationJobService) {
+        this.validationJobService = validationJobService;
+    }
+
+    // Queues the statement and returns right away, the result is fetched with the returned job id
+    // The body is only read once the job is accepted, a malformed statement makes the job fail with BAD_REQUEST
+    @PostMapping(path = JOBS_URI, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ValidationJobView> submitStatement(final InputStream body) throws IOException {
+        ValidationJob validationJob = validationJobService.submit(body);
+        return ResponseEntity.accepted()
+                .location(URI.create(JOBS_URI + "/" + validationJob.getId()))
+                .body(new ValidationJobView(validationJob));
+    }
+
+    @GetMapping(path = JOBS_URI + "/{jobId}")
+    public ResponseEntity<ValidationJobView> getJob(@PathVariable final String jobId) {
+        return validationJobService.getJob(jobId)
+                .map(validationJob -> new ResponseEntity<>(new ValidationJobView(validationJob), HttpStatus.OK))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
@@ -0,0 +1,302 @@
+package nl.rabobank.statementprocessor.controllers;
+
+import com.google.gson.JsonSyntaxException;
+import lombok.extern.slf4j.Slf4j;
+import nl.rabobank.statementprocessor.cache.IdempotencyKeyReusedException;
+import nl.rabobank.statementprocessor.codec.JsonCodecs;
+import nl.rabobank.statementprocessor.codec.ValidationResultJsonWriter;
+import nl.rabobank.statementprocessor.filters.InflatedBodyTooLargeException;
+import nl.rabobank.statementprocessor.filters.RequestDecompressionFilter;
+import nl.rabobank.statementprocessor.metrics.ValidationMetrics;
+import nl.rabobank.statementprocessor.metrics.ValidationMetrics.Stage;
+import nl.rabobank.statementprocessor.model.Record;
+import nl.rabobank.statementprocessor.model.Result;
+import nl.rabobank.statementprocessor.model.ValidationMode;
+import nl.rabobank.statementprocessor.model.ValidationResult;
+import nl.rabobank.statementprocessor.parsers.JsonRecordDecoder;
+import nl.rabobank.statementprocessor.parsers.StatementParseException;
+import nl.rabobank.statementprocessor.services.ErrorRecordStore;
+import nl.rabobank.statementprocessor.services.StatementValidator;
+import nl.rabobank.statementprocessor.services.ValidationService;
+import nl.rabobank.statementprocessor.view.ValidationResultView;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Servlet that validates a JSON statement while its body arrives, without holding a thread while waiting for it
+ * Spring MVC reads request bodies blocking, so a slow client holds a request thread for as long as its upload takes.
+ * This servlet reads the body with non-blocking IO instead: a container thread is only busy while data is available,
+ * decoding the records in it with a JsonRecordDecoder and validating them. Waiting uploads take a connection, not a
+ * thread, so thousands of them are served by the few threads that handle the data that does arrive
+ * The body is not buffered: it is only read as fast as it is validated, so a client that sends faster than that is
+ * slowed down by TCP flow control (backpressure)
+ * Compressed bodies are inflated by the RequestDecompressionFilter, which only supports blocking reads, so those are
+ * read blocking on the request thread. The filter marks such a request with its BLOCKING_READ attribute
+ * Errors are answered with the same status as by the ControllerExceptionHandler
+ * The response is the same as that of /statement/validate, including the mode parameter and the inline limit of error
+ * records
+ */
+
+@Slf4j
+public class NonBlockingValidationServlet extends HttpServlet {
+
+    public static final String PATH = "/statement/validate/nonblocking";
+
+    private static final long serialVersionUID = 1L;
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final transient ValidationService validationService;
+    private final transient ValidationMetrics metrics;
+    private final transient ErrorRecordStore errorRecordStore;
+    private final int inlineLimit;
+    private final long timeoutMillis;
+
+    /**
+     * @param inlineLimit maximum number of error records in a response, like StatementController's
+     * @param timeout     maximum time an upload may take, after which it is answered with 408 Request Timeout
+     */
+    public NonBlockingValidationServlet(final ValidationService validationService, final ValidationMetrics metrics,
+                                        final ErrorRecordStore errorRecordStore, final int inlineLimit,
+                                        final Duration timeout) {
+        this.validationService = validationService;
+        this.metrics = metrics;
+        this.errorRecordStore = errorRecordStore;
+        this.inlineLimit = inlineLimit > 0 ? inlineLimit : Integer.MAX_VALUE;
+        this.timeoutMillis = timeout.toMillis();
+    }
+
+    @Override
+    protected void doPost(final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+        if (!isJson(request.getContentType())) {
+            writeError(response, HttpStatus.UNSUPPORTED_MEDIA_TYPE, Result.BAD_REQUEST);
+            return;
+        }
+        ValidationMode mode;
+        try {
+            String modeParameter = request.getParameter(StatementController.MODE);
+            mode = modeParameter == null ? ValidationMode.FULL
+                    : ValidationMode.valueOf(modeParameter.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            writeError(response, HttpStatus.BAD_REQUEST, Result.BAD_REQUEST);
+            return;
+        }
+
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(timeoutMillis);
+        ServletInputStream input = request.getInputStream();
+        Upload upload = new Upload(asyncContext, input, validationService.createValidator(mode));
+        asyncContext.addListener(upload);
+        if (request.getAttribute(RequestDecompressionFilter.BLOCKING_READ) != null) {
+            upload.readBlocking();
+        } else {
+            input.setReadListener(upload);
+        }
+    }
+
+    private static boolean isJson(final String contentType) {
+        try {
+            return contentType != null && MediaType.APPLICATION_JSON.isCompatibleWith(MediaType.parseMediaType(contentType));
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+
+    private static void writeError(final HttpServletResponse response, final HttpStatus status, final Result result)
+            throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        Writer writer = new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8);
+        JsonCodecs.gson().toJson(new ValidationResultView(result, new ArrayList<>()), writer);
+        writer.flush();
+    }
+
+    /**
+     * The state of one upload, the container calls the ReadListener methods one at a time, but a timeout may come in
+     * between, so the response is written by whoever gets to it first
+     * Decoding a chunk and answering hold the lock of the upload, so a timeout cannot close the validator, which may
+     * delete the spill files of its duplicate check, while a thread is still feeding it records. A chunk that is read
+     * after the upload was answered is dropped
+     */
+    private final class Upload implements ReadListener, AsyncListener {
+
+        private final AsyncContext asyncContext;
+        private final ServletInputStream input;
+        private final StatementValidator validator;
+        private final JsonRecordDecoder decoder = new JsonRecordDecoder();
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private final AtomicBoolean answered = new AtomicBoolean();
+        private final long start = System.nanoTime();
+        private long recordCount;
+
+        private Upload(final AsyncContext asyncContext, final ServletInputStream input,
+                       final StatementValidator validator) {
+            this.asyncContext = asyncContext;
+            this.input = input;
+            this.validator = validator;
+        }
+
+        @Override
+        public void onDataAvailable() {
+            try {
+                int count;
+                while (!answered.get() && input.isReady() && (count = input.read(buffer)) >= 0) {
+                    decode(count);
+                }
+            } catch (IOException | RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        @Override
+        public void onAllDataRead() {
+            try {
+                finish();
+            } catch (RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            fail(throwable);
+        }
+
+        @Override
+        public void onTimeout(final AsyncEvent event) {
+            answer(HttpStatus.REQUEST_TIMEOUT, Result.BAD_REQUEST, null);
+        }
+
+        @Override
+        public void onComplete(final AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(final AsyncEvent event) {
+            fail(event.getThrowable());
+        }
+
+        @Override
+        public void onStartAsync(final AsyncEvent event) {
+        }
+
+        private void readBlocking() {
+            try {
+                int count;
+                while (!answered.get() && (count = input.read(buffer)) >= 0) {
+                    decode(count);
+                }
+                finish();
+            } catch (IOException | RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        private synchronized void decode(final int count) {
+            if (answered.get()) {
+                return;
+            }
+            decoder.feed(buffer, 0, count);
+            validateDecodedRecords();
+            if (validator.isComplete()) {
+                answer(HttpStatus.OK, null, validator.getValidationResult());
+            }
+        }
+
+        private synchronized void finish() {
+            if (answered.get()) {
+                return;
+            }
+            decoder.endOfInput();
+            validateDecodedRecords();
+            answer(HttpStatus.OK, null, validator.getValidationResult());
+        }
+
+        private void validateDecodedRecords() {
+            Record record;
+            while (!validator.isComplete() && (record = decoder.nextRecord()) != null) {
+                validator.accept(record);
+                recordCount++;
+            }
+        }
+
+        // The same status and result per exception as the ControllerExceptionHandler
+        private void fail(final Throwable throwable) {
+            if (throwable instanceof JsonSyntaxException) {
+                log.error("JSON parsing error, exception: {}", throwable.getMessage());
+                answer(HttpStatus.BAD_REQUEST, Result.BAD_REQUEST, null);
+            } else if (throwable instanceof StatementParseException) {
+                log.error("Statement parsing error, exception: {}", throwable.getMessage());
+                answer(HttpStatus.BAD_REQUEST, Result.BAD_REQUEST, null);
+            } else if (throwable instanceof RejectedExecutionException) {
+                log.error("Validation capacity exhausted, exception: {}", throwable.getMessage());
+                answer(HttpStatus.SERVICE_UNAVAILABLE, Result.SERVICE_UNAVAILABLE, null);
+            } else if (throwable instanceof IdempotencyKeyReusedException) {
+                log.error("Idempotency-Key reused, exception: {}", throwable.getMessage());
+                answer(HttpStatus.UNPROCESSABLE_ENTITY, Result.BAD_REQUEST, null);
+            } else if (throwable instanceof InflatedBodyTooLargeException) {
+                log.error("Request body too large, exception: {}", throwable.getMessage());
+                answer(HttpStatus.PAYLOAD_TOO_LARGE, Result.BAD_REQUEST, null);
+            } else {
+                log.error("Internal server error, exception: {}", String.valueOf(throwable));
+                answer(HttpStatus.INTERNAL_SERVER_ERROR, Result.INTERNAL_SERVER_ERROR, null);
+            }
+        }
+
+        // Writes either the validation result or the error result, once, and completes the request
+        private synchronized void answer(final HttpStatus status, final Result errorResult, final ValidationResult validationResult) {
+            if (!answered.compareAndSet(false, true)) {
+                return;
+            }
+            HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+            try {
+                if (validationResult == null) {
+                    writeError(response, status, errorResult);
+                } else {
+                    metrics.recordStage(Stage.STREAM, start);
+                    metrics.recordValidation(recordCount, validationResult);
+                    writeValidationResult(response, validationResult);
+                }
+            } catch (IOException | RuntimeException e) {
+                // The client is gone, there is nobody to tell
+                log.warn("Response could not be written, exception: {}", e.toString());
+            } finally {
+                validator.close();
+                asyncContext.complete();
+            }
+        }
+
+        private void writeValidationResult(final HttpServletResponse response, final ValidationResult validationResult)
+                throws IOException {
+            response.setStatus(HttpStatus.OK.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            List<Record> errorRecords = validationResult.getErrorRecords();
+            String nextCursor = errorRecords.size() > inlineLimit
+                    ? errorRecordStore.store(errorRecords.subList(inlineLimit, errorRecords.size())) : null;
+            Writer writer = new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8);
+            ValidationResultJsonWriter.write(validationResult, inlineLimit, nextCursor, writer);
+            writer.flush();
+        }
+    }
+}
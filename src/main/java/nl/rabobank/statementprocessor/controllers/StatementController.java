@@ -1,33 +1,296 @@
 package nl.rabobank.statementprocessor.controllers;
 
-import nl.rabobank.statementprocessor.view.ValidationResultView;
+import com.google.gson.JsonSyntaxException;
+import nl.rabobank.statementprocessor.cache.ValidationResultCache;
+import nl.rabobank.statementprocessor.codec.BinaryStatementCodec;
+import nl.rabobank.statementprocessor.codec.JsonCodecs;
+import nl.rabobank.statementprocessor.codec.JsonStatementDecoder;
+import nl.rabobank.statementprocessor.codec.ValidationResultJsonWriter;
+import nl.rabobank.statementprocessor.metrics.ValidationMetrics;
+import nl.rabobank.statementprocessor.metrics.ValidationMetrics.Stage;
+import nl.rabobank.statementprocessor.parsers.CsvStatementReader;
+import nl.rabobank.statementprocessor.parsers.JsonStatementReader;
+import nl.rabobank.statementprocessor.parsers.XmlStatementReader;
+import nl.rabobank.statementprocessor.services.ErrorRecordStore;
 import nl.rabobank.statementprocessor.services.ValidationService;
+import nl.rabobank.statementprocessor.model.ColumnarStatement;
+import nl.rabobank.statementprocessor.model.Record;
 import nl.rabobank.statementprocessor.model.Statement;
+import nl.rabobank.statementprocessor.model.ValidationMode;
 import nl.rabobank.statementprocessor.model.ValidationResult;
+import nl.rabobank.statementprocessor.view.ErrorRecordPageView;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.google.gson.Gson;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.SequenceInputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.util.List;
+import java.util.Optional;
 
 @RestController
 public class StatementController {
 
+    public static final String TEXT_CSV_VALUE = "text/csv";
+    public static final String BINARY_STATEMENT_VALUE = "application/x-statement-binary";
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    public static final String MODE = "mode";
+
+    private static final String JSON_FORMAT = "json";
+    private static final String CSV_FORMAT = "csv";
+    private static final String XML_FORMAT = "xml";
+    private static final String BINARY_FORMAT = "binary";
+
     private final ValidationService validationService;
+    private final ValidationMetrics metrics;
+    private final ValidationResultCache cache;
+    private final ErrorRecordStore errorRecordStore;
+    private final int inlineLimit;
+    private final int maxBufferedBody;
 
+    /**
+     * @param inlineLimit     maximum number of error records in a response, the rest is kept in the ErrorRecordStore and
+     *                        is fetched page by page with the cursor in the response, 0 means that all are sent inline
+     * @param maxBufferedBody maximum size of a JSON body that is read into bytes, a larger body is parsed by Gson while
+     *                        it is read
+     */
     @Autowired
-    public StatementController(final ValidationService validationService) {
+    public StatementController(final ValidationService validationService, final ValidationMetrics metrics,
+                               final Optional<ValidationResultCache> cache, final ErrorRecordStore errorRecordStore,
+                               @Value("${statement.error-records.inline-limit:1000}") final int inlineLimit,
+                               @Value("${statement.validation.max-buffered-body:64MB}") final DataSize maxBufferedBody) {
         this.validationService = validationService;
+        this.metrics = metrics;
+        this.cache = cache.orElse(null);
+        this.errorRecordStore = errorRecordStore;
+        this.inlineLimit = inlineLimit > 0 ? inlineLimit : Integer.MAX_VALUE;
+        // One byte more than the maximum is read to tell whether a body is larger, and must still fit in an array
+        this.maxBufferedBody = (int) Math.min(maxBufferedBody.toBytes(), Integer.MAX_VALUE - 16);
     }
 
+    // The body is read into bytes, which are decoded by the JsonStatementDecoder into columns, only a statement in a
+    // form that decoder does not handle is parsed by Gson. The bytes are hashed when the result cache needs a key
+    // A body larger than the buffer limit is not held as bytes, but parsed by Gson while the rest of it is read, and is
+    // then only cached by its Idempotency-Key
+    // A request with an Idempotency-Key is only answered from the cache when its body is the body of the cached result
     @PostMapping(path = "/statement/validate", consumes = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<ValidationResultView> validateStatements(@RequestBody final String json) {
-        Statement statement = new Gson().fromJson(json, Statement.class);
-        ValidationResult validationResult = validationService.validateStatement(statement);
-        return new ResponseEntity<>(new ValidationResultView(validationResult), HttpStatus.OK);
+    public void validateStatements(final InputStream body,
+                                   @RequestHeader(name = IDEMPOTENCY_KEY, required = false) final String idempotencyKey,
+                                   @RequestParam(name = MODE, defaultValue = "full") final ValidationMode mode,
+                                   final HttpServletResponse response) throws IOException {
+        ValidationResultCache.Key key = idempotencyKey(cacheScope(JSON_FORMAT, mode), idempotencyKey);
+        InputStream input = digesting(body, key);
+        if (writeCachedResult(cachedResult(key, input), response)) {
+            return;
+        }
+        byte[] bytes = input.readNBytes(maxBufferedBody + 1);
+        if (bytes.length > maxBufferedBody) {
+            long decodeStart = System.nanoTime();
+            Statement statement = parseStatement(new SequenceInputStream(new ByteArrayInputStream(bytes), input));
+            metrics.recordStage(Stage.DECODE, decodeStart);
+            writeValidationResult(validationService.validateStatement(statement, mode), key, bodyDigest(input), response);
+            return;
+        }
+        byte[] bodyDigest = bodyDigest(input);
+        if (cache != null && key == null) {
+            key = ValidationResultCache.bodyKey(cacheScope(JSON_FORMAT, mode), bytes);
+            if (writeCachedResult(cache.get(key), response)) {
+                return;
+            }
+        }
+        long decodeStart = System.nanoTime();
+        ColumnarStatement columnarStatement = JsonStatementDecoder.decode(bytes);
+        if (columnarStatement != null) {
+            metrics.recordStage(Stage.DECODE, decodeStart);
+            writeValidationResult(validationService.validateColumnarStatement(columnarStatement, mode), key, bodyDigest,
+                    response);
+            return;
+        }
+        Statement statement = parseStatement(new ByteArrayInputStream(bytes));
+        metrics.recordStage(Stage.DECODE, decodeStart);
+        ValidationResult validationResult = validationService.validateStatement(statement, mode);
+        writeValidationResult(validationResult, key, bodyDigest, response);
+    }
+
+    // Streaming variant: records are validated while the request body is being read
+    // The body is not buffered, so a result is only cached for a request with an Idempotency-Key header
+    @PostMapping(path = "/statement/validate/stream", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public void validateStatementStream(final InputStream body,
+                                        @RequestHeader(name = IDEMPOTENCY_KEY, required = false) final String idempotencyKey,
+                                        @RequestParam(name = MODE, defaultValue = "full") final ValidationMode mode,
+                                        final HttpServletResponse response) throws IOException {
+        ValidationResultCache.Key key = idempotencyKey(cacheScope(JSON_FORMAT, mode), idempotencyKey);
+        InputStream input = digesting(body, key);
+        if (writeCachedResult(cachedResult(key, input), response)) {
+            return;
+        }
+        try (JsonStatementReader records = new JsonStatementReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            ValidationResult validationResult = validationService.validateRecords(records, mode);
+            writeValidationResult(validationResult, key, bodyDigest(input), response);
+        }
+    }
+
+    @PostMapping(path = "/statement/validate", consumes = TEXT_CSV_VALUE)
+    public void validateCsvStatement(final InputStream body,
+                                     @RequestHeader(name = IDEMPOTENCY_KEY, required = false) final String idempotencyKey,
+                                     @RequestParam(name = MODE, defaultValue = "full") final ValidationMode mode,
+                                     final HttpServletResponse response) throws IOException {
+        ValidationResultCache.Key key = idempotencyKey(cacheScope(CSV_FORMAT, mode), idempotencyKey);
+        InputStream input = digesting(body, key);
+        if (writeCachedResult(cachedResult(key, input), response)) {
+            return;
+        }
+        try (CsvStatementReader records = new CsvStatementReader(input)) {
+            ValidationResult validationResult = validationService.validateRecords(records, mode);
+            writeValidationResult(validationResult, key, bodyDigest(input), response);
+        }
+    }
+
+    @PostMapping(path = "/statement/validate", consumes = { MediaType.APPLICATION_XML_VALUE, MediaType.TEXT_XML_VALUE })
+    public void validateXmlStatement(final InputStream body,
+                                     @RequestHeader(name = IDEMPOTENCY_KEY, required = false) final String idempotencyKey,
+                                     @RequestParam(name = MODE, defaultValue = "full") final ValidationMode mode,
+                                     final HttpServletResponse response) throws IOException {
+        ValidationResultCache.Key key = idempotencyKey(cacheScope(XML_FORMAT, mode), idempotencyKey);
+        InputStream input = digesting(body, key);
+        if (writeCachedResult(cachedResult(key, input), response)) {
+            return;
+        }
+        try (XmlStatementReader records = new XmlStatementReader(input)) {
+            ValidationResult validationResult = validationService.validateRecords(records, mode);
+            writeValidationResult(validationResult, key, bodyDigest(input), response);
+        }
+    }
+
+    // The compact binary format of BinaryStatementCodec, decoded into columns without building a Record per record
+    @PostMapping(path = "/statement/validate", consumes = BINARY_STATEMENT_VALUE)
+    public void validateBinaryStatement(final InputStream body,
+                                        @RequestHeader(name = IDEMPOTENCY_KEY, required = false) final String idempotencyKey,
+                                        @RequestParam(name = MODE, defaultValue = "full") final ValidationMode mode,
+                                        final HttpServletResponse response) throws IOException {
+        ValidationResultCache.Key key = idempotencyKey(cacheScope(BINARY_FORMAT, mode), idempotencyKey);
+        InputStream input = digesting(body, key);
+        if (writeCachedResult(cachedResult(key, input), response)) {
+            return;
+        }
+        long decodeStart = System.nanoTime();
+        ColumnarStatement statement = BinaryStatementCodec.decode(input);
+        metrics.recordStage(Stage.DECODE, decodeStart);
+        writeValidationResult(validationService.validateColumnarStatement(statement, mode), key, bodyDigest(input),
+                response);
+    }
+
+    // Returns the error records that did not fit in a response, pages have the size of the inline limit
+    @GetMapping(path = "/statement/error-records")
+    public ResponseEntity<ErrorRecordPageView> getErrorRecords(@RequestParam final String cursor) {
+        return errorRecordStore.getPage(cursor, inlineLimit)
+                .map(page -> new ResponseEntity<>(new ErrorRecordPageView(page), HttpStatus.OK))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    private static Statement parseStatement(final InputStream json) {
+        Statement statement = JsonCodecs.gson().fromJson(new InputStreamReader(json, StandardCharsets.UTF_8), Statement.class);
+        if (statement == null || statement.getRecords() == null) {
+            throw new JsonSyntaxException("Statement without records");
+        }
+        return statement;
+    }
+
+    // The same statement has a different result in every mode
+    private static String cacheScope(final String format, final ValidationMode mode) {
+        return mode == ValidationMode.FULL ? format : format + ";" + mode.name();
+    }
+
+    private ValidationResultCache.Key idempotencyKey(final String scope, final String idempotencyKey) {
+        return cache != null && idempotencyKey != null ? ValidationResultCache.idempotencyKey(scope, idempotencyKey) : null;
+    }
+
+    // With an Idempotency-Key the body is digested while it is read, to tell a retry from another body under the key
+    private static InputStream digesting(final InputStream body, final ValidationResultCache.Key key) {
+        return key != null ? new DigestInputStream(body, ValidationResultCache.newBodyDigest()) : body;
+    }
+
+    // Reads the part of the body that a validation which stopped early left unread, so the digest covers all of it
+    // Returns null for a body that is not digested
+    private static byte[] bodyDigest(final InputStream body) throws IOException {
+        if (!(body instanceof DigestInputStream)) {
+            return null;
+        }
+        body.transferTo(OutputStream.nullOutputStream());
+        return ((DigestInputStream) body).getMessageDigest().digest();
+    }
+
+    // The body is only read to the end when a result is cached for the Idempotency-Key
+    private byte[] cachedResult(final ValidationResultCache.Key key, final InputStream body) throws IOException {
+        return key != null ? cache.get(key, () -> bodyDigest(body)) : null;
+    }
+
+    // Returns false, without writing anything, if the result is not cached
+    private boolean writeCachedResult(final byte[] cachedResult, final HttpServletResponse response)
+            throws IOException {
+        if (cachedResult == null) {
+            return false;
+        }
+        long renderStart = System.nanoTime();
+        prepareResponse(response);
+        response.setContentLength(cachedResult.length);
+        response.getOutputStream().write(cachedResult);
+        metrics.recordStage(Stage.RENDER, renderStart);
+        return true;
+    }
+
+    // The response is written straight to the output stream, error record by error record, instead of through a view
+    // A result that is cached is rendered into a byte array first, which is stored and then written
+    private void writeValidationResult(final ValidationResult validationResult, final ValidationResultCache.Key key,
+                                       final byte[] bodyDigest, final HttpServletResponse response) throws IOException {
+        long renderStart = System.nanoTime();
+        prepareResponse(response);
+        String nextCursor = storeRemainingErrorRecords(validationResult.getErrorRecords());
+        if (key == null) {
+            Writer writer = new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8);
+            ValidationResultJsonWriter.write(validationResult, inlineLimit, nextCursor, writer);
+        } else {
+            ByteArrayOutputStream rendered = new ByteArrayOutputStream();
+            ValidationResultJsonWriter.write(validationResult, inlineLimit, nextCursor,
+                    new OutputStreamWriter(rendered, StandardCharsets.UTF_8));
+            byte[] result = rendered.toByteArray();
+            cache.put(key, result, bodyDigest);
+            response.setContentLength(result.length);
+            response.getOutputStream().write(result);
+        }
+        metrics.recordStage(Stage.RENDER, renderStart);
+    }
+
+    // Returns the cursor of the error records beyond the inline limit, or null if there are none
+    private String storeRemainingErrorRecords(final List<Record> errorRecords) {
+        if (errorRecords == null || errorRecords.size() <= inlineLimit) {
+            return null;
+        }
+        return errorRecordStore.store(errorRecords.subList(inlineLimit, errorRecords.size()));
+    }
+
+    private static void prepareResponse(final HttpServletResponse response) {
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
     }
-}
\ No newline at end of file
+}
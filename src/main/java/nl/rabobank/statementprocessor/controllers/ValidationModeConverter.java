@@ -0,0 +1,21 @@
+package nl.rabobank.statementprocessor.controllers;
+
+import nl.rabobank.statementprocessor.model.ValidationMode;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/**
+ * Converts the mode request parameter, ignoring case, so that both ?mode=summary and ?mode=SUMMARY are accepted
+ * An unknown mode is rejected with 400 Bad Request
+ */
+
+@Component
+public class ValidationModeConverter implements Converter<String, ValidationMode> {
+
+    @Override
+    public ValidationMode convert(final String source) {
+        return ValidationMode.valueOf(source.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,15 @@
+package nl.rabobank.statementprocessor.filters;
+
+/**
+ * Exception that is thrown when a compressed request body inflates to more than the maximum decompressed size of the
+ * RequestDecompressionFilter
+ */
+
+public class InflatedBodyTooLargeException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public InflatedBodyTooLargeException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,265 @@
+package nl.rabobank.statementprocessor.filters;
+
+import nl.rabobank.statementprocessor.parsers.StatementParseException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Filter that decompresses request bodies with a gzip or deflate Content-Encoding
+ * The body is inflated while it is being read, so the parsers see the plain statement and no inflated copy of the
+ * whole body is made. To the rest of the application the request looks like an uncompressed one: the Content-Encoding
+ * and Content-Length headers are hidden
+ * Other encodings are rejected with 415 Unsupported Media Type, a corrupt body results in a StatementParseException
+ * As the Content-Length no longer bounds what the application reads, the inflated body is limited by itself: a body
+ * that inflates to more than the maximum results in an InflatedBodyTooLargeException when the excess is read
+ * A decompressed body can only be read blocking, which the request tells by the BLOCKING_READ attribute
+ */
+
+@Component
+public class RequestDecompressionFilter extends OncePerRequestFilter {
+
+    public static final String BLOCKING_READ = RequestDecompressionFilter.class.getName() + ".BLOCKING_READ";
+
+    static final String SUPPORTED_ENCODINGS = "gzip, deflate";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final List<String> HIDDEN_HEADERS = List.of(
+            HttpHeaders.CONTENT_ENCODING.toLowerCase(Locale.ROOT), HttpHeaders.CONTENT_LENGTH.toLowerCase(Locale.ROOT));
+
+    private enum Encoding { IDENTITY, GZIP, DEFLATE }
+
+    private final long maxInflatedBytes;
+
+    /**
+     * @param maxInflatedSize maximum size of a decompressed request body, 0 means no limit
+     */
+    @Autowired
+    public RequestDecompressionFilter(@Value("${statement.decompression.max-inflated-size:1GB}") final DataSize maxInflatedSize) {
+        this.maxInflatedBytes = maxInflatedSize.toBytes() > 0 ? maxInflatedSize.toBytes() : Long.MAX_VALUE;
+    }
+
+    @Override
+    protected void doFilterInternal(final HttpServletRequest request, final HttpServletResponse response,
+                                    final FilterChain filterChain) throws ServletException, IOException {
+        String contentEncoding = request.getHeader(HttpHeaders.CONTENT_ENCODING);
+        Encoding encoding = contentEncoding == null ? Encoding.IDENTITY : parse(contentEncoding);
+        if (encoding == null) {
+            response.setStatus(HttpStatus.UNSUPPORTED_MEDIA_TYPE.value());
+            response.setHeader(HttpHeaders.ACCEPT_ENCODING, SUPPORTED_ENCODINGS);
+            return;
+        }
+        if (encoding == Encoding.IDENTITY) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        DecompressedRequest decompressedRequest = new DecompressedRequest(request, encoding, maxInflatedBytes);
+        decompressedRequest.setAttribute(BLOCKING_READ, Boolean.TRUE);
+        try {
+            filterChain.doFilter(decompressedRequest, response);
+        } finally {
+            decompressedRequest.release();
+        }
+    }
+
+    // Returns null for an encoding that is not supported, stacked encodings (such as "deflate, gzip") are not
+    private static Encoding parse(final String contentEncoding) {
+        switch (contentEncoding.trim().toLowerCase(Locale.ROOT)) {
+            case "":
+            case "identity":
+                return Encoding.IDENTITY;
+            case "gzip":
+            case "x-gzip":
+                return Encoding.GZIP;
+            case "deflate":
+                return Encoding.DEFLATE;
+            default:
+                return null;
+        }
+    }
+
+    private static final class DecompressedRequest extends HttpServletRequestWrapper {
+
+        private final Encoding encoding;
+        private final long maxInflatedBytes;
+        private ServletInputStream inputStream;
+
+        private DecompressedRequest(final HttpServletRequest request, final Encoding encoding, final long maxInflatedBytes) {
+            super(request);
+            this.encoding = encoding;
+            this.maxInflatedBytes = maxInflatedBytes;
+        }
+
+        // The decompressing stream is created on first use, as the gzip header is read right away
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (inputStream == null) {
+                inputStream = new InflatingInputStream(super.getInputStream(), encoding, maxInflatedBytes);
+            }
+            return inputStream;
+        }
+
+        // Frees the native memory of the inflater, also when the body was not read to the end
+        private void release() throws IOException {
+            if (inputStream != null) {
+                inputStream.close();
+            }
+        }
+
+        @Override
+        public int getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return -1L;
+        }
+
+        @Override
+        public String getHeader(final String name) {
+            return isHidden(name) ? null : super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(final String name) {
+            return isHidden(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaderNames() {
+            List<String> names = Collections.list(super.getHeaderNames());
+            names.removeIf(DecompressedRequest::isHidden);
+            return Collections.enumeration(names);
+        }
+
+        @Override
+        public int getIntHeader(final String name) {
+            return isHidden(name) ? -1 : super.getIntHeader(name);
+        }
+
+        private static boolean isHidden(final String name) {
+            return HIDDEN_HEADERS.contains(name.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    private static final class InflatingInputStream extends ServletInputStream {
+
+        private final ServletInputStream compressed;
+        private final Encoding encoding;
+        private final long maxInflatedBytes;
+        private InputStream inflated;
+        private long inflatedBytes;
+        private boolean finished;
+
+        private InflatingInputStream(final ServletInputStream compressed, final Encoding encoding,
+                                     final long maxInflatedBytes) {
+            this.compressed = compressed;
+            this.encoding = encoding;
+            this.maxInflatedBytes = maxInflatedBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                int value = inflated().read();
+                finished = value < 0;
+                if (!finished) {
+                    count(1);
+                }
+                return value;
+            } catch (ZipException | EOFException e) {
+                throw corrupt(e);
+            }
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            try {
+                int count = inflated().read(buffer, offset, length);
+                finished = count < 0;
+                if (count > 0) {
+                    count(count);
+                }
+                return count;
+            } catch (ZipException | EOFException e) {
+                throw corrupt(e);
+            }
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        // Non-blocking reads would have to be decompressed as they arrive, which this stream does not do, see BLOCKING_READ
+        @Override
+        public void setReadListener(final ReadListener readListener) {
+            throw new UnsupportedOperationException("Compressed request bodies can only be read blocking");
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (inflated != null) {
+                inflated.close();
+            } else {
+                compressed.close();
+            }
+        }
+
+        // Fails as soon as the inflated body exceeds the maximum, so a small compressed body cannot fill the heap or disk
+        private void count(final int bytes) {
+            inflatedBytes += bytes;
+            if (inflatedBytes > maxInflatedBytes) {
+                throw new InflatedBodyTooLargeException(
+                        "Decompressed request body exceeds the maximum of " + maxInflatedBytes + " bytes");
+            }
+        }
+
+        private InputStream inflated() throws IOException {
+            if (inflated == null) {
+                inflated = encoding == Encoding.GZIP ? new GZIPInputStream(compressed, BUFFER_SIZE)
+                        : new InflaterInputStream(compressed, new Inflater(), BUFFER_SIZE) {
+                            @Override
+                            public void close() throws IOException {
+                                super.close();
+                                inf.end();
+                            }
+                        };
+            }
+            return inflated;
+        }
+
+        private static StatementParseException corrupt(final IOException exception) {
+            return new StatementParseException("Invalid compressed request body: " + exception.getMessage(), exception);
+        }
+    }
+}
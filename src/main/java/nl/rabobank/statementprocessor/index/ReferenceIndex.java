@@ -0,0 +1,266 @@
+package nl.rabobank.statementprocessor.index;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.rabobank.statementprocessor.util.LongHashSet;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Index of the transaction references of earlier statements, stored in a memory-mapped file outside the heap
+ * The file is an open-addressing hash table of (reference, first seen) slots, so it survives restarts as-is
+ * A reference is only looked for within a fixed number of slots from its home slot, which keeps every lookup O(1):
+ * - entries older than the window are expired and their slots are reused
+ * - when all slots in reach are taken, the entry that was seen first is evicted, so capacity bounds memory as well
+ * All methods are thread-safe. Lookups lock a stripe of slots instead of the whole index, so that the partitions of a
+ * parallel validation and concurrent statements do not queue up behind one another: the slots in reach of a reference
+ * lie in at most two neighbouring stripes, which are locked in stripe order
+ * A statement adds its references while it is checked, so that a concurrent upload of the same statement finds them,
+ * and removes them again when its validation stops early. Every statement adds them at a time of its own, see
+ * nextStatementTime, so it only removes its own entries
+ */
+
+@Slf4j
+public class ReferenceIndex implements Closeable {
+
+    static final int MAX_PROBES = 16;
+    static final int MAX_CAPACITY = 1 << 26;
+
+    private static final long MAGIC = 0x5354_4D54_4944_5831L;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 16;
+    private static final long EMPTY = 0L;
+    // A removed entry counts as seen at the start of the epoch, so it is expired: probes go on past it and it is reused
+    private static final long REMOVED = 1L;
+    private static final int SLOTS_PER_STRIPE = 1024;
+    private static final int MAX_STRIPES = 256;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer table;
+    private final int mask;
+    private final long windowMillis;
+    private final Object[] stripeLocks;
+    private final int stripeShift;
+    private final AtomicLong lastStatementTime = new AtomicLong();
+
+    /**
+     * Opens the index in the given file, or creates it if it does not exist or was created with another capacity
+     * @param capacity number of slots, a power of two of at most 2^26 (16 bytes per slot)
+     */
+    public ReferenceIndex(final Path file, final int capacity, final long windowMillis) throws IOException {
+        if (capacity <= 0 || capacity > MAX_CAPACITY || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two of at most " + MAX_CAPACITY);
+        }
+        if (windowMillis <= 0) {
+            throw new IllegalArgumentException("Window must be positive");
+        }
+        this.mask = capacity - 1;
+        this.windowMillis = windowMillis;
+        int stripeCount = Math.max(1, Math.min(MAX_STRIPES, capacity / SLOTS_PER_STRIPE));
+        this.stripeLocks = new Object[stripeCount];
+        Arrays.setAll(stripeLocks, stripe -> new Object());
+        this.stripeShift = Integer.numberOfTrailingZeros(capacity / stripeCount);
+
+        int fileSize = HEADER_SIZE + capacity * SLOT_SIZE;
+        boolean reuse = Files.exists(file) && Files.size(file) == fileSize && hasValidHeader(file, capacity);
+        if (!reuse) {
+            // A new file is zero-filled, which marks every slot as empty
+            Files.deleteIfExists(file);
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.table = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+
+        if (reuse) {
+            log.info("Opened reference index {} with {} slots", file, capacity);
+        } else {
+            log.info("Created reference index {} with {} slots", file, capacity);
+            table.putLong(0, MAGIC);
+            table.putInt(8, VERSION);
+            table.putInt(12, capacity);
+        }
+    }
+
+    /**
+     * Time (epoch millis) at which a statement adds its references, it differs from that of every other statement
+     * It runs ahead of the clock by at most the number of statements that started within the same millisecond
+     */
+    public long nextStatementTime() {
+        long now = System.currentTimeMillis();
+        return lastStatementTime.updateAndGet(last -> Math.max(last + 1, now));
+    }
+
+    /**
+     * Records that the reference was seen at the given time (epoch millis)
+     * @return true if the reference was already seen within the window before that time
+     */
+    public boolean checkAndAdd(final long reference, final long now) {
+        int home = hash(reference) & mask;
+        Object firstLock = stripeLocks[firstStripe(home)];
+        Object secondLock = stripeLocks[secondStripe(home)];
+        synchronized (firstLock) {
+            synchronized (secondLock) {
+                return checkAndAdd(reference, home, now);
+            }
+        }
+    }
+
+    private boolean checkAndAdd(final long reference, final int home, final long now) {
+        long cutoff = now - windowMillis;
+        int freeSlot = -1;
+        int oldestSlot = home;
+        long oldestTime = Long.MAX_VALUE;
+
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (home + probe) & mask;
+            long firstSeen = firstSeen(slot);
+            if (firstSeen == EMPTY) {
+                // Slots are never emptied again, so the reference cannot be further away
+                if (freeSlot < 0) {
+                    freeSlot = slot;
+                }
+                break;
+            }
+            if (firstSeen < cutoff) {
+                if (freeSlot < 0) {
+                    freeSlot = slot;
+                }
+                continue;
+            }
+            if (reference(slot) == reference) {
+                return true;
+            }
+            if (firstSeen < oldestTime) {
+                oldestTime = firstSeen;
+                oldestSlot = slot;
+            }
+        }
+
+        int slot = freeSlot >= 0 ? freeSlot : oldestSlot;
+        int offset = offset(slot);
+        table.putLong(offset, reference);
+        table.putLong(offset + 8, Math.max(now, 1L));
+        return false;
+    }
+
+    /**
+     * Removes the reference if checkAndAdd added it at the given time, for a statement whose validation stopped early
+     * An entry that was added at another time, by another statement, is kept
+     */
+    public void remove(final long reference, final long now) {
+        int home = hash(reference) & mask;
+        Object firstLock = stripeLocks[firstStripe(home)];
+        Object secondLock = stripeLocks[secondStripe(home)];
+        synchronized (firstLock) {
+            synchronized (secondLock) {
+                remove(reference, home, Math.max(now, 1L));
+            }
+        }
+    }
+
+    private void remove(final long reference, final int home, final long addedAt) {
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (home + probe) & mask;
+            long firstSeen = firstSeen(slot);
+            if (firstSeen == EMPTY) {
+                return;
+            }
+            if (firstSeen == addedAt && reference(slot) == reference) {
+                table.putLong(offset(slot) + 8, REMOVED);
+                return;
+            }
+        }
+    }
+
+    // Removes all references that were added at the given time, as remove does
+    public void removeAll(final LongHashSet references, final long now) {
+        references.forEach(reference -> remove(reference, now));
+    }
+
+    public boolean contains(final long reference, final long now) {
+        int home = hash(reference) & mask;
+        Object firstLock = stripeLocks[firstStripe(home)];
+        Object secondLock = stripeLocks[secondStripe(home)];
+        synchronized (firstLock) {
+            synchronized (secondLock) {
+                return contains(reference, home, now);
+            }
+        }
+    }
+
+    private boolean contains(final long reference, final int home, final long now) {
+        long cutoff = now - windowMillis;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (home + probe) & mask;
+            long firstSeen = firstSeen(slot);
+            if (firstSeen == EMPTY) {
+                return false;
+            }
+            if (firstSeen >= cutoff && reference(slot) == reference) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    // Writes the changed pages to disk, they survive a restart of the application without this too
+    public synchronized void flush() {
+        table.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        table.force();
+        channel.close();
+    }
+
+    // The stripes of the first and the last slot in reach of the home slot, the lower one first, the same one when the
+    // slots are all in one stripe
+    private int firstStripe(final int home) {
+        return Math.min(home >>> stripeShift, ((home + MAX_PROBES - 1) & mask) >>> stripeShift);
+    }
+
+    private int secondStripe(final int home) {
+        return Math.max(home >>> stripeShift, ((home + MAX_PROBES - 1) & mask) >>> stripeShift);
+    }
+
+    private long reference(final int slot) {
+        return table.getLong(offset(slot));
+    }
+
+    private long firstSeen(final int slot) {
+        return table.getLong(offset(slot) + 8);
+    }
+
+    private static int offset(final int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private static boolean hasValidHeader(final Path file, final int capacity) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(16);
+        try (FileChannel existing = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (header.hasRemaining() && existing.read(header) >= 0) {
+                // Keep reading until the header is complete
+            }
+        }
+        return !header.hasRemaining() && header.getLong(0) == MAGIC && header.getInt(8) == VERSION
+                && header.getInt(12) == capacity;
+    }
+
+    private static int hash(final long reference) {
+        long hash = reference * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
@@ -0,0 +1,100 @@
+package nl.rabobank.statementprocessor.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import nl.rabobank.statementprocessor.model.Result;
+import nl.rabobank.statementprocessor.model.ValidationResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class that records the metrics of the validation pipeline, exposed through Actuator (/actuator/metrics, /actuator/prometheus)
+ * - statement.stage: time spent per stage, tagged with the stage, with a percentile histogram
+ * - statement.records and statement.error.records: number of (error) records per validated statement
+ * - statement.results: number of validated statements per Result
+ * All meters are registered up front, recording only adds to them
+ */
+
+@Component
+public class ValidationMetrics {
+
+    public enum Stage {
+        // Reading the statement JSON into a Statement
+        DECODE,
+        // Reading and validating the records of a streamed statement, which happen interleaved
+        STREAM,
+        // Checking duplicate references and end balances together, in a single pass
+        SCAN,
+        // The separate passes of the parallel validation
+        BALANCE_CHECK,
+        BALANCE_CHAIN,
+        PARTITION,
+        DUPLICATE_CHECK,
+        // Gathering the error records in input order
+        COLLECT,
+        // Writing the response body
+        RENDER;
+
+        String tagValue() {
+            return name().toLowerCase(Locale.ROOT).replace('_', '-');
+        }
+    }
+
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+    private final Map<Result, Counter> resultCounters = new EnumMap<>(Result.class);
+    private final DistributionSummary records;
+    private final DistributionSummary errorRecords;
+
+    @Autowired
+    public ValidationMetrics(final MeterRegistry registry) {
+        for (Stage stage : Stage.values()) {
+            stageTimers.put(stage, Timer.builder("statement.stage")
+                    .description("Time spent in a stage of statement validation")
+                    .tag("stage", stage.tagValue())
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        for (Result result : Result.values()) {
+            resultCounters.put(result, Counter.builder("statement.results")
+                    .description("Number of validated statements per result")
+                    .tag("result", result.name())
+                    .register(registry));
+        }
+        this.records = DistributionSummary.builder("statement.records")
+                .description("Number of records per validated statement")
+                .baseUnit("records")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.errorRecords = DistributionSummary.builder("statement.error.records")
+                .description("Number of error records per validated statement")
+                .baseUnit("records")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    // Metrics that are not published anywhere, for services that are created outside of Spring
+    public static ValidationMetrics noop() {
+        return new ValidationMetrics(new CompositeMeterRegistry());
+    }
+
+    // Records the time since startNanos (System.nanoTime) for the stage and returns the current time for the next one
+    public long recordStage(final Stage stage, final long startNanos) {
+        long now = System.nanoTime();
+        stageTimers.get(stage).record(now - startNanos, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    public void recordValidation(final long recordCount, final ValidationResult validationResult) {
+        records.record(recordCount);
+        errorRecords.record(validationResult.getErrorRecords().size());
+        resultCounters.get(validationResult.getResult()).increment();
+    }
+}
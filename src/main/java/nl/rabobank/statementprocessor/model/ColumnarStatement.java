@@ -0,0 +1,224 @@
+package nl.rabobank.statementprocessor.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Class that represents a statement as columns instead of Record objects, for validating large statements
+ * Every field is a primitive array indexed by record, account numbers are dictionary-encoded: every record holds the
+ * index of its account number in a dictionary of the distinct account numbers of the statement
+ * Descriptions are not kept, they are not validated, but a statement may be given a function that produces the
+ * description of a record from where it was decoded, which is only called for the records that are turned back into
+ * Records, such as error records
+ */
+
+public final class ColumnarStatement {
+
+    private final int size;
+    private final long[] transactionReferences;
+    private final long[] startBalances;
+    private final long[] mutations;
+    private final long[] endBalances;
+    private final int[] accountIds;
+    private final String[] accountNumbers;
+    private final IntFunction<String> descriptions;
+
+    /**
+     * Wraps the given columns without copying them, they may be longer than size
+     * @param accountNumbers dictionary that the account ids refer to
+     */
+    public ColumnarStatement(final int size, final long[] transactionReferences, final long[] startBalances,
+                             final long[] mutations, final long[] endBalances, final int[] accountIds,
+                             final String[] accountNumbers) {
+        this(size, transactionReferences, startBalances, mutations, endBalances, accountIds, accountNumbers, null);
+    }
+
+    /**
+     * @param descriptions returns the description of the record at an index, or null for records without descriptions
+     */
+    public ColumnarStatement(final int size, final long[] transactionReferences, final long[] startBalances,
+                             final long[] mutations, final long[] endBalances, final int[] accountIds,
+                             final String[] accountNumbers, final IntFunction<String> descriptions) {
+        if (size < 0 || transactionReferences.length < size || startBalances.length < size || mutations.length < size
+                || endBalances.length < size || accountIds.length < size) {
+            throw new IllegalArgumentException("Every column must hold at least " + size + " values");
+        }
+        this.size = size;
+        this.transactionReferences = transactionReferences;
+        this.startBalances = startBalances;
+        this.mutations = mutations;
+        this.endBalances = endBalances;
+        this.accountIds = accountIds;
+        this.accountNumbers = accountNumbers;
+        this.descriptions = descriptions;
+    }
+
+    public static ColumnarStatement of(final Statement statement) {
+        Builder builder = builder(statement.getRecords().size());
+        statement.getRecords().forEach(builder::add);
+        return builder.build();
+    }
+
+    public static ColumnarStatement of(final Iterator<Record> records) {
+        Builder builder = builder(16);
+        records.forEachRemaining(builder::add);
+        return builder.build();
+    }
+
+    public static Builder builder(final int expectedSize) {
+        return new Builder(expectedSize);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getTransactionReference(final int index) {
+        return transactionReferences[index];
+    }
+
+    public long getStartBalance(final int index) {
+        return startBalances[index];
+    }
+
+    public long getMutation(final int index) {
+        return mutations[index];
+    }
+
+    public long getEndBalance(final int index) {
+        return endBalances[index];
+    }
+
+    public String getAccountNumber(final int index) {
+        return accountNumbers[accountIds[index]];
+    }
+
+    public int getAccountId(final int index) {
+        return accountIds[index];
+    }
+
+    public int getAccountCount() {
+        return accountNumbers.length;
+    }
+
+    // The account number of the account id, the inverse of getAccountId
+    public String getAccountNumberOfId(final int accountId) {
+        return accountNumbers[accountId];
+    }
+
+    // The record at the index, without its description unless the statement has a function for them
+    public Record toRecord(final int index) {
+        return Record.builder()
+                .transactionReference(transactionReferences[index])
+                .accountNumber(getAccountNumber(index))
+                .description(descriptions != null ? descriptions.apply(index) : null)
+                .startBalance(startBalances[index])
+                .mutation(mutations[index])
+                .endBalance(endBalances[index])
+                .build();
+    }
+
+    /**
+     * Checks the end balance of every record, like Record.validateEndBalance
+     * @return bit mask words in the layout of BitSet.toLongArray(): bit i is set if record i has an incorrect end balance
+     */
+    public long[] incorrectEndBalances() {
+        long[] words = new long[(size + 63) >>> 6];
+        int fullWords = size >>> 6;
+        for (int word = 0; word < fullWords; word++) {
+            words[word] = incorrectEndBalanceWord(word << 6, 64);
+        }
+        if (fullWords < words.length) {
+            words[fullWords] = incorrectEndBalanceWord(fullWords << 6, size - (fullWords << 6));
+        }
+        return words;
+    }
+
+    // Without branches: the difference is 0 for a correct record, and (d | -d) >>> 63 turns any other value into 1
+    private long incorrectEndBalanceWord(final int start, final int count) {
+        long[] starts = startBalances;
+        long[] mutationColumn = mutations;
+        long[] ends = endBalances;
+        long word = 0;
+        for (int bit = 0; bit < count; bit++) {
+            int index = start + bit;
+            long difference = starts[index] - ends[index] - mutationColumn[index];
+            word |= ((difference | -difference) >>> 63) << bit;
+        }
+        return word;
+    }
+
+    /**
+     * Class that builds a ColumnarStatement record by record, growing the columns as needed
+     * Account numbers are assigned ids in order of first occurrence
+     */
+    public static final class Builder {
+
+        private final Map<String, Integer> accountIdsByNumber = new HashMap<>();
+        private String[] accountNumbers = new String[16];
+        private long[] transactionReferences;
+        private long[] startBalances;
+        private long[] mutations;
+        private long[] endBalances;
+        private int[] accountIds;
+        private int size;
+
+        private Builder(final int expectedSize) {
+            int capacity = Math.max(16, expectedSize);
+            transactionReferences = new long[capacity];
+            startBalances = new long[capacity];
+            mutations = new long[capacity];
+            endBalances = new long[capacity];
+            accountIds = new int[capacity];
+        }
+
+        public Builder add(final Record record) {
+            return add(record.getTransactionReference(), record.getAccountNumber(), record.getStartBalance(),
+                    record.getMutation(), record.getEndBalance());
+        }
+
+        public Builder add(final long transactionReference, final String accountNumber, final long startBalance,
+                           final long mutation, final long endBalance) {
+            if (size == transactionReferences.length) {
+                grow();
+            }
+            transactionReferences[size] = transactionReference;
+            startBalances[size] = startBalance;
+            mutations[size] = mutation;
+            endBalances[size] = endBalance;
+            accountIds[size] = accountId(accountNumber);
+            size++;
+            return this;
+        }
+
+        public ColumnarStatement build() {
+            return new ColumnarStatement(size, transactionReferences, startBalances, mutations, endBalances, accountIds,
+                    Arrays.copyOf(accountNumbers, accountIdsByNumber.size()));
+        }
+
+        private int accountId(final String accountNumber) {
+            Integer accountId = accountIdsByNumber.get(accountNumber);
+            if (accountId == null) {
+                accountId = accountIdsByNumber.size();
+                if (accountId == accountNumbers.length) {
+                    accountNumbers = Arrays.copyOf(accountNumbers, accountId * 2);
+                }
+                accountNumbers[accountId] = accountNumber;
+                accountIdsByNumber.put(accountNumber, accountId);
+            }
+            return accountId;
+        }
+
+        private void grow() {
+            int capacity = transactionReferences.length * 2;
+            transactionReferences = Arrays.copyOf(transactionReferences, capacity);
+            startBalances = Arrays.copyOf(startBalances, capacity);
+            mutations = Arrays.copyOf(mutations, capacity);
+            endBalances = Arrays.copyOf(endBalances, capacity);
+            accountIds = Arrays.copyOf(accountIds, capacity);
+        }
+    }
+}
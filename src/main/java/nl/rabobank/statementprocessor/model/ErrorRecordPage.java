@@ -0,0 +1,20 @@
+package nl.rabobank.statementprocessor.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Part of the error records of a validation result that were not sent inline
+ * The next cursor is null on the last page
+ */
+
+@Data
+@Builder
+@AllArgsConstructor
+public class ErrorRecordPage {
+    private List<Record> errorRecords;
+    private String nextCursor;
+}
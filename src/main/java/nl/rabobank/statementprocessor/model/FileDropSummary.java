@@ -0,0 +1,23 @@
+package nl.rabobank.statementprocessor.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Class that represents the outcome of validating a set of statement files
+ * Failed files are those that could not be read or parsed, not those with error records
+ */
+
+@Data
+@AllArgsConstructor
+public class FileDropSummary {
+    private int files;
+    private int failedFiles;
+    private long bytes;
+    private long durationNanos;
+
+    // Bytes per nanosecond is the same as gigabytes (10^9 bytes) per second
+    public double getGigabytesPerSecond() {
+        return durationNanos > 0 ? (double) bytes / durationNanos : 0;
+    }
+}
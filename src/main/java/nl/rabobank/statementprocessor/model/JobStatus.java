@@ -0,0 +1,8 @@
+package nl.rabobank.statementprocessor.model;
+
+public enum JobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
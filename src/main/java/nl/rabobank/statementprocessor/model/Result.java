@@ -6,5 +6,6 @@ public enum Result {
     INCORRECT_END_BALANCE,
     DUPLICATE_REFERENCE_INCORRECT_END_BALANCE,
     BAD_REQUEST,
-    INTERNAL_SERVER_ERROR
+    INTERNAL_SERVER_ERROR,
+    SERVICE_UNAVAILABLE
 }
@@ -0,0 +1,22 @@
+package nl.rabobank.statementprocessor.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * Snapshot of the state of an asynchronous validation
+ * The validation result is only present once the job is COMPLETED or FAILED
+ */
+
+@Data
+@Builder
+@AllArgsConstructor
+public class ValidationJob {
+    private String id;
+    private JobStatus status;
+    private ValidationResult validationResult;
+    private Instant finishedAt;
+}
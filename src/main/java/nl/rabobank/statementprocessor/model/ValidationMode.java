@@ -0,0 +1,15 @@
+package nl.rabobank.statementprocessor.model;
+
+/**
+ * How much of a statement is validated, and how many error records are reported
+ */
+
+public enum ValidationMode {
+    // Every record is validated and every error record is reported
+    FULL,
+    // Only the Result is reported, validation stops as soon as further records cannot change it
+    SUMMARY,
+    // Only the first error record is reported, validation stops as soon as further records cannot change the Result
+    // The Result is the FULL one, as for SUMMARY
+    FAILFAST
+}
@@ -0,0 +1,253 @@
+package nl.rabobank.statementprocessor.parsers;
+
+import nl.rabobank.statementprocessor.model.Record;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Class that reads the records of a CSV statement one at a time
+ * The first line is a header that names the column of every field, columns with other names are ignored
+ * The input is tokenized byte by byte (RFC 4180 quoting, LF or CRLF line endings) and numbers are parsed straight
+ * from the bytes, only the account number and description are decoded into strings (UTF-8)
+ */
+
+public class CsvStatementReader implements Iterator<Record>, Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int END_OF_INPUT = -1;
+    private static final Set<RecordField> REQUIRED_COLUMNS = EnumSet.of(RecordField.TRANSACTION_REFERENCE,
+            RecordField.START_BALANCE, RecordField.MUTATION, RecordField.END_BALANCE);
+
+    // What terminated the field that was read last
+    private static final int FIELD_END = 0;
+    private static final int LINE_END = 1;
+    private static final int INPUT_END = 2;
+
+    private final InputStream input;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+
+    private byte[] field = new byte[128];
+    private int fieldLength;
+    private long lineNumber;
+
+    private RecordField[] columns;
+    private Record next;
+    private boolean finished;
+
+    public CsvStatementReader(final InputStream input) {
+        this.input = input;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !finished) {
+            try {
+                if (columns == null) {
+                    readHeader();
+                }
+                next = readRecord();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            finished = next == null;
+        }
+        return next != null;
+    }
+
+    @Override
+    public Record next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Record record = next;
+        next = null;
+        return record;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    private void readHeader() throws IOException {
+        List<RecordField> header = new ArrayList<>();
+        Set<RecordField> missingColumns = EnumSet.copyOf(REQUIRED_COLUMNS);
+        int terminator;
+        do {
+            terminator = readField();
+            RecordField column = RecordField.fromName(fieldAsString());
+            if (column != null && !missingColumns.remove(column) && header.contains(column)) {
+                throw error("Duplicate column " + column.fieldName());
+            }
+            header.add(column);
+        } while (terminator == FIELD_END);
+        lineNumber++;
+        if (!missingColumns.isEmpty()) {
+            throw error("Missing column(s) " + missingColumns + " in header");
+        }
+        columns = header.toArray(new RecordField[0]);
+    }
+
+    // Returns null when the input is exhausted, blank lines are skipped
+    private Record readRecord() throws IOException {
+        while (true) {
+            Record.RecordBuilder builder = Record.builder();
+            int column = 0;
+            int terminator;
+            do {
+                terminator = readField();
+                if (column == 0 && terminator != FIELD_END && fieldLength == 0) {
+                    break;
+                }
+                if (column < columns.length && columns[column] != null) {
+                    setField(builder, columns[column]);
+                }
+                column++;
+            } while (terminator == FIELD_END);
+            lineNumber++;
+
+            if (column == 0) {
+                if (terminator == INPUT_END) {
+                    return null;
+                }
+                continue;
+            }
+            if (column != columns.length) {
+                throw error("Expected " + columns.length + " fields but found " + column);
+            }
+            return builder.build();
+        }
+    }
+
+    private void setField(final Record.RecordBuilder builder, final RecordField column) {
+        if (column.isNumeric()) {
+            column.setNumber(builder, fieldAsLong(column));
+        } else {
+            column.setText(builder, fieldAsString());
+        }
+    }
+
+    // Reads one field into the field buffer, removing the quotes if it is quoted, and returns what terminated it
+    private int readField() throws IOException {
+        fieldLength = 0;
+        int current = read();
+        if (current == '"') {
+            while (true) {
+                current = read();
+                if (current == END_OF_INPUT) {
+                    throw error("Unterminated quoted field");
+                }
+                if (current == '"') {
+                    current = read();
+                    if (current != '"') {
+                        break;
+                    }
+                }
+                append(current);
+            }
+        } else {
+            while (current != END_OF_INPUT && current != ',' && current != '\n' && current != '\r') {
+                append(current);
+                current = read();
+            }
+        }
+        return terminator(current);
+    }
+
+    private int terminator(final int current) throws IOException {
+        switch (current) {
+            case ',':
+                return FIELD_END;
+            case END_OF_INPUT:
+                return INPUT_END;
+            case '\r':
+                if (peek() == '\n') {
+                    position++;
+                }
+                return LINE_END;
+            case '\n':
+                return LINE_END;
+            default:
+                throw error("Unexpected character '" + (char) current + "' after quoted field");
+        }
+    }
+
+    private long fieldAsLong(final RecordField column) {
+        int index = 0;
+        boolean negative = false;
+        if (fieldLength > 0 && (field[0] == '-' || field[0] == '+')) {
+            negative = field[0] == '-';
+            index++;
+        }
+        if (index == fieldLength) {
+            throw error("Missing number for " + column.fieldName());
+        }
+        // Accumulate negatively, like Long.parseLong, so that Long.MIN_VALUE can be represented
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplyLimit = limit / 10;
+        long result = 0;
+        for (; index < fieldLength; index++) {
+            int digit = field[index] - '0';
+            if (digit < 0 || digit > 9) {
+                throw error("Invalid number '" + fieldAsString() + "' for " + column.fieldName());
+            }
+            if (result < multiplyLimit || result * 10 < limit + digit) {
+                throw error("Number '" + fieldAsString() + "' for " + column.fieldName() + " is out of range");
+            }
+            result = result * 10 - digit;
+        }
+        return negative ? result : -result;
+    }
+
+    private String fieldAsString() {
+        return new String(field, 0, fieldLength, StandardCharsets.UTF_8);
+    }
+
+    private void append(final int value) {
+        if (fieldLength == field.length) {
+            field = Arrays.copyOf(field, field.length * 2);
+        }
+        field[fieldLength++] = (byte) value;
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return END_OF_INPUT;
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return END_OF_INPUT;
+        }
+        return buffer[position] & 0xFF;
+    }
+
+    private boolean fill() throws IOException {
+        int count = input.read(buffer, 0, buffer.length);
+        while (count == 0) {
+            count = input.read(buffer, 0, buffer.length);
+        }
+        position = 0;
+        limit = Math.max(count, 0);
+        return count > 0;
+    }
+
+    private StatementParseException error(final String message) {
+        return new StatementParseException(message + " (line " + (lineNumber + 1) + ")");
+    }
+}
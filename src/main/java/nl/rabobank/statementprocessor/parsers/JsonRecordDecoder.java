@@ -0,0 +1,244 @@
+package nl.rabobank.statementprocessor.parsers;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.google.gson.JsonSyntaxException;
+import nl.rabobank.statementprocessor.model.Record;
+
+import java.io.IOException;
+
+/**
+ * Class that decodes the records of a JSON statement from chunks of bytes as they arrive, instead of reading them from
+ * a stream like JsonStatementReader, so that it never waits for input
+ * The bytes are fed in with feed, after which nextRecord returns the records that are complete, and null once it needs
+ * more input. The end of the input is signalled with endOfInput
+ * Records are read like RecordTypeAdapter reads them: a null keeps the default value, numbers may be quoted and
+ * unknown fields are skipped. Only the first records array of the statement is read
+ * Tokenizing is done by Jackson's non-blocking parser, as Gson has none; errors are reported as a JsonSyntaxException,
+ * the same way the other JSON parsers report them
+ */
+
+public class JsonRecordDecoder {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final String RECORDS_FIELD = "records";
+
+    private enum State { STATEMENT, STATEMENT_FIELDS, RECORDS, RECORD_ARRAY, RECORD_FIELDS, RECORD_VALUE, SKIP, END }
+
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+
+    private State state = State.STATEMENT;
+    // Where to continue after a skipped value, and how deep the skipping is inside it
+    private State stateAfterSkip;
+    private int skipDepth;
+    private boolean recordsRead;
+
+    private String fieldName;
+    private Record.RecordBuilder record;
+
+    public JsonRecordDecoder() {
+        try {
+            this.parser = JSON_FACTORY.createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    // Returns true if the bytes fed so far are consumed, only then can more be fed
+    public boolean needsInput() {
+        return feeder.needMoreInput();
+    }
+
+    /**
+     * Feeds the next chunk of the body, the bytes are not copied and must not be changed until they are consumed, that
+     * is until nextRecord returned null
+     */
+    public void feed(final byte[] bytes, final int offset, final int length) {
+        try {
+            feeder.feedInput(bytes, offset, offset + length);
+        } catch (IOException e) {
+            throw new JsonSyntaxException(e.getMessage(), e);
+        }
+    }
+
+    public void endOfInput() {
+        feeder.endOfInput();
+    }
+
+    /**
+     * Returns the next record, or null if more input is needed for it or if the statement has no more records
+     * @throws JsonSyntaxException if the input is not a valid statement, or if it ends before the statement does
+     */
+    public Record nextRecord() {
+        try {
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.NOT_AVAILABLE) {
+                if (token == null) {
+                    if (state != State.END) {
+                        throw new JsonSyntaxException("End of input before the end of the statement");
+                    }
+                    return null;
+                }
+                Record decoded = accept(token);
+                if (decoded != null) {
+                    return decoded;
+                }
+            }
+            return null;
+        } catch (IOException e) {
+            throw new JsonSyntaxException(e.getMessage(), e);
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    // Returns true once the whole statement has been decoded
+    public boolean isFinished() {
+        return state == State.END;
+    }
+
+    // Returns the record that the token completes, if any
+    private Record accept(final JsonToken token) throws IOException {
+        switch (state) {
+            case STATEMENT:
+                expect(token, JsonToken.START_OBJECT);
+                state = State.STATEMENT_FIELDS;
+                return null;
+            case STATEMENT_FIELDS:
+                if (token == JsonToken.END_OBJECT) {
+                    state = State.END;
+                } else if (RECORDS_FIELD.equals(parser.getCurrentName()) && !recordsRead) {
+                    state = State.RECORDS;
+                } else {
+                    skipNext(State.STATEMENT_FIELDS);
+                }
+                return null;
+            case RECORDS:
+                if (token == JsonToken.START_ARRAY) {
+                    recordsRead = true;
+                    state = State.RECORD_ARRAY;
+                } else {
+                    skip(token, State.STATEMENT_FIELDS);
+                }
+                return null;
+            case RECORD_ARRAY:
+                if (token == JsonToken.END_ARRAY) {
+                    state = State.STATEMENT_FIELDS;
+                } else {
+                    expect(token, JsonToken.START_OBJECT);
+                    record = Record.builder();
+                    state = State.RECORD_FIELDS;
+                }
+                return null;
+            case RECORD_FIELDS:
+                if (token == JsonToken.END_OBJECT) {
+                    state = State.RECORD_ARRAY;
+                    Record decoded = record.build();
+                    record = null;
+                    return decoded;
+                }
+                fieldName = parser.getCurrentName();
+                state = State.RECORD_VALUE;
+                return null;
+            case RECORD_VALUE:
+                state = State.RECORD_FIELDS;
+                if (token != JsonToken.VALUE_NULL) {
+                    setField(token);
+                }
+                return null;
+            case SKIP:
+                skip(token, stateAfterSkip);
+                return null;
+            default:
+                throw new JsonSyntaxException("JSON document was not fully consumed.");
+        }
+    }
+
+    private void setField(final JsonToken token) throws IOException {
+        switch (fieldName) {
+            case "transactionReference":
+                record.transactionReference(longValue(token));
+                break;
+            case "accountNumber":
+                record.accountNumber(stringValue(token));
+                break;
+            case "description":
+                record.description(stringValue(token));
+                break;
+            case "startBalance":
+                record.startBalance(longValue(token));
+                break;
+            case "mutation":
+                record.mutation(longValue(token));
+                break;
+            case "endBalance":
+                record.endBalance(longValue(token));
+                break;
+            default:
+                skip(token, State.RECORD_FIELDS);
+        }
+    }
+
+    // Like Gson's nextLong: integers, and strings or decimals that hold one
+    private long longValue(final JsonToken token) throws IOException {
+        switch (token) {
+            case VALUE_NUMBER_INT:
+                return parser.getLongValue();
+            case VALUE_NUMBER_FLOAT:
+            case VALUE_STRING:
+                String text = parser.getText();
+                try {
+                    return Long.parseLong(text);
+                } catch (NumberFormatException e) {
+                    double value = Double.parseDouble(text);
+                    long result = (long) value;
+                    if (result != value) {
+                        throw new NumberFormatException("Expected a long but was " + text);
+                    }
+                    return result;
+                }
+            default:
+                throw new JsonSyntaxException("Expected a long but was " + token);
+        }
+    }
+
+    // Like Gson's nextString: strings, and numbers as they are written
+    private String stringValue(final JsonToken token) throws IOException {
+        if (token != JsonToken.VALUE_STRING && token != JsonToken.VALUE_NUMBER_INT && token != JsonToken.VALUE_NUMBER_FLOAT) {
+            throw new JsonSyntaxException("Expected a string but was " + token);
+        }
+        return parser.getText();
+    }
+
+    // Skips the value that follows the current field name
+    private void skipNext(final State next) {
+        stateAfterSkip = next;
+        skipDepth = 0;
+        state = State.SKIP;
+    }
+
+    // Skips the value that the token starts, or the rest of it while already skipping
+    private void skip(final JsonToken token, final State next) {
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+            skipDepth++;
+        } else if (token == JsonToken.END_OBJECT || token == JsonToken.END_ARRAY) {
+            skipDepth--;
+        }
+        if (skipDepth == 0) {
+            state = next;
+        } else {
+            stateAfterSkip = next;
+            state = State.SKIP;
+        }
+    }
+
+    private static void expect(final JsonToken token, final JsonToken expected) {
+        if (token != expected) {
+            throw new JsonSyntaxException("Expected " + expected + " but was " + token);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package nl.rabobank.statementprocessor.parsers;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import nl.rabobank.statementprocessor.codec.JsonCodecs;
+import nl.rabobank.statementprocessor.model.Record;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Class that reads the records of a JSON statement one at a time
+ * Only the record that is currently being read is kept in memory, the statement as a whole is never materialized
+ * Parsing errors are reported the same way Gson reports them (JsonSyntaxException and JsonIOException)
+ */
+
+public class JsonStatementReader implements Iterator<Record>, Closeable {
+
+    private static final String RECORDS_FIELD = "records";
+
+    private final JsonReader jsonReader;
+    private boolean insideRecords;
+    private boolean finished;
+
+    public JsonStatementReader(final Reader reader) {
+        this.jsonReader = new JsonReader(reader);
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            if (!finished && !insideRecords) {
+                moveToRecords();
+            }
+            if (finished) {
+                return false;
+            }
+            if (jsonReader.hasNext()) {
+                return true;
+            }
+            jsonReader.endArray();
+            insideRecords = false;
+            finishStatement();
+            return false;
+        } catch (IOException | RuntimeException e) {
+            throw translate(e);
+        }
+    }
+
+    @Override
+    public Record next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            return JsonCodecs.recordAdapter().read(jsonReader);
+        } catch (IOException | RuntimeException e) {
+            throw translate(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        jsonReader.close();
+    }
+
+    // Positions the reader at the first element of the records array, or at the end of the statement if there is none
+    private void moveToRecords() throws IOException {
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            String name = jsonReader.nextName();
+            if (RECORDS_FIELD.equals(name) && jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+                jsonReader.beginArray();
+                insideRecords = true;
+                return;
+            }
+            jsonReader.skipValue();
+        }
+        finishStatement();
+    }
+
+    // Consumes the remaining fields of the statement so that trailing syntax errors are still detected
+    private void finishStatement() throws IOException {
+        while (jsonReader.hasNext()) {
+            jsonReader.nextName();
+            jsonReader.skipValue();
+        }
+        jsonReader.endObject();
+        if (jsonReader.peek() != JsonToken.END_DOCUMENT) {
+            throw new JsonSyntaxException("JSON document was not fully consumed.");
+        }
+        finished = true;
+    }
+
+    private RuntimeException translate(final Exception exception) {
+        if (exception instanceof JsonSyntaxException || exception instanceof JsonIOException) {
+            return (RuntimeException) exception;
+        }
+        if (exception instanceof MalformedJsonException
+                || exception instanceof EOFException
+                || exception instanceof IllegalStateException
+                || exception instanceof NumberFormatException) {
+            return new JsonSyntaxException(exception);
+        }
+        return new JsonIOException(exception);
+    }
+}
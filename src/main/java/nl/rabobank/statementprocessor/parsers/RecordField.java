@@ -0,0 +1,95 @@
+package nl.rabobank.statementprocessor.parsers;
+
+import nl.rabobank.statementprocessor.model.Record;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The fields of a Record, as they are named in the columns and elements of the supported statement formats
+ * Names are matched regardless of case, spaces, dashes and underscores, so "Start Balance" matches startBalance
+ */
+
+enum RecordField {
+    TRANSACTION_REFERENCE(true, "transactionReference", "reference"),
+    ACCOUNT_NUMBER(false, "accountNumber"),
+    DESCRIPTION(false, "description"),
+    START_BALANCE(true, "startBalance"),
+    MUTATION(true, "mutation"),
+    END_BALANCE(true, "endBalance");
+
+    private static final Map<String, RecordField> FIELDS_BY_NAME = new HashMap<>();
+
+    static {
+        for (RecordField field : values()) {
+            for (String name : field.names) {
+                FIELDS_BY_NAME.put(normalize(name), field);
+            }
+        }
+    }
+
+    private final boolean numeric;
+    private final String[] names;
+
+    RecordField(final boolean numeric, final String... names) {
+        this.numeric = numeric;
+        this.names = names;
+    }
+
+    // Returns null for names that do not belong to any field
+    static RecordField fromName(final String name) {
+        return FIELDS_BY_NAME.get(normalize(name));
+    }
+
+    String fieldName() {
+        return names[0];
+    }
+
+    boolean isNumeric() {
+        return numeric;
+    }
+
+    void setNumber(final Record.RecordBuilder builder, final long value) {
+        switch (this) {
+            case TRANSACTION_REFERENCE:
+                builder.transactionReference(value);
+                break;
+            case START_BALANCE:
+                builder.startBalance(value);
+                break;
+            case MUTATION:
+                builder.mutation(value);
+                break;
+            case END_BALANCE:
+                builder.endBalance(value);
+                break;
+            default:
+                throw new IllegalStateException(fieldName() + " is not a numeric field");
+        }
+    }
+
+    void setText(final Record.RecordBuilder builder, final String value) {
+        switch (this) {
+            case ACCOUNT_NUMBER:
+                builder.accountNumber(value);
+                break;
+            case DESCRIPTION:
+                builder.description(value);
+                break;
+            default:
+                throw new IllegalStateException(fieldName() + " is not a text field");
+        }
+    }
+
+    private static String normalize(final String name) {
+        StringBuilder normalized = new StringBuilder(name.length());
+        for (int index = 0; index < name.length(); index++) {
+            char character = name.charAt(index);
+            if (Character.isLetterOrDigit(character)) {
+                normalized.append(character);
+            }
+        }
+        return normalized.toString().toLowerCase(Locale.ROOT);
+    }
+}
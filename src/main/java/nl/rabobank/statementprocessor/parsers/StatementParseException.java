@@ -0,0 +1,20 @@
+package nl.rabobank.statementprocessor.parsers;
+
+/**
+ * Exception that is thrown when a statement in a non-JSON format cannot be parsed, or when a compressed request body
+ * cannot be decompressed
+ * JSON statements report parsing errors through Gson's own exceptions instead
+ */
+
+public class StatementParseException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public StatementParseException(final String message) {
+        super(message);
+    }
+
+    public StatementParseException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,135 @@
+package nl.rabobank.statementprocessor.parsers;
+
+import nl.rabobank.statementprocessor.model.Record;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Class that reads the records of an XML statement one at a time, using a StAX pull parser
+ * Every 'record' element is a Record, its fields are child elements or, for the transaction reference, the
+ * 'reference' attribute: <record reference="123"><accountNumber>NL34RABO0123456789</accountNumber>...</record>
+ * Elements with other names are skipped, DTDs and external entities are not supported
+ */
+
+public class XmlStatementReader implements Iterator<Record>, Closeable {
+
+    private static final String RECORD_ELEMENT = "record";
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    private final XMLStreamReader reader;
+    private Record next;
+    private boolean finished;
+
+    public XmlStatementReader(final InputStream input) {
+        try {
+            this.reader = INPUT_FACTORY.createXMLStreamReader(input);
+        } catch (XMLStreamException e) {
+            throw error(e);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !finished) {
+            try {
+                next = readRecord();
+            } catch (XMLStreamException e) {
+                throw error(e);
+            }
+            finished = next == null;
+        }
+        return next != null;
+    }
+
+    @Override
+    public Record next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Record record = next;
+        next = null;
+        return record;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    // Returns null when the end of the document is reached
+    private Record readRecord() throws XMLStreamException {
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT && RECORD_ELEMENT.equals(reader.getLocalName())) {
+                return readRecordElement();
+            }
+        }
+        return null;
+    }
+
+    private Record readRecordElement() throws XMLStreamException {
+        Record.RecordBuilder builder = Record.builder();
+        for (int index = 0; index < reader.getAttributeCount(); index++) {
+            RecordField field = RecordField.fromName(reader.getAttributeLocalName(index));
+            if (field != null) {
+                setField(builder, field, reader.getAttributeValue(index));
+            }
+        }
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            RecordField field = RecordField.fromName(reader.getLocalName());
+            if (field != null) {
+                setField(builder, field, reader.getElementText());
+            } else {
+                skipElement();
+            }
+        }
+        return builder.build();
+    }
+
+    private void setField(final Record.RecordBuilder builder, final RecordField field, final String value) {
+        if (!field.isNumeric()) {
+            field.setText(builder, value);
+            return;
+        }
+        try {
+            field.setNumber(builder, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            throw new StatementParseException("Invalid number '" + value + "' for " + field.fieldName()
+                    + " (line " + reader.getLocation().getLineNumber() + ")", e);
+        }
+    }
+
+    private void skipElement() throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static StatementParseException error(final XMLStreamException exception) {
+        return new StatementParseException("Invalid XML statement: " + exception.getMessage(), exception);
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+}
@@ -0,0 +1,17 @@
+package nl.rabobank.statementprocessor.rules;
+
+import nl.rabobank.statementprocessor.model.Record;
+
+/**
+ * A ValidationRule without state, that judges every record on its own
+ * Because the outcome for a record does not depend on other records, the RuleEngine may skip the rule for records
+ * that are already error records, once its violation has been reported for the statement
+ */
+
+public interface RecordRule extends ValidationRule, ValidationRule.Check {
+
+    @Override
+    default Check createCheck(final int expectedSize) {
+        return this;
+    }
+}
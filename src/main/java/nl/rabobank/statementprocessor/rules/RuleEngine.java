@@ -0,0 +1,127 @@
+package nl.rabobank.statementprocessor.rules;
+
+import nl.rabobank.statementprocessor.model.Record;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Class that runs a set of ValidationRules together in a single pass over the records of a statement
+ * The rules are ordered by cost once, at construction, and every record is passed to all rules in that order
+ * A per-record rule is skipped for a record that is already an error record, when its violation was already reported:
+ * the outcome can no longer change. Stateful rules always see every record
+ * Instances are immutable and thread-safe, the Runs they start are not
+ */
+
+public final class RuleEngine {
+
+    private final ValidationRule[] rules;
+    private final Set<Violation> possibleViolations = EnumSet.noneOf(Violation.class);
+
+    public RuleEngine(final List<? extends ValidationRule> rules) {
+        List<ValidationRule> ordered = new ArrayList<>(rules);
+        ordered.sort(Comparator.comparingInt(ValidationRule::getCost));
+        this.rules = ordered.toArray(new ValidationRule[0]);
+        for (ValidationRule rule : this.rules) {
+            possibleViolations.add(rule.getViolation());
+        }
+    }
+
+    /**
+     * Starts validating a statement
+     * @param expectedSize number of records of the statement, or -1 if it is not known up front
+     */
+    public Run start(final int expectedSize) {
+        return new Run(expectedSize);
+    }
+
+    /**
+     * The validation of a single statement
+     */
+    public final class Run {
+
+        private final ValidationRule.Check[] checks = new ValidationRule.Check[rules.length];
+        private final boolean[] skippable = new boolean[rules.length];
+        private final int[] violations = new int[rules.length];
+        private final boolean[] violated = new boolean[Violation.values().length];
+        private int violationCount;
+        private boolean finished;
+
+        private Run(final int expectedSize) {
+            for (int index = 0; index < rules.length; index++) {
+                checks[index] = rules[index].createCheck(expectedSize);
+                skippable[index] = rules[index] instanceof RecordRule;
+                violations[index] = rules[index].getViolation().ordinal();
+            }
+        }
+
+        // Passes the next record to all rules, returns true if it violates any of them
+        public boolean test(final Record record) {
+            boolean isErrorRecord = false;
+            for (int index = 0; index < checks.length; index++) {
+                if (mustTest(index, isErrorRecord) && checks[index].test(record)) {
+                    isErrorRecord = markViolated(index);
+                }
+            }
+            return isErrorRecord;
+        }
+
+        // Runs the statement-level part of the rules, after the last record
+        public void finish() {
+            if (!finished) {
+                finished = true;
+                for (int index = 0; index < checks.length; index++) {
+                    if (checks[index].testStatement()) {
+                        markViolated(index);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Passes the error records that the rules only found in finish, with their position in the statement, in input
+         * order per rule. Those records were not reported by test
+         */
+        public void forEachLateViolation(final ObjLongConsumer<Record> action) {
+            if (finished) {
+                for (ValidationRule.Check check : checks) {
+                    check.forEachLateViolation(action);
+                }
+            }
+        }
+
+        public void close() {
+            for (ValidationRule.Check check : checks) {
+                check.close();
+            }
+        }
+
+        public boolean hasViolation(final Violation violation) {
+            return violated[violation.ordinal()];
+        }
+
+        // True once every violation the rules can report has been reported, further records cannot change the Result
+        public boolean isDecided() {
+            return violationCount == possibleViolations.size();
+        }
+
+        // A per-record rule cannot change the outcome for an error record once its violation was reported
+        private boolean mustTest(final int index, final boolean isErrorRecord) {
+            return !isErrorRecord || !skippable[index] || !violated[violations[index]];
+        }
+
+        // Returns true, for use as the new error record state
+        private boolean markViolated(final int index) {
+            int violation = violations[index];
+            if (!violated[violation]) {
+                violated[violation] = true;
+                violationCount++;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package nl.rabobank.statementprocessor.rules;
+
+import nl.rabobank.statementprocessor.model.Record;
+
+import java.util.function.ObjLongConsumer;
+
+/**
+ * A check that statements must pass, see RuleEngine for how rules are combined
+ * There are three kinds of rules:
+ * - per-record rules look at a single record at a time, they implement RecordRule
+ * - stateful rules remember what they saw in earlier records of the statement, they create a fresh Check per statement
+ * - statement-level rules judge the statement as a whole, their Check reports from testStatement() after the last record
+ * Spring beans that implement this interface are added to the built-in rules of the ValidationService
+ */
+
+public interface ValidationRule {
+
+    Violation getViolation();
+
+    /**
+     * Estimated cost of checking one record, relative to the built-in rules: the end balance check costs 1, the
+     * duplicate reference check 8. Cheaper rules run first
+     */
+    int getCost();
+
+    /**
+     * Creates the check for a single statement
+     * @param expectedSize number of records of the statement, or -1 if it is not known up front (streaming)
+     */
+    Check createCheck(int expectedSize);
+
+    interface Check {
+
+        // Returns true if the record violates the rule, records are passed in input order
+        boolean test(Record record);
+
+        // Returns true if the statement as a whole violates the rule, called once after the last record
+        default boolean testStatement() {
+            return false;
+        }
+
+        /**
+         * Passes the records that violate the rule but were only found by testStatement, with their position in the
+         * statement, in input order. A check that does not keep its state in memory reports records this way
+         */
+        default void forEachLateViolation(final ObjLongConsumer<Record> action) {
+        }
+
+        // Releases what the check keeps outside the heap, called once the statement is done, also when it stopped early
+        default void close() {
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package nl.rabobank.statementprocessor.rules;
+
+/**
+ * The kinds of errors a ValidationRule can report, every kind contributes to the Result of a statement
+ */
+
+public enum Violation {
+    DUPLICATE_REFERENCE,
+    INCORRECT_END_BALANCE
+}
@@ -0,0 +1,29 @@
+package nl.rabobank.statementprocessor.services;
+
+import nl.rabobank.statementprocessor.model.Record;
+import nl.rabobank.statementprocessor.rules.ValidationRule;
+import nl.rabobank.statementprocessor.util.StringLongHashMap;
+
+/**
+ * Class that checks that the records of every account chain: the start balance of a record must equal the end
+ * balance of the previous record of the same account in the statement
+ * Only the last end balance of every account is kept, so memory grows with the number of accounts, not of records
+ * Records without an account number are not checked
+ * Instances are not thread-safe and are meant to check a single statement, in input order
+ */
+
+class BalanceChain implements ValidationRule.Check {
+
+    private final StringLongHashMap lastEndBalances = new StringLongHashMap();
+
+    // Returns true if the record does not continue the chain of its account
+    @Override
+    public boolean test(final Record record) {
+        String accountNumber = record.getAccountNumber();
+        if (accountNumber == null) {
+            return false;
+        }
+        long startBalance = record.getStartBalance();
+        return lastEndBalances.put(accountNumber, record.getEndBalance(), startBalance) != startBalance;
+    }
+}
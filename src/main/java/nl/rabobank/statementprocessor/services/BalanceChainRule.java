@@ -0,0 +1,29 @@
+package nl.rabobank.statementprocessor.services;
+
+import nl.rabobank.statementprocessor.rules.ValidationRule;
+import nl.rabobank.statementprocessor.rules.Violation;
+
+/**
+ * Class that reports records that do not continue the balance chain of their account, see BalanceChain
+ * A broken chain counts as an incorrect end balance
+ */
+
+class BalanceChainRule implements ValidationRule {
+
+    static final int COST = 4;
+
+    @Override
+    public Violation getViolation() {
+        return Violation.INCORRECT_END_BALANCE;
+    }
+
+    @Override
+    public int getCost() {
+        return COST;
+    }
+
+    @Override
+    public Check createCheck(final int expectedSize) {
+        return new BalanceChain();
+    }
+}
@@ -0,0 +1,18 @@
+package nl.rabobank.statementprocessor.services;
+
+import nl.rabobank.statementprocessor.model.ValidationResult;
+
+import java.io.IOException;
+
+/**
+ * Receives the results of a batch validation, in the order in which the statements finish
+ * Both methods are only ever called from the thread that started the batch validation
+ */
+
+public interface BatchResultWriter {
+
+    void write(long index, ValidationResult validationResult) throws IOException;
+
+    // Called whenever the written results should be passed on, e.g. before the batch validation waits
+    void flush() throws IOException;
+}
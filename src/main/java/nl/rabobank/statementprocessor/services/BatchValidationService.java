@@ -0,0 +1,136 @@
+package nl.rabobank.statementprocessor.services;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSyntaxException;
+import lombok.extern.slf4j.Slf4j;
+import nl.rabobank.statementprocessor.codec.JsonCodecs;
+import nl.rabobank.statementprocessor.model.Result;
+import nl.rabobank.statementprocessor.model.Statement;
+import nl.rabobank.statementprocessor.model.ValidationResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Service that validates a stream of statements, one JSON statement per line (NDJSON)
+ * Statements are parsed and validated concurrently on a bounded pool that is shared by all batches
+ * Every batch has at most a fixed number of statements in flight, so a fast producer cannot flood the pool
+ * A statement that cannot be parsed results in BAD_REQUEST for that statement only, the batch continues
+ */
+
+@Slf4j
+@Service
+public class BatchValidationService {
+
+    private final ValidationService validationService;
+    private final ExecutorService batchPool;
+    private final int maxInFlight;
+
+    @Autowired
+    public BatchValidationService(final ValidationService validationService,
+                                  @Value("${statement.batch.threads:0}") final int threads,
+                                  @Value("${statement.batch.max-in-flight:0}") final int maxInFlight) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.validationService = validationService;
+        this.batchPool = Executors.newFixedThreadPool(poolSize);
+        this.maxInFlight = maxInFlight > 0 ? maxInFlight : 2 * poolSize;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        batchPool.shutdown();
+    }
+
+    public void validateBatch(final BufferedReader statements, final BatchResultWriter resultWriter) throws IOException {
+        CompletionService<IndexedResult> completionService = new ExecutorCompletionService<>(batchPool);
+        int inFlight = 0;
+        long index = 0;
+        try {
+            String line;
+            while ((line = statements.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                if (inFlight == maxInFlight) {
+                    resultWriter.flush();
+                    write(completionService.take(), resultWriter);
+                    inFlight--;
+                }
+                final long statementIndex = index++;
+                final String json = line;
+                completionService.submit(() -> new IndexedResult(statementIndex, validate(json)));
+                inFlight++;
+
+                // Pass on whatever has finished in the meantime
+                int finished = 0;
+                Future<IndexedResult> result;
+                while ((result = completionService.poll()) != null) {
+                    write(result, resultWriter);
+                    inFlight--;
+                    finished++;
+                }
+                if (finished > 0) {
+                    resultWriter.flush();
+                }
+            }
+            while (inFlight > 0) {
+                resultWriter.flush();
+                write(completionService.take(), resultWriter);
+                inFlight--;
+            }
+            resultWriter.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Batch validation was interrupted");
+        }
+    }
+
+    private ValidationResult validate(final String json) {
+        try {
+            Statement statement = JsonCodecs.gson().fromJson(json, Statement.class);
+            if (statement == null || statement.getRecords() == null) {
+                throw new JsonSyntaxException("Statement without records");
+            }
+            return validationService.validateStatement(statement);
+        } catch (JsonParseException e) {
+            log.error("JSON parsing error in batch, exception: {}", e.getMessage());
+            return new ValidationResult(Result.BAD_REQUEST, new ArrayList<>());
+        } catch (RuntimeException e) {
+            log.error("Internal server error in batch, exception: {}", e.getMessage());
+            return new ValidationResult(Result.INTERNAL_SERVER_ERROR, new ArrayList<>());
+        }
+    }
+
+    private static void write(final Future<IndexedResult> result, final BatchResultWriter resultWriter)
+            throws IOException, InterruptedException {
+        try {
+            IndexedResult indexedResult = result.get();
+            resultWriter.write(indexedResult.index, indexedResult.validationResult);
+        } catch (ExecutionException e) {
+            // validate never throws, so this cannot happen
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static final class IndexedResult {
+        private final long index;
+        private final ValidationResult validationResult;
+
+        private IndexedResult(final long index, final ValidationResult validationResult) {
+            this.index = index;
+            this.validationResult = validationResult;
+        }
+    }
+}
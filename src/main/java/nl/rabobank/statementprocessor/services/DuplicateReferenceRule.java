@@ -0,0 +1,107 @@
+package nl.rabobank.statementprocessor.services;
+
+import nl.rabobank.statementprocessor.index.ReferenceIndex;
+import nl.rabobank.statementprocessor.model.Record;
+import nl.rabobank.statementprocessor.rules.ValidationRule;
+import nl.rabobank.statementprocessor.rules.Violation;
+import nl.rabobank.statementprocessor.util.LongHashSet;
+
+import java.nio.file.Path;
+
+/**
+ * Class that reports every occurrence of a transaction reference after the first one in the statement, and, when the
+ * reference index is enabled, references that occurred in earlier statements within the window of the index
+ * References are added to the index as they are checked, so that of two concurrent uploads of the same statement one
+ * reports them as duplicates. A statement that could not be read to the end, or whose validation stopped early,
+ * removes them again when its check is closed, so that it leaves none behind and can be sent again
+ * With a memory budget, statements whose references may not fit in it are checked by a SpillingDuplicateCheck
+ */
+
+class DuplicateReferenceRule implements ValidationRule {
+
+    static final int COST = 8;
+
+    private final ReferenceIndex referenceIndex;
+    private final long memoryBudget;
+    private final Path spillDirectory;
+
+    DuplicateReferenceRule(final ReferenceIndex referenceIndex) {
+        this(referenceIndex, 0, null);
+    }
+
+    /**
+     * @param memoryBudget   maximum number of bytes used to find the duplicates within a statement, 0 means no limit
+     * @param spillDirectory directory for the spill files of statements that exceed the budget
+     */
+    DuplicateReferenceRule(final ReferenceIndex referenceIndex, final long memoryBudget, final Path spillDirectory) {
+        this.referenceIndex = referenceIndex;
+        this.memoryBudget = memoryBudget;
+        this.spillDirectory = spillDirectory;
+    }
+
+    @Override
+    public Violation getViolation() {
+        return Violation.DUPLICATE_REFERENCE;
+    }
+
+    @Override
+    public int getCost() {
+        return COST;
+    }
+
+    @Override
+    public Check createCheck(final int expectedSize) {
+        long now = statementTime();
+        if (expectedSize < 0 ? memoryBudget > 0 : exceedsMemoryBudget(expectedSize)) {
+            return new SpillingDuplicateCheck(referenceIndex, memoryBudget, spillDirectory, expectedSize, now);
+        }
+        // Statements of unknown size get a set of their own, it may grow too large to keep around for the thread
+        LongHashSet uniqueReferences = expectedSize >= 0
+                ? ValidationService.borrowReferenceSet(expectedSize) : new LongHashSet();
+        return new ValidationRule.Check() {
+            private boolean checked;
+
+            @Override
+            public boolean test(final Record record) {
+                return isDuplicateReference(uniqueReferences, record.getTransactionReference(), now);
+            }
+
+            @Override
+            public boolean testStatement() {
+                checked = true;
+                return false;
+            }
+
+            @Override
+            public void close() {
+                if (!checked) {
+                    removeFromIndex(uniqueReferences, now);
+                }
+            }
+        };
+    }
+
+    // Time at which a statement adds its references to the index, one of its own so that it can remove them again
+    long statementTime() {
+        return referenceIndex != null ? referenceIndex.nextStatementTime() : System.currentTimeMillis();
+    }
+
+    // True if the references of a statement of the given size may not fit in the memory budget
+    boolean exceedsMemoryBudget(final int size) {
+        return memoryBudget > 0 && (long) size * SpillingDuplicateCheck.BYTES_PER_REFERENCE > memoryBudget / 2;
+    }
+
+    boolean isDuplicateReference(final LongHashSet uniqueReferences, final long reference, final long now) {
+        if (!uniqueReferences.add(reference)) {
+            return true;
+        }
+        return referenceIndex != null && referenceIndex.checkAndAdd(reference, now);
+    }
+
+    // Called when the validation of the statement stopped before all references were checked
+    void removeFromIndex(final LongHashSet uniqueReferences, final long now) {
+        if (referenceIndex != null) {
+            referenceIndex.removeAll(uniqueReferences, now);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package nl.rabobank.statementprocessor.services;
+
+import nl.rabobank.statementprocessor.model.Record;
+import nl.rabobank.statementprocessor.rules.RecordRule;
+import nl.rabobank.statementprocessor.rules.Violation;
+
+/**
+ * Class that implements the end balance check of a single record, see Record.validateEndBalance
+ */
+
+class EndBalanceRule implements RecordRule {
+
+    static final int COST = 1;
+
+    @Override
+    public Violation getViolation() {
+        return Violation.INCORRECT_END_BALANCE;
+    }
+
+    @Override
+    public int getCost() {
+        return COST;
+    }
+
+    @Override
+    public boolean test(final Record record) {
+        return !record.validateEndBalance();
+    }
+}
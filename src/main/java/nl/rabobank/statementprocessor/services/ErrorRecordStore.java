@@ -0,0 +1,163 @@
+package nl.rabobank.statementprocessor.services;
+
+import nl.rabobank.statementprocessor.model.ErrorRecordPage;
+import nl.rabobank.statementprocessor.model.Record;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Service that keeps the error records that did not fit in a response, so that a client can fetch them page by page
+ * A page is found by a cursor, the id of the stored records followed by the position of the first record of the page
+ * Only what a response shows of a record is kept: the transaction references in a long array, and the account numbers
+ * as int indices into a table of the distinct account numbers
+ * Stored records expire after the retention period, and the oldest are evicted when more than the maximum number of
+ * records is stored, so memory stays bounded
+ * All methods are thread-safe
+ */
+
+@Service
+public class ErrorRecordStore {
+
+    private static final char CURSOR_SEPARATOR = '.';
+    private static final int NO_ACCOUNT = -1;
+
+    private final long retentionMillis;
+    private final long maxStoredRecords;
+    private final Clock clock;
+    // In insertion order, which is also the order of expiry, as all entries have the same retention
+    private final Map<String, StoredErrorRecords> entries = new LinkedHashMap<>();
+    private long storedRecords;
+
+    @Autowired
+    public ErrorRecordStore(@Value("${statement.error-records.retention:15m}") final Duration retention,
+                            @Value("${statement.error-records.max-stored:4000000}") final long maxStoredRecords) {
+        this(retention, maxStoredRecords, Clock.systemUTC());
+    }
+
+    ErrorRecordStore(final Duration retention, final long maxStoredRecords, final Clock clock) {
+        this.retentionMillis = retention.toMillis();
+        this.maxStoredRecords = maxStoredRecords;
+        this.clock = clock;
+    }
+
+    /**
+     * Stores the error records
+     * They are converted before the lock is taken, so other requests only wait for the eviction and the insert
+     * @return the cursor of the first record, or null if there are more records than can be stored at all
+     */
+    public String store(final List<Record> errorRecords) {
+        if (errorRecords.isEmpty() || errorRecords.size() > maxStoredRecords) {
+            return null;
+        }
+        StoredErrorRecords stored = new StoredErrorRecords(errorRecords);
+        String id = UUID.randomUUID().toString();
+        synchronized (this) {
+            long now = clock.millis();
+            removeExpired(now);
+            Iterator<StoredErrorRecords> oldest = entries.values().iterator();
+            while (storedRecords + stored.size() > maxStoredRecords && oldest.hasNext()) {
+                storedRecords -= oldest.next().size();
+                oldest.remove();
+            }
+            // Set under the lock, so that the entries stay in the order of expiry
+            stored.expiresAt = now + retentionMillis;
+            entries.put(id, stored);
+            storedRecords += stored.size();
+        }
+        return cursor(id, 0);
+    }
+
+    /**
+     * Returns at most limit records, starting at the cursor
+     * @return the page, or empty if the cursor is invalid or its records have expired
+     */
+    public synchronized Optional<ErrorRecordPage> getPage(final String cursor, final int limit) {
+        removeExpired(clock.millis());
+        int separator = cursor.lastIndexOf(CURSOR_SEPARATOR);
+        if (separator < 0) {
+            return Optional.empty();
+        }
+        String id = cursor.substring(0, separator);
+        StoredErrorRecords stored = entries.get(id);
+        int offset;
+        try {
+            offset = Integer.parseInt(cursor.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+        if (stored == null || offset < 0 || offset >= stored.size()) {
+            return Optional.empty();
+        }
+        int end = (int) Math.min(stored.size(), (long) offset + Math.max(1, limit));
+        List<Record> errorRecords = new ArrayList<>(end - offset);
+        for (int index = offset; index < end; index++) {
+            errorRecords.add(stored.toRecord(index));
+        }
+        return Optional.of(new ErrorRecordPage(errorRecords, end < stored.size() ? cursor(id, end) : null));
+    }
+
+    public synchronized long getStoredRecords() {
+        return storedRecords;
+    }
+
+    private void removeExpired(final long now) {
+        Iterator<StoredErrorRecords> oldest = entries.values().iterator();
+        while (oldest.hasNext()) {
+            StoredErrorRecords stored = oldest.next();
+            if (stored.expiresAt > now) {
+                break;
+            }
+            storedRecords -= stored.size();
+            oldest.remove();
+        }
+    }
+
+    private static String cursor(final String id, final int offset) {
+        return id + CURSOR_SEPARATOR + offset;
+    }
+
+    private static final class StoredErrorRecords {
+        private final long[] references;
+        private final int[] accountIds;
+        private final String[] accountNumbers;
+        private long expiresAt;
+
+        private StoredErrorRecords(final List<Record> errorRecords) {
+            this.references = new long[errorRecords.size()];
+            this.accountIds = new int[errorRecords.size()];
+            Map<String, Integer> accountIdsByNumber = new HashMap<>();
+            for (int index = 0; index < errorRecords.size(); index++) {
+                Record record = errorRecords.get(index);
+                references[index] = record.getTransactionReference();
+                accountIds[index] = record.getAccountNumber() == null ? NO_ACCOUNT
+                        : accountIdsByNumber.computeIfAbsent(record.getAccountNumber(), number -> accountIdsByNumber.size());
+            }
+            this.accountNumbers = new String[accountIdsByNumber.size()];
+            accountIdsByNumber.forEach((number, id) -> accountNumbers[id] = number);
+        }
+
+        private int size() {
+            return references.length;
+        }
+
+        private Record toRecord(final int index) {
+            int accountId = accountIds[index];
+            return Record.builder()
+                    .transactionReference(references[index])
+                    .accountNumber(accountId == NO_ACCOUNT ? null : accountNumbers[accountId])
+                    .build();
+        }
+    }
+}
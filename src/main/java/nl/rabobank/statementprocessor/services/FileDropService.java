@@ -0,0 +1,240 @@
+package nl.rabobank.statementprocessor.services;
+
+import com.google.gson.JsonParseException;
+import lombok.extern.slf4j.Slf4j;
+import nl.rabobank.statementprocessor.codec.BinaryStatementCodec;
+import nl.rabobank.statementprocessor.codec.JsonCodecs;
+import nl.rabobank.statementprocessor.model.FileDropSummary;
+import nl.rabobank.statementprocessor.model.Result;
+import nl.rabobank.statementprocessor.model.ValidationResult;
+import nl.rabobank.statementprocessor.parsers.CsvStatementReader;
+import nl.rabobank.statementprocessor.parsers.JsonStatementReader;
+import nl.rabobank.statementprocessor.parsers.StatementParseException;
+import nl.rabobank.statementprocessor.parsers.XmlStatementReader;
+import nl.rabobank.statementprocessor.util.ByteBufferInputStream;
+import nl.rabobank.statementprocessor.view.FileReportView;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Service that validates the statement files in a directory and writes a JSON report per file, for the batch profile
+ * The format follows from the extension: .json, .csv and .xml files are read from a memory-mapping of the file, and
+ * .bin files (BinaryStatementCodec) are decoded from it into columns
+ * Files are validated in parallel, every file on a task of its own: a file that cannot be read or parsed gets a report
+ * with BAD_REQUEST or INTERNAL_SERVER_ERROR and the error, the other files are not affected. That includes a file that
+ * exhausts the heap or the stack, and a file that is larger than the maximum size of its format
+ * A file is pending as long as it has no report, a report is written next to its final name and then moved into
+ * place, so a report is never seen half-written
+ * Hidden files (starting with a dot) are skipped, so a producer can write a file under a hidden name and rename it once
+ * it is complete
+ */
+
+@Slf4j
+@Service
+public class FileDropService {
+
+    static final String REPORT_SUFFIX = ".report.json";
+
+    private static final String JSON_EXTENSION = "json";
+    private static final String CSV_EXTENSION = "csv";
+    private static final String XML_EXTENSION = "xml";
+    private static final String BINARY_EXTENSION = "bin";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ValidationService validationService;
+    private final int threads;
+    private final long maxSize;
+    private final long maxBinarySize;
+
+    /**
+     * @param maxSize       maximum size of a .json, .csv or .xml file, which is read as a stream of records
+     * @param maxBinarySize maximum size of a .bin file, which is decoded into columns on the heap as a whole
+     */
+    @Autowired
+    public FileDropService(final ValidationService validationService,
+                           @Value("${statement.file-drop.threads:0}") final int threads,
+                           @Value("${statement.file-drop.max-size:8GB}") final DataSize maxSize,
+                           @Value("${statement.file-drop.max-binary-size:512MB}") final DataSize maxBinarySize) {
+        this.validationService = validationService;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.maxSize = maxSize.toBytes();
+        this.maxBinarySize = maxBinarySize.toBytes();
+    }
+
+    // Statement files in the directory without a report, in order of their names
+    public List<Path> findPendingFiles(final Path directory, final Path reportDirectory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> Files.isRegularFile(file) && isStatementFile(file)
+                    && !Files.exists(reportFile(reportDirectory, file)))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Validates the files in parallel and writes their reports
+     * @return the number of files and bytes, and how long it took, the throughput is logged as well
+     */
+    public FileDropSummary validateFiles(final List<Path> files, final Path reportDirectory)
+            throws IOException, InterruptedException {
+        Files.createDirectories(reportDirectory);
+        long start = System.nanoTime();
+        ExecutorService filePool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, files.size())));
+        try {
+            List<Future<FileReportView>> reports = new ArrayList<>(files.size());
+            for (Path file : files) {
+                reports.add(filePool.submit(() -> validateFile(file, reportDirectory)));
+            }
+            long bytes = 0;
+            int failedFiles = 0;
+            for (int index = 0; index < files.size(); index++) {
+                FileReportView fileReport = getReport(reports.get(index), files.get(index));
+                bytes += fileReport.getBytes();
+                if (fileReport.getError() != null) {
+                    failedFiles++;
+                }
+            }
+            FileDropSummary summary = new FileDropSummary(files.size(), failedFiles, bytes, System.nanoTime() - start);
+            log.info("Validated {} statement files ({} failed), {} bytes in {} ms: {} GB/s", summary.getFiles(),
+                    summary.getFailedFiles(), summary.getBytes(), TimeUnit.NANOSECONDS.toMillis(summary.getDurationNanos()),
+                    String.format(Locale.ROOT, "%.3f", summary.getGigabytesPerSecond()));
+            return summary;
+        } finally {
+            filePool.shutdownNow();
+        }
+    }
+
+    // Never throws, whatever goes wrong ends up in the report
+    FileReportView validateFile(final Path file, final Path reportDirectory) {
+        long start = System.nanoTime();
+        long bytes = 0;
+        ValidationResult validationResult;
+        String error = null;
+        try {
+            bytes = Files.size(file);
+            validationResult = validate(file, bytes);
+        } catch (JsonParseException | StatementParseException e) {
+            error = e.getMessage() != null ? e.getMessage() : e.toString();
+            validationResult = new ValidationResult(Result.BAD_REQUEST, new ArrayList<>());
+        } catch (IOException | RuntimeException | Error e) {
+            // Errors too: the memory of a file that exhausted the heap is free again once its validation is left
+            error = e.toString();
+            validationResult = new ValidationResult(Result.INTERNAL_SERVER_ERROR, new ArrayList<>());
+        }
+        if (error != null) {
+            log.error("Statement file {} could not be validated, exception: {}", file, error);
+        }
+        FileReportView report = new FileReportView(file.getFileName().toString(), bytes,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), validationResult, error);
+        try {
+            writeReport(report, reportFile(reportDirectory, file));
+        } catch (IOException | RuntimeException | Error e) {
+            log.error("Report of statement file {} could not be written, exception: {}", file, e.toString());
+        }
+        return report;
+    }
+
+    private ValidationResult validate(final Path file, final long size) throws IOException {
+        String extension = extension(file);
+        long max = BINARY_EXTENSION.equals(extension) ? maxBinarySize : maxSize;
+        if (size > max) {
+            throw new StatementParseException("File of " + size + " bytes exceeds the maximum of " + max
+                    + " bytes of a ." + extension + " file");
+        }
+        if (BINARY_EXTENSION.equals(extension)) {
+            return validationService.validateColumnarStatement(BinaryStatementCodec.decode(file));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // A mapping is at most 2 GB, larger files are read through the channel instead
+            InputStream input = channel.size() <= Integer.MAX_VALUE
+                    ? new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()))
+                    : new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE);
+            switch (extension) {
+                case JSON_EXTENSION:
+                    try (JsonStatementReader records = new JsonStatementReader(
+                            new InputStreamReader(input, StandardCharsets.UTF_8))) {
+                        return validationService.validateRecords(records);
+                    }
+                case CSV_EXTENSION:
+                    try (CsvStatementReader records = new CsvStatementReader(input)) {
+                        return validationService.validateRecords(records);
+                    }
+                default:
+                    try (XmlStatementReader records = new XmlStatementReader(input)) {
+                        return validationService.validateRecords(records);
+                    }
+            }
+        }
+    }
+
+    private static void writeReport(final FileReportView report, final Path reportFile) throws IOException {
+        Path temporaryFile = reportFile.resolveSibling(reportFile.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+            JsonCodecs.gson().toJson(report, writer);
+        }
+        Files.move(temporaryFile, reportFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // validateFile only throws when not even its report could be made, the file counts as failed then
+    private static FileReportView getReport(final Future<FileReportView> report, final Path file)
+            throws InterruptedException {
+        try {
+            return report.get();
+        } catch (ExecutionException e) {
+            log.error("Statement file {} could not be validated, exception: {}", file, e.getCause().toString());
+            return new FileReportView(file.getFileName().toString(), 0, 0,
+                    new ValidationResult(Result.INTERNAL_SERVER_ERROR, new ArrayList<>()), e.getCause().toString());
+        }
+    }
+
+    static Path reportFile(final Path reportDirectory, final Path file) {
+        return reportDirectory.resolve(file.getFileName() + REPORT_SUFFIX);
+    }
+
+    // Reports are JSON files as well, they are skipped in case the report directory is the statement directory
+    private static boolean isStatementFile(final Path file) {
+        String name = file.getFileName().toString();
+        if (name.startsWith(".") || name.endsWith(REPORT_SUFFIX)) {
+            return false;
+        }
+        switch (extension(file)) {
+            case JSON_EXTENSION:
+            case CSV_EXTENSION:
+            case XML_EXTENSION:
+            case BINARY_EXTENSION:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static String extension(final Path file) {
+        String name = file.getFileName().toString();
+        return name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,185 @@
+package nl.rabobank.statementprocessor.services;
+
+import nl.rabobank.statementprocessor.index.ReferenceIndex;
+import nl.rabobank.statementprocessor.metrics.ValidationMetrics;
+import nl.rabobank.statementprocessor.metrics.ValidationMetrics.Stage;
+import nl.rabobank.statementprocessor.model.Record;
+import nl.rabobank.statementprocessor.model.Result;
+import nl.rabobank.statementprocessor.model.ValidationMode;
+import nl.rabobank.statementprocessor.model.ValidationResult;
+import nl.rabobank.statementprocessor.util.LongHashSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Class that validates a large statement on a fork-join pool
+ * End balances are checked per chunk of records, duplicate references per partition of the reference hash space
+ * Every partition sees its references in input order, so the same occurrence is reported as duplicate as in the
+ * sequential validation, and no partition shares state with another
+ * The result is identical to the one of ValidationService.validateStatement, including the order of the error records
+ * All records are always validated, a ValidationMode only limits which error records are collected
+ */
+
+class ParallelStatementValidator {
+
+    private static final byte INCORRECT_END_BALANCE = 1;
+    private static final byte DUPLICATE_REFERENCE = 2;
+    private static final int MIN_CHUNK_SIZE = 4096;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final ForkJoinPool pool;
+    private final ReferenceIndex referenceIndex;
+    private final boolean checkBalanceChains;
+    private final ValidationMetrics metrics;
+
+    ParallelStatementValidator(final ForkJoinPool pool, final ReferenceIndex referenceIndex,
+                               final boolean checkBalanceChains, final ValidationMetrics metrics) {
+        this.pool = pool;
+        this.referenceIndex = referenceIndex;
+        this.checkBalanceChains = checkBalanceChains;
+        this.metrics = metrics;
+    }
+
+    ValidationResult validate(final List<Record> records, final ValidationMode mode) {
+        int size = records.size();
+        int chunkCount = Math.max(1, Math.min(pool.getParallelism() * CHUNKS_PER_THREAD, size / MIN_CHUNK_SIZE));
+        int chunkSize = (size + chunkCount - 1) / chunkCount;
+        int partitionBits = 32 - Integer.numberOfLeadingZeros(2 * pool.getParallelism() - 1);
+        int partitionCount = 1 << partitionBits;
+
+        long now = referenceIndex != null ? referenceIndex.nextStatementTime() : System.currentTimeMillis();
+        long stageStart = System.nanoTime();
+        long[] references = new long[size];
+        byte[] errorFlags = new byte[size];
+        int[][] partitionCounts = new int[chunkCount][partitionCount];
+
+        // Check end balances and count the references of every partition, per chunk
+        forEachInParallel(chunkCount, chunk -> {
+            int[] counts = partitionCounts[chunk];
+            for (int index = chunk * chunkSize, end = Math.min(size, index + chunkSize); index < end; index++) {
+                Record record = records.get(index);
+                long reference = record.getTransactionReference();
+                references[index] = reference;
+                if (!record.validateEndBalance()) {
+                    errorFlags[index] = INCORRECT_END_BALANCE;
+                }
+                counts[partition(reference, partitionBits)]++;
+            }
+        });
+        stageStart = metrics.recordStage(Stage.BALANCE_CHECK, stageStart);
+
+        // Balance chains depend on the order of the records of an account, so they are checked in a single pass
+        if (checkBalanceChains) {
+            BalanceChain balanceChain = new BalanceChain();
+            for (int index = 0; index < size; index++) {
+                if (balanceChain.test(records.get(index))) {
+                    errorFlags[index] |= INCORRECT_END_BALANCE;
+                }
+            }
+            stageStart = metrics.recordStage(Stage.BALANCE_CHAIN, stageStart);
+        }
+
+        // Lay the record indices out by partition, and within a partition by chunk, so that they stay in input order
+        int[][] chunkOffsets = new int[chunkCount][partitionCount];
+        int[] partitionStarts = new int[partitionCount + 1];
+        int offset = 0;
+        for (int partition = 0; partition < partitionCount; partition++) {
+            partitionStarts[partition] = offset;
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                chunkOffsets[chunk][partition] = offset;
+                offset += partitionCounts[chunk][partition];
+            }
+        }
+        partitionStarts[partitionCount] = offset;
+
+        int[] indicesByPartition = new int[size];
+        forEachInParallel(chunkCount, chunk -> {
+            int[] cursors = chunkOffsets[chunk];
+            for (int index = chunk * chunkSize, end = Math.min(size, index + chunkSize); index < end; index++) {
+                indicesByPartition[cursors[partition(references[index], partitionBits)]++] = index;
+            }
+        });
+        stageStart = metrics.recordStage(Stage.PARTITION, stageStart);
+
+        // Find duplicate references, every record index belongs to exactly one partition
+        // The reference index is shared, but it only locks the stripe of slots of a reference, so partitions rarely wait
+        forEachInParallel(partitionCount, partition -> {
+            int start = partitionStarts[partition];
+            int end = partitionStarts[partition + 1];
+            LongHashSet uniqueReferences = ValidationService.borrowReferenceSet(end - start);
+            for (int position = start; position < end; position++) {
+                int index = indicesByPartition[position];
+                long reference = references[index];
+                if (!uniqueReferences.add(reference)
+                        || referenceIndex != null && referenceIndex.checkAndAdd(reference, now)) {
+                    errorFlags[index] |= DUPLICATE_REFERENCE;
+                }
+            }
+        });
+        stageStart = metrics.recordStage(Stage.DUPLICATE_CHECK, stageStart);
+
+        ValidationResult validationResult = collectResult(records, errorFlags, mode);
+        // Like the DuplicateReferenceRule, the references are removed from the index again when the sequential
+        // validation would have stopped early
+        if (referenceIndex != null && wouldStop(errorFlags, mode)) {
+            forEachInParallel(partitionCount, partition -> {
+                for (int position = partitionStarts[partition]; position < partitionStarts[partition + 1]; position++) {
+                    referenceIndex.remove(references[indicesByPartition[position]], now);
+                }
+            });
+        }
+        metrics.recordStage(Stage.COLLECT, stageStart);
+        return validationResult;
+    }
+
+    // True if the sequential validation stops at an error record in this mode, see ValidationService.canStop
+    private static boolean wouldStop(final byte[] errorFlags, final ValidationMode mode) {
+        int combinedFlags = 0;
+        for (byte flags : errorFlags) {
+            combinedFlags |= flags;
+        }
+        return mode != ValidationMode.FULL && combinedFlags == (INCORRECT_END_BALANCE | DUPLICATE_REFERENCE);
+    }
+
+    // Fail-fast takes the first error record only, the Result covers all records in every mode
+    private static ValidationResult collectResult(final List<Record> records, final byte[] errorFlags,
+                                                  final ValidationMode mode) {
+        List<Record> errorRecords = new ArrayList<>();
+        int combinedFlags = 0;
+        for (int index = 0; index < errorFlags.length; index++) {
+            if (errorFlags[index] != 0) {
+                combinedFlags |= errorFlags[index];
+                if (mode == ValidationMode.FULL || mode == ValidationMode.FAILFAST && errorRecords.isEmpty()) {
+                    errorRecords.add(records.get(index));
+                }
+            }
+        }
+        Result result = ValidationService.determineResult(
+                (combinedFlags & DUPLICATE_REFERENCE) != 0, (combinedFlags & INCORRECT_END_BALANCE) != 0);
+        return new ValidationResult(result, errorRecords);
+    }
+
+    // Uses the high bits of a different multiplier than LongHashSet, so references within a partition do not cluster
+    private static int partition(final long reference, final int partitionBits) {
+        return (int) ((reference * 0xC2B2AE3D27D4EB4FL) >>> (64 - partitionBits));
+    }
+
+    private void forEachInParallel(final int taskCount, final IntConsumer task) {
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                List<ForkJoinTask<?>> subtasks = new ArrayList<>(taskCount);
+                for (int taskIndex = 0; taskIndex < taskCount; taskIndex++) {
+                    final int current = taskIndex;
+                    subtasks.add(ForkJoinTask.adapt(() -> task.accept(current)));
+                }
+                invokeAll(subtasks);
+            }
+        });
+    }
+}
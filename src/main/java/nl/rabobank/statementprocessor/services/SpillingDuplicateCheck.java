@@ -0,0 +1,390 @@
+package nl.rabobank.statementprocessor.services;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.rabobank.statementprocessor.index.ReferenceIndex;
+import nl.rabobank.statementprocessor.model.Record;
+import nl.rabobank.statementprocessor.rules.ValidationRule;
+import nl.rabobank.statementprocessor.util.BloomFilter;
+import nl.rabobank.statementprocessor.util.LongHashSet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Check of the DuplicateReferenceRule that keeps to a memory budget, whatever the number of records of the statement
+ * As long as the references fit in half the budget they are kept in a LongHashSet, and duplicates are reported right
+ * away. When they no longer fit, the check spills:
+ * - every reference is appended with its position to one of the partition files, chosen by a hash of the reference
+ * - a Bloom filter of the other half of the budget tells which references certainly occur for the first time, the
+ *   other records are candidates and are written to a file of their own, only they can turn out to be duplicates
+ * After the last record every partition is read back in input order into a set of its own, which finds the positions
+ * of the duplicates, a partition that does not fit in the budget is partitioned again. The candidates at those
+ * positions are the late violations
+ * Besides the budget the check uses the buffers of the spill files, about 1 MB
+ * The spill files are kept in a directory of their own, which is deleted when the check is closed
+ * Like the DuplicateReferenceRule, the check adds the references to the reference index as they are checked, and
+ * removes them again when it is closed before the statement was checked as a whole: from memory, or from the partition
+ * files that are left
+ */
+
+@Slf4j
+class SpillingDuplicateCheck implements ValidationRule.Check {
+
+    // A LongHashSet pre-sized for n values has at most 4n slots
+    static final int BYTES_PER_REFERENCE = 4 * Long.BYTES;
+
+    private static final int PARTITION_BITS = 6;
+    private static final int PARTITIONS = 1 << PARTITION_BITS;
+    private static final int MAX_LEVELS = Long.SIZE / PARTITION_BITS;
+    private static final int ENTRY_SIZE = 2 * Long.BYTES;
+    private static final int BUFFER_SIZE = 16 * 1024;
+    // Position of the references that were in memory when the check spilled, they occurred before all others
+    private static final long EARLIER = -1;
+
+    private final ReferenceIndex referenceIndex;
+    private final long memoryBudget;
+    private final Path spillParent;
+    private final long now;
+
+    private LongHashSet uniqueReferences;
+    private long position;
+
+    private Path spillDirectory;
+    private BloomFilter seenReferences;
+    private DataOutputStream[] partitions;
+    private DataOutputStream candidates;
+    private long candidateCount;
+    private long[] duplicatePositions = new long[0];
+    private int duplicateCount;
+    private boolean checked;
+
+    /**
+     * @param memoryBudget maximum number of bytes of the reference set and Bloom filter
+     * @param spillParent  directory in which the directory with the spill files is created
+     */
+    SpillingDuplicateCheck(final ReferenceIndex referenceIndex, final long memoryBudget, final Path spillParent,
+                           final int expectedSize, final long now) {
+        this.referenceIndex = referenceIndex;
+        this.memoryBudget = memoryBudget;
+        this.spillParent = spillParent;
+        this.now = now;
+        int fittingSize = (int) Math.min(Integer.MAX_VALUE, memoryBudget / 2 / BYTES_PER_REFERENCE);
+        this.uniqueReferences = new LongHashSet(expectedSize >= 0 ? Math.min(expectedSize, fittingSize) : 0);
+    }
+
+    @Override
+    public boolean test(final Record record) {
+        long reference = record.getTransactionReference();
+        long recordPosition = position++;
+        try {
+            if (uniqueReferences != null) {
+                if (!wouldOutgrowBudget()) {
+                    return !uniqueReferences.add(reference)
+                            || referenceIndex != null && referenceIndex.checkAndAdd(reference, now);
+                }
+                spill();
+            }
+            write(partitions[partition(reference, 0)], reference, recordPosition);
+            boolean certainlyFirst = seenReferences.add(reference);
+            // The index may be asked before it is known whether this is the first occurrence: a later occurrence finds
+            // the reference this statement added, and is a duplicate either way
+            if (referenceIndex != null && referenceIndex.checkAndAdd(reference, now)) {
+                return true;
+            }
+            if (!certainlyFirst) {
+                writeCandidate(record, recordPosition);
+            }
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public boolean testStatement() {
+        if (partitions == null) {
+            checked = true;
+            return false;
+        }
+        try {
+            closeSpillFiles();
+            seenReferences = null;
+            long start = System.nanoTime();
+            for (int partition = 0; partition < PARTITIONS; partition++) {
+                findDuplicates(partitionFile(spillDirectory, partition), 0);
+            }
+            Arrays.sort(duplicatePositions, 0, duplicateCount);
+            log.info("Checked {} spilled references for duplicates in {} ms: {} candidates, {} duplicates", position,
+                    (System.nanoTime() - start) / 1_000_000, candidateCount, duplicateCount);
+            checked = true;
+            return duplicateCount > 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void forEachLateViolation(final ObjLongConsumer<Record> action) {
+        if (duplicateCount == 0) {
+            return;
+        }
+        // A duplicate that the reference index reported right away is not a candidate, so not every position has one
+        int next = 0;
+        try (DataInputStream input = openSpillFile(spillDirectory.resolve("candidates"))) {
+            for (long candidate = 0; candidate < candidateCount && next < duplicateCount; candidate++) {
+                long candidatePosition = input.readLong();
+                Record record = readRecord(input);
+                while (next < duplicateCount && duplicatePositions[next] < candidatePosition) {
+                    next++;
+                }
+                if (next < duplicateCount && duplicatePositions[next] == candidatePosition) {
+                    action.accept(record, candidatePosition);
+                    next++;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!checked && referenceIndex != null && uniqueReferences != null) {
+            referenceIndex.removeAll(uniqueReferences, now);
+        }
+        uniqueReferences = null;
+        seenReferences = null;
+        if (spillDirectory == null) {
+            return;
+        }
+        try {
+            closeSpillFiles();
+        } catch (IOException e) {
+            log.warn("Spill files could not be closed, exception: {}", e.toString());
+        }
+        if (!checked && referenceIndex != null) {
+            try {
+                removeSpilledFromIndex();
+            } catch (IOException e) {
+                log.warn("Spilled references could not be removed from the reference index, exception: {}", e.toString());
+            }
+        }
+        try (Stream<Path> files = Files.walk(spillDirectory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(SpillingDuplicateCheck::deleteQuietly);
+        } catch (IOException e) {
+            log.warn("Spill directory {} could not be deleted, exception: {}", spillDirectory, e.toString());
+        }
+        spillDirectory = null;
+    }
+
+    // True if adding a reference may grow the table of the set beyond half the budget
+    private boolean wouldOutgrowBudget() {
+        return uniqueReferences.size() >= uniqueReferences.capacity() / 2
+                && 2L * uniqueReferences.capacity() * Long.BYTES > memoryBudget / 2;
+    }
+
+    // Moves the references in memory to the partitions, before the Bloom filter takes the memory of the set
+    private void spill() throws IOException {
+        spillDirectory = Files.createTempDirectory(spillParent, "references-");
+        log.info("Spilling the references of a statement to {} after {} records", spillDirectory, position - 1);
+        partitions = new DataOutputStream[PARTITIONS];
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            partitions[partition] = createSpillFile(partitionFile(spillDirectory, partition));
+        }
+        candidates = createSpillFile(spillDirectory.resolve("candidates"));
+        seenReferences = new BloomFilter(memoryBudget / 2);
+        try {
+            uniqueReferences.forEach(reference -> {
+                try {
+                    write(partitions[partition(reference, 0)], reference, EARLIER);
+                    seenReferences.add(reference);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        uniqueReferences = null;
+    }
+
+    /**
+     * Adds the positions of the duplicates in the partition file to duplicatePositions, a partition that is too large
+     * for the budget is split further by the next bits of the hash of the references
+     */
+    private void findDuplicates(final Path file, final int level) throws IOException {
+        long entries = Files.size(file) / ENTRY_SIZE;
+        if (entries * BYTES_PER_REFERENCE > memoryBudget && level + 1 < MAX_LEVELS) {
+            Path directory = Files.createDirectory(file.resolveSibling(file.getFileName() + "-" + (level + 1)));
+            DataOutputStream[] subpartitions = new DataOutputStream[PARTITIONS];
+            try {
+                for (int partition = 0; partition < PARTITIONS; partition++) {
+                    subpartitions[partition] = createSpillFile(partitionFile(directory, partition));
+                }
+                try (DataInputStream input = openSpillFile(file)) {
+                    for (long entry = 0; entry < entries; entry++) {
+                        long reference = input.readLong();
+                        write(subpartitions[partition(reference, level + 1)], reference, input.readLong());
+                    }
+                }
+            } finally {
+                closeAll(subpartitions);
+            }
+            Files.delete(file);
+            for (int partition = 0; partition < PARTITIONS; partition++) {
+                findDuplicates(partitionFile(directory, partition), level + 1);
+            }
+            return;
+        }
+
+        // Pre-sized to the budget at most: a partition that could not be split further is mostly duplicates of a few
+        // references, which the set does not grow for
+        long fittingSize = Math.min(entries, memoryBudget / BYTES_PER_REFERENCE);
+        LongHashSet partitionReferences = new LongHashSet((int) Math.min(fittingSize, Integer.MAX_VALUE / 4));
+        try (DataInputStream input = openSpillFile(file)) {
+            for (long entry = 0; entry < entries; entry++) {
+                long reference = input.readLong();
+                long referencePosition = input.readLong();
+                if (!partitionReferences.add(reference)) {
+                    addDuplicatePosition(referencePosition);
+                }
+            }
+        }
+        Files.delete(file);
+    }
+
+    // The partitions that findDuplicates already read were deleted, their references stay in the index
+    private void removeSpilledFromIndex() throws IOException {
+        try (Stream<Path> files = Files.walk(spillDirectory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().startsWith("partition-") && Files.isRegularFile(file)) {
+                    try (DataInputStream input = openSpillFile(file)) {
+                        for (long entry = Files.size(file) / ENTRY_SIZE; entry > 0; entry--) {
+                            referenceIndex.remove(input.readLong(), now);
+                            input.readLong();
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void addDuplicatePosition(final long duplicatePosition) {
+        if (duplicateCount == duplicatePositions.length) {
+            duplicatePositions = Arrays.copyOf(duplicatePositions, Math.max(16, duplicateCount * 2));
+        }
+        duplicatePositions[duplicateCount++] = duplicatePosition;
+    }
+
+    private void writeCandidate(final Record record, final long recordPosition) throws IOException {
+        candidates.writeLong(recordPosition);
+        candidates.writeLong(record.getTransactionReference());
+        writeString(candidates, record.getAccountNumber());
+        writeString(candidates, record.getDescription());
+        candidates.writeLong(record.getStartBalance());
+        candidates.writeLong(record.getMutation());
+        candidates.writeLong(record.getEndBalance());
+        candidateCount++;
+    }
+
+    private static Record readRecord(final DataInputStream input) throws IOException {
+        return Record.builder()
+                .transactionReference(input.readLong())
+                .accountNumber(readString(input))
+                .description(readString(input))
+                .startBalance(input.readLong())
+                .mutation(input.readLong())
+                .endBalance(input.readLong())
+                .build();
+    }
+
+    // A length of -1 stands for null, writeUTF is not used as it is limited to 64 KB
+    private static void writeString(final DataOutputStream output, final String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(final DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void write(final DataOutputStream output, final long reference, final long referencePosition)
+            throws IOException {
+        output.writeLong(reference);
+        output.writeLong(referencePosition);
+    }
+
+    // Every level uses the next bits of the hash, so that a partition that is split again spreads over all parts
+    private static int partition(final long reference, final int level) {
+        long hash = reference * 0xC2B2AE3D27D4EB4FL;
+        hash ^= hash >>> 29;
+        return (int) (hash >>> (Long.SIZE - PARTITION_BITS * (level + 1))) & (PARTITIONS - 1);
+    }
+
+    private void closeSpillFiles() throws IOException {
+        if (partitions != null) {
+            closeAll(partitions);
+        }
+        if (candidates != null) {
+            candidates.close();
+        }
+    }
+
+    private static void closeAll(final DataOutputStream[] outputs) throws IOException {
+        IOException failure = null;
+        for (DataOutputStream output : outputs) {
+            try {
+                if (output != null) {
+                    output.close();
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static Path partitionFile(final Path directory, final int partition) {
+        return directory.resolve("partition-" + partition);
+    }
+
+    private static DataOutputStream createSpillFile(final Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE));
+    }
+
+    private static DataInputStream openSpillFile(final Path file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE));
+    }
+
+    private static void deleteQuietly(final Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Spill file {} could not be deleted, exception: {}", file, e.toString());
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package nl.rabobank.statementprocessor.services;
+
+import nl.rabobank.statementprocessor.model.Record;
+import nl.rabobank.statementprocessor.model.ValidationMode;
+import nl.rabobank.statementprocessor.model.ValidationResult;
+import nl.rabobank.statementprocessor.rules.RuleEngine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class that validates the records of a statement incrementally, one record at a time
+ * Only the state of the rules (such as the transaction references seen so far) and the error records are kept, the
+ * records themselves are not
+ * Error records are reported in the order in which they were accepted
+ * Depending on the ValidationMode the validation is complete before the last record, further records are then ignored
+ * Instances are not thread-safe and are meant to validate a single statement, they should be closed once it is done
+ * with, so that spill files of the rules are removed
+ */
+
+public class StatementValidator {
+
+    private final RuleEngine.Run rules;
+    private final ValidationMode mode;
+    private final List<Record> errorRecords = new ArrayList<>();
+    // Positions of the error records, only needed to merge in the records that rules report late
+    private long[] errorPositions = new long[16];
+    private long position;
+    private boolean complete;
+    private ValidationResult validationResult;
+
+    StatementValidator(final RuleEngine.Run rules, final ValidationMode mode) {
+        this.rules = rules;
+        this.mode = mode;
+    }
+
+    public void accept(final Record record) {
+        if (complete) {
+            return;
+        }
+        long recordPosition = position++;
+        if (rules.test(record)) {
+            if (mode == ValidationMode.FULL || mode == ValidationMode.FAILFAST && errorRecords.isEmpty()) {
+                if (errorRecords.size() == errorPositions.length) {
+                    errorPositions = Arrays.copyOf(errorPositions, errorPositions.length * 2);
+                }
+                errorPositions[errorRecords.size()] = recordPosition;
+                errorRecords.add(record);
+            }
+            complete = ValidationService.canStop(mode, rules);
+        }
+    }
+
+    // True if further records cannot change the validation result
+    public boolean isComplete() {
+        return complete;
+    }
+
+    // Can be called more than once, the result is only determined once
+    public ValidationResult getValidationResult() {
+        if (validationResult == null) {
+            if (!complete) {
+                rules.finish();
+                if (mode != ValidationMode.SUMMARY) {
+                    mergeLateViolations();
+                }
+            }
+            // A late violation can come before the first error record that was accepted
+            if (mode == ValidationMode.FAILFAST && errorRecords.size() > 1) {
+                errorRecords.subList(1, errorRecords.size()).clear();
+            }
+            validationResult = new ValidationResult(ValidationService.determineResult(rules), errorRecords);
+        }
+        return validationResult;
+    }
+
+    public void close() {
+        rules.close();
+    }
+
+    // Merges the error records that the rules only found after the last record into the others, in input order
+    private void mergeLateViolations() {
+        List<Record> lateRecords = new ArrayList<>();
+        List<Long> latePositions = new ArrayList<>();
+        rules.forEachLateViolation((record, recordPosition) -> {
+            lateRecords.add(record);
+            latePositions.add(recordPosition);
+        });
+        if (lateRecords.isEmpty()) {
+            return;
+        }
+        // Every rule reports in input order, but with more than one rule the records have to be sorted
+        Integer[] lateOrder = new Integer[lateRecords.size()];
+        Arrays.setAll(lateOrder, index -> index);
+        Arrays.sort(lateOrder, (left, right) -> Long.compare(latePositions.get(left), latePositions.get(right)));
+
+        List<Record> merged = new ArrayList<>(errorRecords.size() + lateRecords.size());
+        int errorIndex = 0;
+        long lastPosition = -1;
+        for (int late : lateOrder) {
+            long latePosition = latePositions.get(late);
+            while (errorIndex < errorRecords.size() && errorPositions[errorIndex] <= latePosition) {
+                lastPosition = errorPositions[errorIndex];
+                merged.add(errorRecords.get(errorIndex++));
+            }
+            // A record that is already an error record is listed only once
+            if (latePosition != lastPosition) {
+                lastPosition = latePosition;
+                merged.add(lateRecords.get(late));
+            }
+        }
+        merged.addAll(errorRecords.subList(errorIndex, errorRecords.size()));
+        errorRecords.clear();
+        errorRecords.addAll(merged);
+    }
+}
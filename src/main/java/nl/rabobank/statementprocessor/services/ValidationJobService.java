@@ -0,0 +1,160 @@
+package nl.rabobank.statementprocessor.services;
+
+import com.google.gson.JsonParseException;
+import lombok.extern.slf4j.Slf4j;
+import nl.rabobank.statementprocessor.model.JobStatus;
+import nl.rabobank.statementprocessor.model.Result;
+import nl.rabobank.statementprocessor.model.ValidationJob;
+import nl.rabobank.statementprocessor.model.ValidationMode;
+import nl.rabobank.statementprocessor.model.ValidationResult;
+import nl.rabobank.statementprocessor.parsers.JsonStatementReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service that validates statements asynchronously, so that large statements do not keep a request open
+ * Jobs run on a bounded pool, and only as many jobs as there are threads plus the queue capacity are accepted at a
+ * time. A job that does not fit is rejected before its body is read
+ * The body of an accepted job is spooled to a file as it is, which is streamed through the validation when the job
+ * runs, so a waiting job takes no heap and a running one only its error records
+ * Finished jobs are kept for the retention period and are removed afterwards, so memory stays bounded
+ */
+
+@Slf4j
+@Service
+public class ValidationJobService {
+
+    private final ValidationService validationService;
+    private final ThreadPoolExecutor jobPool;
+    // One permit per job that is queued or running
+    private final Semaphore jobSlots;
+    private final Path spoolDirectory;
+    private final Duration retention;
+    private final Clock clock;
+    private final Map<String, ValidationJob> jobs = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ValidationJobService(final ValidationService validationService,
+                                @Value("${statement.jobs.threads:2}") final int threads,
+                                @Value("${statement.jobs.queue-capacity:16}") final int queueCapacity,
+                                @Value("${statement.jobs.retention:10m}") final Duration retention,
+                                @Value("${statement.jobs.spool-directory:}") final String spoolDirectory) {
+        this(validationService, threads, queueCapacity, retention,
+                Paths.get(spoolDirectory.isEmpty() ? System.getProperty("java.io.tmpdir") : spoolDirectory),
+                Clock.systemUTC());
+    }
+
+    ValidationJobService(final ValidationService validationService, final int threads, final int queueCapacity,
+                         final Duration retention, final Path spoolDirectory, final Clock clock) {
+        this.validationService = validationService;
+        // The permits bound the jobs, a job that releases its permit may still hold its thread for a moment, so a
+        // bounded queue could reject a job that was given a permit
+        this.jobPool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        this.jobSlots = new Semaphore(threads + queueCapacity);
+        this.spoolDirectory = spoolDirectory;
+        this.retention = retention;
+        this.clock = clock;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobPool.shutdownNow();
+    }
+
+    /**
+     * Spools the JSON statement in the body and queues it for validation, the body is not read if the job is rejected
+     * @return the queued job
+     * @throws RejectedExecutionException when the queue is full
+     * @throws IOException                when the body cannot be read or spooled
+     */
+    public ValidationJob submit(final InputStream body) throws IOException {
+        removeExpiredJobs();
+        if (!jobSlots.tryAcquire()) {
+            throw new RejectedExecutionException("Job queue is full");
+        }
+        String id = UUID.randomUUID().toString();
+        Path spoolFile = null;
+        try {
+            spoolFile = Files.createTempFile(spoolDirectory, "statement-", ".json");
+            Files.copy(body, spoolFile, StandardCopyOption.REPLACE_EXISTING);
+            ValidationJob queued = new ValidationJob(id, JobStatus.QUEUED, null, null);
+            jobs.put(id, queued);
+            Path statementFile = spoolFile;
+            jobPool.execute(() -> run(id, statementFile));
+            return queued;
+        } catch (IOException | RuntimeException e) {
+            jobs.remove(id);
+            deleteQuietly(spoolFile);
+            jobSlots.release();
+            throw e;
+        }
+    }
+
+    public Optional<ValidationJob> getJob(final String id) {
+        removeExpiredJobs();
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    private void run(final String id, final Path spoolFile) {
+        jobs.put(id, new ValidationJob(id, JobStatus.RUNNING, null, null));
+        ValidationJob finished;
+        try (JsonStatementReader records =
+                     new JsonStatementReader(Files.newBufferedReader(spoolFile, StandardCharsets.UTF_8))) {
+            ValidationResult validationResult = validationService.validateRecords(records, ValidationMode.FULL);
+            finished = new ValidationJob(id, JobStatus.COMPLETED, validationResult, clock.instant());
+        } catch (JsonParseException e) {
+            log.error("JSON parsing error in job {}, exception: {}", id, e.getMessage());
+            finished = failedJob(id, Result.BAD_REQUEST);
+        } catch (IOException | RuntimeException e) {
+            log.error("Internal server error in job {}, exception: {}", id, e.getMessage());
+            finished = failedJob(id, Result.INTERNAL_SERVER_ERROR);
+        } finally {
+            deleteQuietly(spoolFile);
+            jobSlots.release();
+        }
+        jobs.put(id, finished);
+    }
+
+    private ValidationJob failedJob(final String id, final Result result) {
+        return new ValidationJob(id, JobStatus.FAILED, new ValidationResult(result, new ArrayList<>()), clock.instant());
+    }
+
+    private static void deleteQuietly(final Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Spool file {} could not be deleted, exception: {}", file, e.toString());
+        }
+    }
+
+    private void removeExpiredJobs() {
+        Instant expiredBefore = clock.instant().minus(retention);
+        jobs.values().removeIf(job -> job.getFinishedAt() != null && job.getFinishedAt().isBefore(expiredBefore));
+    }
+}
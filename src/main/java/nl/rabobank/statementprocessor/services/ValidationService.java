@@ -1,68 +1,376 @@
 package nl.rabobank.statementprocessor.services;
 
 import lombok.extern.slf4j.Slf4j;
+import nl.rabobank.statementprocessor.index.ReferenceIndex;
+import nl.rabobank.statementprocessor.metrics.ValidationMetrics;
+import nl.rabobank.statementprocessor.metrics.ValidationMetrics.Stage;
+import nl.rabobank.statementprocessor.model.ColumnarStatement;
 import nl.rabobank.statementprocessor.model.Record;
 import nl.rabobank.statementprocessor.model.Result;
 import nl.rabobank.statementprocessor.model.Statement;
+import nl.rabobank.statementprocessor.model.ValidationMode;
 import nl.rabobank.statementprocessor.model.ValidationResult;
+import nl.rabobank.statementprocessor.rules.RuleEngine;
+import nl.rabobank.statementprocessor.rules.ValidationRule;
+import nl.rabobank.statementprocessor.rules.Violation;
+import nl.rabobank.statementprocessor.util.LongHashSet;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 
+import javax.annotation.PreDestroy;
+
+import java.nio.file.Paths;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.BitSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
+import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class ValidationService {
 
+    private static final int MAX_RETAINED_REFERENCE_SET_SIZE = 1 << 16;
+    private static final ThreadLocal<LongHashSet> REFERENCE_SETS = ThreadLocal.withInitial(LongHashSet::new);
+
+    private final int parallelThreshold;
+    private final ForkJoinPool validationPool;
+    private final ParallelStatementValidator parallelValidator;
+    private final DuplicateReferenceRule duplicateReferenceRule;
+    private final boolean checkBalanceChains;
+    private final boolean hasCustomRules;
+    private final RuleEngine ruleEngine;
+    private final ValidationMetrics metrics;
+
+    /**
+     * @param referenceMemoryBudget maximum heap used to find the duplicate references within a statement, beyond it
+     *                              they are found with spill files (see SpillingDuplicateCheck), 0 means no limit.
+     *                              Statements that exceed it are not validated in parallel
+     * @param spillDirectory        directory of the spill files, the temporary directory if empty
+     * @param customRules           rules that are checked in addition to the built-in duplicate reference, end balance
+     *                              and (when enabled) balance chain rules
+     */
+    @Autowired
+    public ValidationService(@Value("${statement.validation.parallel-threshold:100000}") final int parallelThreshold,
+                             @Value("${statement.validation.parallelism:0}") final int parallelism,
+                             @Value("${statement.validation.balance-chain:false}") final boolean checkBalanceChains,
+                             @Value("${statement.validation.reference-memory-budget:0}") final String referenceMemoryBudget,
+                             @Value("${statement.validation.spill-directory:}") final String spillDirectory,
+                             final Optional<ReferenceIndex> referenceIndex,
+                             final ValidationMetrics metrics,
+                             final ObjectProvider<ValidationRule> customRules) {
+        this.parallelThreshold = parallelThreshold;
+        this.validationPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.checkBalanceChains = checkBalanceChains;
+        this.metrics = metrics;
+        this.duplicateReferenceRule = new DuplicateReferenceRule(referenceIndex.orElse(null),
+                DataSize.parse(referenceMemoryBudget).toBytes(),
+                Paths.get(spillDirectory.isEmpty() ? System.getProperty("java.io.tmpdir") : spillDirectory));
+        this.parallelValidator = new ParallelStatementValidator(validationPool, referenceIndex.orElse(null),
+                checkBalanceChains, metrics);
+
+        List<ValidationRule> rules = customRules.orderedStream().collect(Collectors.toCollection(ArrayList::new));
+        this.hasCustomRules = !rules.isEmpty();
+        rules.add(new EndBalanceRule());
+        rules.add(duplicateReferenceRule);
+        if (checkBalanceChains) {
+            rules.add(new BalanceChainRule());
+        }
+        this.ruleEngine = new RuleEngine(rules);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        validationPool.shutdown();
+    }
+
     public ValidationResult validateStatement(final Statement statement) {
-        // Default result
-        ValidationResult validationResult = new ValidationResult(Result.SUCCESSFUL, new ArrayList<>());
+        return validateStatement(statement, ValidationMode.FULL);
+    }
 
-        // Check for duplicate references
-        List<Record> duplicateReferences = findDuplicateReferences(statement.getRecords());
-        boolean hasDuplicateReferences = !duplicateReferences.isEmpty();
+    public ValidationResult validateStatement(final Statement statement, final ValidationMode mode) {
+        List<Record> records = randomAccess(statement.getRecords());
+        if (isValidatedInParallel(records.size())) {
+            ValidationResult validationResult = parallelValidator.validate(records, mode);
+            metrics.recordValidation(records.size(), validationResult);
+            return validationResult;
+        }
 
-        // Check for incorrect end balances
-        List<Record> recordsWithIncorrectBalance = findRecordsWithIncorrectEndBalance(statement.getRecords());
-        boolean hasIncorrectEndBalances = !recordsWithIncorrectBalance.isEmpty();
+        // Only custom rules and references beyond the memory budget need the rule engine
+        if (!hasCustomRules && !duplicateReferenceRule.exceedsMemoryBudget(records.size())) {
+            return validateBuiltInRules(records, mode);
+        }
 
-        // Determine Result
-        if (hasIncorrectEndBalances && hasDuplicateReferences) {
-            validationResult.setResult(Result.DUPLICATE_REFERENCE_INCORRECT_END_BALANCE);
-        } else if (hasIncorrectEndBalances) {
-            validationResult.setResult(Result.INCORRECT_END_BALANCE);
-        } else if (hasDuplicateReferences) {
-            validationResult.setResult(Result.DUPLICATE_REFERENCE);
+        long stageStart = System.nanoTime();
+        RuleEngine.Run rules = ruleEngine.start(records.size());
+        BitSet errorIndices = new BitSet(records.size());
+        boolean stopped = false;
+
+        try {
+            // Check all rules in a single pass, marking error records by index
+            for (int index = 0; index < records.size() && !stopped; index++) {
+                if (rules.test(records.get(index))) {
+                    errorIndices.set(index);
+                    stopped = canStop(mode, rules);
+                }
+            }
+            if (!stopped) {
+                rules.finish();
+                rules.forEachLateViolation((record, position) -> errorIndices.set((int) position));
+            }
+        } finally {
+            rules.close();
         }
+        stageStart = metrics.recordStage(Stage.SCAN, stageStart);
+
+        // Determine Result
+        Result result = determineResult(rules);
+        List<Record> errorRecords = collectErrorRecords(records, errorIndices, mode);
+        ValidationResult validationResult = new ValidationResult(result, errorRecords);
+        metrics.recordStage(Stage.COLLECT, stageStart);
+        metrics.recordValidation(records.size(), validationResult);
+        return validationResult;
+    }
+
+    // Large statements are spread over all cores, as long as there is more than one
+    // The parallel validation only knows the built-in rules, cannot stop early and keeps all references in memory
+    private boolean isValidatedInParallel(final int size) {
+        return size >= parallelThreshold && validationPool.getParallelism() > 1 && !hasCustomRules
+                && !duplicateReferenceRule.exceedsMemoryBudget(size);
+    }
+
+    // The built-in rules checked in one fused loop, with the same results as the rule engine
+    private ValidationResult validateBuiltInRules(final List<Record> records, final ValidationMode mode) {
+        long stageStart = System.nanoTime();
+        LongHashSet uniqueReferences = borrowReferenceSet(records.size());
+        BalanceChain balanceChain = checkBalanceChains ? new BalanceChain() : null;
+        long now = duplicateReferenceRule.statementTime();
+        BitSet errorIndices = new BitSet(records.size());
+        boolean hasDuplicateReferences = false;
+        boolean hasIncorrectEndBalances = false;
+        boolean stopped = false;
 
-        // Determine list of error records
-        // Use Set to avoid duplicates (e.g. a record could both be a duplicate reference and have an incorrect balance)
-        if(hasIncorrectEndBalances || hasDuplicateReferences) {
-            Set<Record> errorRecords = new HashSet<>(duplicateReferences);
-            errorRecords.addAll(recordsWithIncorrectBalance);
-            validationResult.setErrorRecords(new ArrayList<>(errorRecords));
+        // Check for duplicate references and incorrect end balances in a single pass, marking error records by index
+        for (int index = 0; index < records.size() && !stopped; index++) {
+            Record record = records.get(index);
+            boolean isDuplicateReference = duplicateReferenceRule.isDuplicateReference(uniqueReferences,
+                    record.getTransactionReference(), now);
+            boolean hasIncorrectEndBalance = !record.validateEndBalance()
+                    | (balanceChain != null && balanceChain.test(record));
+            if (isDuplicateReference || hasIncorrectEndBalance) {
+                errorIndices.set(index);
+                hasDuplicateReferences |= isDuplicateReference;
+                hasIncorrectEndBalances |= hasIncorrectEndBalance;
+                stopped = mode != ValidationMode.FULL && hasDuplicateReferences && hasIncorrectEndBalances;
+            }
         }
+        if (stopped) {
+            duplicateReferenceRule.removeFromIndex(uniqueReferences, now);
+        }
+        stageStart = metrics.recordStage(Stage.SCAN, stageStart);
 
+        // Determine Result
+        Result result = determineResult(hasDuplicateReferences, hasIncorrectEndBalances);
+        List<Record> errorRecords = collectErrorRecords(records, errorIndices, mode);
+        ValidationResult validationResult = new ValidationResult(result, errorRecords);
+        metrics.recordStage(Stage.COLLECT, stageStart);
+        metrics.recordValidation(records.size(), validationResult);
         return validationResult;
     }
 
-    private List<Record> findRecordsWithIncorrectEndBalance(final List<Record> records) {
+    public ValidationResult validateColumnarStatement(final ColumnarStatement statement) {
+        return validateColumnarStatement(statement, ValidationMode.FULL);
+    }
+
+    /**
+     * Validates a columnar statement: end balances are checked column-wise into a bit mask first, then references are
+     * checked in input order, so the result is the same as for the equivalent Statement
+     * Error records are rebuilt from the columns and have no description, unless the statement can produce them
+     * Custom rules need Records and references beyond the memory budget are spilled by the rule, so then the statement
+     * is validated as a list of Records that are rebuilt as they are read
+     * The same goes for a statement that is large enough to be validated in parallel
+     */
+    public ValidationResult validateColumnarStatement(final ColumnarStatement statement, final ValidationMode mode) {
+        if (hasCustomRules || duplicateReferenceRule.exceedsMemoryBudget(statement.size())
+                || isValidatedInParallel(statement.size())) {
+            return validateStatement(new Statement(asRecords(statement)), mode);
+        }
+
+        long stageStart = System.nanoTime();
+        BitSet errorIndices = BitSet.valueOf(statement.incorrectEndBalances());
+        if (checkBalanceChains) {
+            markBrokenBalanceChains(statement, errorIndices);
+        }
+        boolean hasIncorrectEndBalances = !errorIndices.isEmpty();
+        boolean hasDuplicateReferences = false;
+
+        LongHashSet uniqueReferences = borrowReferenceSet(statement.size());
+        long now = duplicateReferenceRule.statementTime();
+        for (int index = 0; index < statement.size(); index++) {
+            if (duplicateReferenceRule.isDuplicateReference(uniqueReferences, statement.getTransactionReference(index), now)) {
+                errorIndices.set(index);
+                hasDuplicateReferences = true;
+            }
+        }
+        stageStart = metrics.recordStage(Stage.SCAN, stageStart);
+
         List<Record> errorRecords = new ArrayList<>();
-        for (Record record : records) {
-            if (!record.validateEndBalance()) {
-                errorRecords.add(record);
+        if (mode != ValidationMode.SUMMARY) {
+            for (int index = errorIndices.nextSetBit(0); index >= 0; index = errorIndices.nextSetBit(index + 1)) {
+                errorRecords.add(statement.toRecord(index));
+                if (mode == ValidationMode.FAILFAST) {
+                    break;
+                }
+            }
+        }
+        ValidationResult validationResult = new ValidationResult(
+                determineResult(hasDuplicateReferences, hasIncorrectEndBalances), errorRecords);
+        metrics.recordStage(Stage.COLLECT, stageStart);
+        metrics.recordValidation(statement.size(), validationResult);
+        return validationResult;
+    }
+
+    // A Record is only built when the validation gets to it, and is not kept by the list
+    private static List<Record> asRecords(final ColumnarStatement statement) {
+        return new ColumnarRecordList(statement);
+    }
+
+    private static final class ColumnarRecordList extends AbstractList<Record> implements RandomAccess {
+        private final ColumnarStatement statement;
+
+        private ColumnarRecordList(final ColumnarStatement statement) {
+            this.statement = statement;
+        }
+
+        @Override
+        public Record get(final int index) {
+            return statement.toRecord(index);
+        }
+
+        @Override
+        public int size() {
+            return statement.size();
+        }
+    }
+
+    // Account ids are dense, so the last end balance of every account is kept in an array instead of a map
+    private static void markBrokenBalanceChains(final ColumnarStatement statement, final BitSet errorIndices) {
+        long[] lastEndBalances = new long[statement.getAccountCount()];
+        BitSet seenAccounts = new BitSet(statement.getAccountCount());
+        for (int index = 0; index < statement.size(); index++) {
+            int accountId = statement.getAccountId(index);
+            if (statement.getAccountNumber(index) == null) {
+                continue;
+            }
+            if (seenAccounts.get(accountId) && lastEndBalances[accountId] != statement.getStartBalance(index)) {
+                errorIndices.set(index);
+            }
+            seenAccounts.set(accountId);
+            lastEndBalances[accountId] = statement.getEndBalance(index);
+        }
+    }
+
+    // Validates the records while they are being read, so that the statement never has to be held in memory as a whole
+    public ValidationResult validateRecords(final Iterator<Record> records) {
+        return validateRecords(records, ValidationMode.FULL);
+    }
+
+    /**
+     * Validates the records while they are being read
+     * When the mode stops early the remaining records are not read, so errors in them (such as parse errors) are not
+     * reported either
+     */
+    public ValidationResult validateRecords(final Iterator<Record> records, final ValidationMode mode) {
+        long stageStart = System.nanoTime();
+        StatementValidator validator = createValidator(mode);
+        long recordCount = 0;
+        ValidationResult validationResult;
+        try {
+            while (!validator.isComplete() && records.hasNext()) {
+                validator.accept(records.next());
+                recordCount++;
+            }
+            validationResult = validator.getValidationResult();
+        } finally {
+            validator.close();
+        }
+        metrics.recordStage(Stage.STREAM, stageStart);
+        metrics.recordValidation(recordCount, validationResult);
+        return validationResult;
+    }
+
+    public StatementValidator createValidator() {
+        return createValidator(ValidationMode.FULL);
+    }
+
+    public StatementValidator createValidator(final ValidationMode mode) {
+        return new StatementValidator(ruleEngine.start(-1), mode);
+    }
+
+    // Called after an error record, returns true if the mode needs no further records
+    static boolean canStop(final ValidationMode mode, final RuleEngine.Run rules) {
+        switch (mode) {
+            case SUMMARY:
+            case FAILFAST:
+                return rules.isDecided();
+            default:
+                return false;
+        }
+    }
+
+    static Result determineResult(final RuleEngine.Run rules) {
+        return determineResult(rules.hasViolation(Violation.DUPLICATE_REFERENCE),
+                rules.hasViolation(Violation.INCORRECT_END_BALANCE));
+    }
+
+    static Result determineResult(final boolean hasDuplicateReferences, final boolean hasIncorrectEndBalances) {
+        if (hasIncorrectEndBalances && hasDuplicateReferences) {
+            return Result.DUPLICATE_REFERENCE_INCORRECT_END_BALANCE;
+        } else if (hasIncorrectEndBalances) {
+            return Result.INCORRECT_END_BALANCE;
+        } else if (hasDuplicateReferences) {
+            return Result.DUPLICATE_REFERENCE;
+        }
+        return Result.SUCCESSFUL;
+    }
+
+    // Error records are listed in input order, a record that fails both checks is listed only once
+    // Summary collects none and fail-fast only the first one
+    private static List<Record> collectErrorRecords(final List<Record> records, final BitSet errorIndices,
+                                                    final ValidationMode mode) {
+        if (mode == ValidationMode.SUMMARY) {
+            return new ArrayList<>();
+        }
+        List<Record> errorRecords = new ArrayList<>(mode == ValidationMode.FAILFAST ? 1 : errorIndices.cardinality());
+        for (int index = errorIndices.nextSetBit(0); index >= 0; index = errorIndices.nextSetBit(index + 1)) {
+            errorRecords.add(records.get(index));
+            if (mode == ValidationMode.FAILFAST) {
+                break;
             }
         }
         return errorRecords;
     }
 
-    private List<Record> findDuplicateReferences(final List<Record> records) {
-        Set<Long> uniqueRecords = new HashSet<>();
-        return records.stream()
-                .filter(record -> !uniqueRecords.add(record.getTransactionReference()))
-                .collect(Collectors.toList());
+    private static List<Record> randomAccess(final List<Record> records) {
+        return records instanceof RandomAccess ? records : new ArrayList<>(records);
+    }
+
+    // Returns the empty reference set of the current thread, pre-sized for the given number of records
+    static LongHashSet borrowReferenceSet(final int expectedSize) {
+        if (expectedSize > MAX_RETAINED_REFERENCE_SET_SIZE) {
+            // Exceptionally large statements get a set of their own, so that its table is not kept alive by the thread
+            return new LongHashSet(expectedSize);
+        }
+        LongHashSet referenceSet = REFERENCE_SETS.get();
+        referenceSet.clear();
+        referenceSet.ensureCapacity(expectedSize);
+        return referenceSet;
     }
 }
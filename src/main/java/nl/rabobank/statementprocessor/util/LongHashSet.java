@@ -0,0 +1,151 @@
+package nl.rabobank.statementprocessor.util;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Set of primitive long values, backed by a single open-addressing table with linear probing
+ * Adding a value never allocates unless the table has to grow, so it can be pre-sized and reused across statements
+ * The value 0 is used to mark empty slots and is therefore tracked separately
+ * Instances are not thread-safe
+ */
+
+public final class LongHashSet {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final long EMPTY = 0L;
+
+    private long[] table;
+    private int mask;
+    private int resizeThreshold;
+    private int size;
+    private boolean containsEmptyValue;
+
+    public LongHashSet() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    public LongHashSet(final int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * Adds the value to the set
+     * @return true if the value was not yet present
+     */
+    public boolean add(final long value) {
+        if (value == EMPTY) {
+            if (containsEmptyValue) {
+                return false;
+            }
+            containsEmptyValue = true;
+            size++;
+            return true;
+        }
+        long[] slots = table;
+        int index = hash(value) & mask;
+        long current;
+        while ((current = slots[index]) != EMPTY) {
+            if (current == value) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        slots[index] = value;
+        if (++size > resizeThreshold) {
+            rehash(table.length << 1);
+        }
+        return true;
+    }
+
+    public boolean contains(final long value) {
+        if (value == EMPTY) {
+            return containsEmptyValue;
+        }
+        long[] slots = table;
+        int index = hash(value) & mask;
+        long current;
+        while ((current = slots[index]) != EMPTY) {
+            if (current == value) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    // Passes every value to the action, in no particular order
+    public void forEach(final LongConsumer action) {
+        if (containsEmptyValue) {
+            action.accept(EMPTY);
+        }
+        for (long value : table) {
+            if (value != EMPTY) {
+                action.accept(value);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Number of slots in the table, a table holds at most half as many values before it grows
+    public int capacity() {
+        return table.length;
+    }
+
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(table, EMPTY);
+            size = 0;
+            containsEmptyValue = false;
+        }
+    }
+
+    // Grows the table up front so that the expected number of values can be added without rehashing
+    public void ensureCapacity(final int expectedSize) {
+        int capacity = capacityFor(expectedSize);
+        if (capacity > table.length) {
+            rehash(capacity);
+        }
+    }
+
+    private void rehash(final int capacity) {
+        if (table.length >= MAX_CAPACITY) {
+            throw new IllegalStateException("LongHashSet cannot grow beyond " + MAX_CAPACITY + " slots");
+        }
+        long[] oldTable = table;
+        allocate(capacity);
+        for (long value : oldTable) {
+            if (value != EMPTY) {
+                int index = hash(value) & mask;
+                while (table[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                table[index] = value;
+            }
+        }
+    }
+
+    private void allocate(final int capacity) {
+        table = new long[capacity];
+        mask = capacity - 1;
+        resizeThreshold = capacity >>> 1;
+    }
+
+    private static int capacityFor(final int expectedSize) {
+        long required = Math.max(MIN_CAPACITY, 2L * expectedSize);
+        return (int) Math.min(MAX_CAPACITY, Long.highestOneBit(required - 1) << 1);
+    }
+
+    // Seeded, as the values are references from requests, see SeededHash
+    private static int hash(final long value) {
+        return SeededHash.hash(value);
+    }
+}
@@ -0,0 +1,97 @@
+package nl.rabobank.statementprocessor.util;
+
+/**
+ * MurmurHash3, the x64 128-bit variant, which hashes about 16 bytes per round and is not cryptographic
+ * The result is the same as the reference implementation (and Guava's murmur3_128) for the same seed, with h1 as the
+ * high and h2 as the low half
+ */
+
+public final class Murmur3 {
+
+    private static final long C1 = 0x87C37B91114253D5L;
+    private static final long C2 = 0x4CF5AD432745937FL;
+
+    private Murmur3() {
+    }
+
+    /**
+     * Hashes the bytes from offset to offset + length
+     * @return the 128-bit hash as { high, low }
+     */
+    public static long[] hash128(final byte[] data, final int offset, final int length, final long seed) {
+        long h1 = seed;
+        long h2 = seed;
+        int blocksEnd = offset + (length & ~15);
+
+        for (int index = offset; index < blocksEnd; index += 16) {
+            long k1 = getLong(data, index);
+            long k2 = getLong(data, index + 8);
+
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52DCE729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495AB5;
+        }
+
+        // The tail is read as little-endian values of up to 8 bytes each
+        long k1 = 0;
+        long k2 = 0;
+        int tail = length & 15;
+        for (int index = tail - 1; index >= 8; index--) {
+            k2 = (k2 << 8) | (data[blocksEnd + index] & 0xFFL);
+        }
+        for (int index = Math.min(tail, 8) - 1; index >= 0; index--) {
+            k1 = (k1 << 8) | (data[blocksEnd + index] & 0xFFL);
+        }
+        h1 ^= mixK1(k1);
+        h2 ^= mixK2(k2);
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+        return new long[] { h1, h2 };
+    }
+
+    public static long[] hash128(final byte[] data, final long seed) {
+        return hash128(data, 0, data.length, seed);
+    }
+
+    private static long mixK1(final long k1) {
+        return Long.rotateLeft(k1 * C1, 31) * C2;
+    }
+
+    private static long mixK2(final long k2) {
+        return Long.rotateLeft(k2 * C2, 33) * C1;
+    }
+
+    private static long fmix64(final long value) {
+        long hash = value;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static long getLong(final byte[] data, final int index) {
+        return (data[index] & 0xFFL)
+                | (data[index + 1] & 0xFFL) << 8
+                | (data[index + 2] & 0xFFL) << 16
+                | (data[index + 3] & 0xFFL) << 24
+                | (data[index + 4] & 0xFFL) << 32
+                | (data[index + 5] & 0xFFL) << 40
+                | (data[index + 6] & 0xFFL) << 48
+                | (data[index + 7] & 0xFFL) << 56;
+    }
+}
@@ -0,0 +1,47 @@
+package nl.rabobank.statementprocessor.util;
+
+import java.security.SecureRandom;
+
+/**
+ * Hash functions for the in-memory hash tables whose keys come from requests, such as account numbers and references
+ * The keys are mixed with a seed that is chosen at random per process, so a client cannot compute keys that all land in
+ * the same slot and turn every lookup into a scan of the table (hash flooding), as String.hashCode allows
+ * As the hashes differ per process they must not be stored, tables on disk such as the ReferenceIndex do not use them
+ */
+
+public final class SeededHash {
+
+    private static final long SEED = new SecureRandom().nextLong();
+    private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private SeededHash() {
+    }
+
+    // Hashes the bytes from start to end
+    public static int hash(final byte[] bytes, final int start, final int end) {
+        long hash = SEED;
+        for (int index = start; index < end; index++) {
+            hash = (hash ^ (bytes[index] & 0xFF)) * MULTIPLIER;
+        }
+        return finish(hash);
+    }
+
+    // The seed is mixed in before the Fibonacci multiplication, which still spreads sequential values over the table
+    public static int hash(final long value) {
+        return finish((value ^ SEED) * MULTIPLIER);
+    }
+
+    public static int hash(final String value) {
+        long hash = SEED;
+        for (int index = 0; index < value.length(); index++) {
+            hash = (hash ^ value.charAt(index)) * MULTIPLIER;
+        }
+        return finish(hash);
+    }
+
+    // The multiplication only carries upwards, so the high bits are folded into the low bits that index a table
+    private static int finish(final long hash) {
+        long mixed = (hash ^ (hash >>> 33)) * MULTIPLIER;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+}
@@ -0,0 +1,125 @@
+package nl.rabobank.statementprocessor.util;
+
+import java.util.Arrays;
+
+/**
+ * Map from String keys to primitive long values, backed by open-addressing tables with linear probing
+ * Every distinct key is stored once, however often it is put, and values are not boxed, so memory is proportional to
+ * the number of distinct keys only
+ * Null keys are not supported
+ * Instances are not thread-safe
+ */
+
+public final class StringLongHashMap {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private String[] keys;
+    private long[] values;
+    private int mask;
+    private int resizeThreshold;
+    private int size;
+
+    public StringLongHashMap() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    public StringLongHashMap(final int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * Associates the value with the key
+     * @param absentValue value to return when the key was not present yet
+     * @return the previous value of the key, or absentValue if there was none
+     */
+    public long put(final String key, final long value, final long absentValue) {
+        int index = indexOf(key);
+        if (keys[index] != null) {
+            long previous = values[index];
+            values[index] = value;
+            return previous;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size > resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+        return absentValue;
+    }
+
+    public long get(final String key, final long absentValue) {
+        int index = indexOf(key);
+        return keys[index] != null ? values[index] : absentValue;
+    }
+
+    public boolean containsKey(final String key) {
+        return keys[indexOf(key)] != null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, null);
+            size = 0;
+        }
+    }
+
+    // Returns the slot that holds the key, or the empty slot where it would be added
+    private int indexOf(final String key) {
+        String[] slots = keys;
+        int index = hash(key) & mask;
+        String current;
+        while ((current = slots[index]) != null) {
+            if (current.equals(key)) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void rehash(final int capacity) {
+        if (keys.length >= MAX_CAPACITY) {
+            throw new IllegalStateException("StringLongHashMap cannot grow beyond " + MAX_CAPACITY + " slots");
+        }
+        String[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        for (int oldIndex = 0; oldIndex < oldKeys.length; oldIndex++) {
+            if (oldKeys[oldIndex] != null) {
+                int index = hash(oldKeys[oldIndex]) & mask;
+                while (keys[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[oldIndex];
+                values[index] = oldValues[oldIndex];
+            }
+        }
+    }
+
+    private void allocate(final int capacity) {
+        keys = new String[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        resizeThreshold = capacity >>> 1;
+    }
+
+    private static int capacityFor(final int expectedSize) {
+        long required = Math.max(MIN_CAPACITY, 2L * expectedSize);
+        return (int) Math.min(MAX_CAPACITY, Long.highestOneBit(required - 1) << 1);
+    }
+
+    // Not String.hashCode, which is cached but lets keys be chosen to collide, such as those built from "Aa" and "BB"
+    private static int hash(final String key) {
+        return SeededHash.hash(key);
+    }
+}
@@ -0,0 +1,33 @@
+package nl.rabobank.statementprocessor.view;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import nl.rabobank.statementprocessor.model.Result;
+import nl.rabobank.statementprocessor.model.ValidationResult;
+
+import java.util.List;
+
+/**
+ * Class that represents the 'view' of one ValidationResult in a batch response
+ * Results are sent back in the order in which they finish, the index is the position of the statement in the request
+ * This class is meant for presentation purposes only
+ */
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchValidationResultView {
+    private long index;
+    private Result result;
+    private List<RecordView> errorRecords;
+
+    public BatchValidationResultView(final long index, final ValidationResult validationResult) {
+        ValidationResultView validationResultView = new ValidationResultView(validationResult);
+        this.index = index;
+        this.result = validationResultView.getResult();
+        this.errorRecords = validationResultView.getErrorRecords();
+    }
+}
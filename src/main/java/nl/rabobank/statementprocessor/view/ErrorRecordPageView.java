@@ -0,0 +1,33 @@
+package nl.rabobank.statementprocessor.view;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import nl.rabobank.statementprocessor.model.ErrorRecordPage;
+import nl.rabobank.statementprocessor.model.Record;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class that represents the 'view' of an ErrorRecordPage that is sent back as response
+ * This class is meant for presentation purposes only
+ */
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ErrorRecordPageView {
+    private List<RecordView> errorRecords;
+    private String nextCursor;
+
+    public ErrorRecordPageView(final ErrorRecordPage errorRecordPage) {
+        this.errorRecords = new ArrayList<>(errorRecordPage.getErrorRecords().size());
+        for (Record record : errorRecordPage.getErrorRecords()) {
+            this.errorRecords.add(new RecordView(record.getTransactionReference(), record.getAccountNumber()));
+        }
+        this.nextCursor = errorRecordPage.getNextCursor();
+    }
+}
@@ -0,0 +1,41 @@
+package nl.rabobank.statementprocessor.view;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import nl.rabobank.statementprocessor.model.Result;
+import nl.rabobank.statementprocessor.model.ValidationResult;
+
+import java.util.List;
+
+/**
+ * Class that represents the 'view' of the report of one statement file of the batch profile
+ * The error is only set when the file could not be read or parsed, the result is BAD_REQUEST or INTERNAL_SERVER_ERROR
+ * then
+ * This class is meant for presentation purposes only
+ */
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class FileReportView {
+    private String file;
+    private long bytes;
+    private long durationMillis;
+    private Result result;
+    private List<RecordView> errorRecords;
+    private String error;
+
+    public FileReportView(final String file, final long bytes, final long durationMillis,
+                          final ValidationResult validationResult, final String error) {
+        ValidationResultView validationResultView = new ValidationResultView(validationResult);
+        this.file = file;
+        this.bytes = bytes;
+        this.durationMillis = durationMillis;
+        this.result = validationResultView.getResult();
+        this.errorRecords = validationResultView.getErrorRecords();
+        this.error = error;
+    }
+}
@@ -0,0 +1,32 @@
+package nl.rabobank.statementprocessor.view;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import nl.rabobank.statementprocessor.model.JobStatus;
+import nl.rabobank.statementprocessor.model.ValidationJob;
+
+/**
+ * Class that represents the 'view' of a ValidationJob that is sent back as response
+ * The validation result is null until the job has finished
+ * This class is meant for presentation purposes only
+ */
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ValidationJobView {
+    private String jobId;
+    private JobStatus status;
+    private ValidationResultView validationResult;
+
+    public ValidationJobView(final ValidationJob validationJob) {
+        this.jobId = validationJob.getId();
+        this.status = validationJob.getStatus();
+        if (validationJob.getValidationResult() != null) {
+            this.validationResult = new ValidationResultView(validationJob.getValidationResult());
+        }
+    }
+}
@@ -1,9 +1,19 @@
 package nl.rabobank.statementprocessor;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import nl.rabobank.statementprocessor.codec.BinaryStatementCodec;
+import nl.rabobank.statementprocessor.codec.JsonCodecs;
+import nl.rabobank.statementprocessor.controllers.StatementController;
+import nl.rabobank.statementprocessor.model.JobStatus;
 import nl.rabobank.statementprocessor.model.Result;
+import nl.rabobank.statementprocessor.model.Statement;
 import nl.rabobank.statementprocessor.model.ValidationResult;
+import nl.rabobank.statementprocessor.view.BatchValidationResultView;
+import nl.rabobank.statementprocessor.view.ErrorRecordPageView;
 import nl.rabobank.statementprocessor.view.RecordView;
+import nl.rabobank.statementprocessor.view.ValidationJobView;
 import nl.rabobank.statementprocessor.view.ValidationResultView;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,10 +23,16 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -25,6 +41,10 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 class StatementProcessorApplicationTests {
 
 	private static final String URI = "/statement/validate";
+	private static final String STREAM_URI = "/statement/validate/stream";
+	private static final String BATCH_URI = "/statement/validate/batch";
+	private static final String JOBS_URI = "/statement/jobs";
+	private static final String ERROR_RECORDS_URI = "/statement/error-records";
 
 	private static final String INPUT_HAPPY_FLOW = "{\n" +
 			"  \"records\": [\n" +
@@ -68,6 +88,28 @@ class StatementProcessorApplicationTests {
 			"  ]\n" +
 			"}";
 
+	private static final String INPUT_DUPLICATE_REFERENCES_CSV =
+			"Reference,Account Number,Description,Start Balance,Mutation,End Balance\n" +
+			"123456789,NL34RABO0123456789,Groceries,1234,34,1200\n" +
+			"123456789,NL34RABO0111111111,Something else,1111,11,1100\n";
+
+	private static final String INPUT_DUPLICATE_REFERENCES_XML = "<records>\n" +
+			"  <record reference=\"123456789\">\n" +
+			"    <accountNumber>NL34RABO0123456789</accountNumber>\n" +
+			"    <description>Groceries</description>\n" +
+			"    <startBalance>1234</startBalance>\n" +
+			"    <mutation>34</mutation>\n" +
+			"    <endBalance>1200</endBalance>\n" +
+			"  </record>\n" +
+			"  <record reference=\"123456789\">\n" +
+			"    <accountNumber>NL34RABO0111111111</accountNumber>\n" +
+			"    <description>Something else</description>\n" +
+			"    <startBalance>1111</startBalance>\n" +
+			"    <mutation>11</mutation>\n" +
+			"    <endBalance>1100</endBalance>\n" +
+			"  </record>\n" +
+			"</records>";
+
 	@Autowired
 	private MockMvc mockMvc;
 
@@ -104,4 +146,171 @@ class StatementProcessorApplicationTests {
 		assertEquals(expectedContent, mvcResult.getResponse().getContentAsString());
 	}
 
+	@Test
+	void shouldReturnErrorRecords_whenStreamingControllerIsCalled() throws Exception {
+		RecordView errorRecord = new RecordView(123456789, "NL34RABO0111111111");
+		ValidationResultView validationResultView = new ValidationResultView(Result.DUPLICATE_REFERENCE, Arrays.asList(errorRecord));
+		String expectedContent = new Gson().toJson(validationResultView);
+
+		MvcResult mvcResult = this.mockMvc.perform(post(STREAM_URI)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(INPUT_DUPLICATE_REFERENCES))
+				.andReturn();
+		assertEquals(expectedContent, mvcResult.getResponse().getContentAsString());
+	}
+
+	@Test
+	void shouldReturnErrorRecords_whenCsvStatementIsValidated() throws Exception {
+		RecordView errorRecord = new RecordView(123456789, "NL34RABO0111111111");
+		ValidationResultView validationResultView = new ValidationResultView(Result.DUPLICATE_REFERENCE, Arrays.asList(errorRecord));
+		String expectedContent = new Gson().toJson(validationResultView);
+
+		MvcResult mvcResult = this.mockMvc.perform(post(URI)
+				.contentType("text/csv")
+				.content(INPUT_DUPLICATE_REFERENCES_CSV))
+				.andReturn();
+		assertEquals(expectedContent, mvcResult.getResponse().getContentAsString());
+	}
+
+	@Test
+	void shouldReturnErrorRecords_whenXmlStatementIsValidated() throws Exception {
+		RecordView errorRecord = new RecordView(123456789, "NL34RABO0111111111");
+		ValidationResultView validationResultView = new ValidationResultView(Result.DUPLICATE_REFERENCE, Arrays.asList(errorRecord));
+		String expectedContent = new Gson().toJson(validationResultView);
+
+		MvcResult mvcResult = this.mockMvc.perform(post(URI)
+				.contentType(MediaType.APPLICATION_XML)
+				.content(INPUT_DUPLICATE_REFERENCES_XML))
+				.andReturn();
+		assertEquals(expectedContent, mvcResult.getResponse().getContentAsString());
+	}
+
+	@Test
+	void shouldReturn400_whenCsvStatementCannotBeParsed() throws Exception {
+		this.mockMvc.perform(post(URI)
+				.contentType("text/csv")
+				.content("Reference;Start Balance;Mutation;End Balance\n1;2;3;4\n"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void shouldReturnErrorRecords_whenBinaryStatementIsValidated() throws Exception {
+		RecordView errorRecord = new RecordView(123456789, "NL34RABO0111111111");
+		ValidationResultView validationResultView = new ValidationResultView(Result.DUPLICATE_REFERENCE, Arrays.asList(errorRecord));
+		String expectedContent = new Gson().toJson(validationResultView);
+		ByteArrayOutputStream binaryStatement = new ByteArrayOutputStream();
+		BinaryStatementCodec.encode(JsonCodecs.gson().fromJson(INPUT_DUPLICATE_REFERENCES, Statement.class), binaryStatement);
+
+		MvcResult mvcResult = this.mockMvc.perform(post(URI)
+				.contentType(StatementController.BINARY_STATEMENT_VALUE)
+				.content(binaryStatement.toByteArray()))
+				.andReturn();
+		assertEquals(expectedContent, mvcResult.getResponse().getContentAsString());
+	}
+
+	@Test
+	void shouldReturn400_whenBinaryStatementCannotBeParsed() throws Exception {
+		this.mockMvc.perform(post(URI)
+				.contentType(StatementController.BINARY_STATEMENT_VALUE)
+				.content(INPUT_HAPPY_FLOW))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void shouldReturnRemainingErrorRecordsByCursor_whenErrorRecordsExceedInlineLimit() throws Exception {
+		StringBuilder csv = new StringBuilder("transactionReference,accountNumber,startBalance,mutation,endBalance\n");
+		for (int reference = 1; reference <= 1500; reference++) {
+			csv.append(reference).append(",NL34RABO0123456789,100,10,0\n");
+		}
+
+		MvcResult mvcResult = this.mockMvc.perform(post(URI)
+				.contentType("text/csv")
+				.content(csv.toString()))
+				.andExpect(status().isOk())
+				.andReturn();
+		JsonObject response = JsonParser.parseString(mvcResult.getResponse().getContentAsString()).getAsJsonObject();
+		assertEquals(1000, response.getAsJsonArray("errorRecords").size());
+		assertEquals(1500, response.get("errorRecordCount").getAsInt());
+
+		MvcResult pageResult = this.mockMvc.perform(get(ERROR_RECORDS_URI)
+				.param("cursor", response.get("nextCursor").getAsString()))
+				.andExpect(status().isOk())
+				.andReturn();
+		ErrorRecordPageView page = new Gson().fromJson(pageResult.getResponse().getContentAsString(), ErrorRecordPageView.class);
+		assertEquals(500, page.getErrorRecords().size());
+		assertEquals(new RecordView(1001, "NL34RABO0123456789"), page.getErrorRecords().get(0));
+		assertNull(page.getNextCursor());
+	}
+
+	@Test
+	void shouldReturn404_whenCursorIsUnknown() throws Exception {
+		this.mockMvc.perform(get(ERROR_RECORDS_URI).param("cursor", "unknown.0"))
+				.andExpect(status().isNotFound());
+	}
+
+	@Test
+	void shouldReturnOneResultPerLine_whenBatchIsValidated() throws Exception {
+		String batch = INPUT_HAPPY_FLOW.replace("\n", "") + "\n" + INPUT_DUPLICATE_REFERENCES.replace("\n", "") + "\n";
+
+		MvcResult mvcResult = this.mockMvc.perform(post(BATCH_URI)
+				.contentType("application/x-ndjson")
+				.content(batch))
+				.andExpect(status().isOk())
+				.andReturn();
+
+		String[] lines = mvcResult.getResponse().getContentAsString().split("\n");
+		assertEquals(2, lines.length);
+		Map<Long, BatchValidationResultView> results = new HashMap<>();
+		for (String line : lines) {
+			BatchValidationResultView view = new Gson().fromJson(line, BatchValidationResultView.class);
+			results.put(view.getIndex(), view);
+		}
+		assertEquals(Result.SUCCESSFUL, results.get(0L).getResult());
+		assertEquals(Result.DUPLICATE_REFERENCE, results.get(1L).getResult());
+		assertEquals(Arrays.asList(new RecordView(123456789, "NL34RABO0111111111")), results.get(1L).getErrorRecords());
+	}
+
+	@Test
+	void shouldReturnValidationResult_whenJobIsSubmittedAndPolled() throws Exception {
+		MvcResult submitResult = this.mockMvc.perform(post(JOBS_URI)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(INPUT_DUPLICATE_REFERENCES))
+				.andExpect(status().isAccepted())
+				.andReturn();
+		String location = submitResult.getResponse().getHeader("Location");
+
+		ValidationJobView job = null;
+		for (int attempt = 0; attempt < 100; attempt++) {
+			MvcResult pollResult = this.mockMvc.perform(get(location)).andExpect(status().isOk()).andReturn();
+			job = new Gson().fromJson(pollResult.getResponse().getContentAsString(), ValidationJobView.class);
+			if (job.getStatus() == JobStatus.COMPLETED) {
+				break;
+			}
+			Thread.sleep(10);
+		}
+		assertEquals(JobStatus.COMPLETED, job.getStatus());
+		assertEquals(Result.DUPLICATE_REFERENCE, job.getValidationResult().getResult());
+	}
+
+	@Test
+	void shouldReturn404_whenJobDoesNotExist() throws Exception {
+		this.mockMvc.perform(get(JOBS_URI + "/unknown"))
+				.andExpect(status().isNotFound());
+	}
+
+	@Test
+	void shouldExposeStageMetrics_whenStatementIsValidated() throws Exception {
+		this.mockMvc.perform(post(URI)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(INPUT_HAPPY_FLOW))
+				.andExpect(status().isOk());
+
+		String metrics = this.mockMvc.perform(get("/actuator/prometheus"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		assertTrue(metrics.contains("statement_stage_seconds_bucket{stage=\"decode\""));
+		assertTrue(metrics.contains("statement_stage_seconds_count{stage=\"render\""));
+		assertTrue(metrics.contains("statement_results_total{result=\"SUCCESSFUL\""));
+	}
+
 }
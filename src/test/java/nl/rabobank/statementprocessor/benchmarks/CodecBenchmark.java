@@ -0,0 +1,79 @@
+package nl.rabobank.statementprocessor.benchmarks;
+
+import com.google.gson.Gson;
+import nl.rabobank.statementprocessor.codec.JsonCodecs;
+import nl.rabobank.statementprocessor.model.Record;
+import nl.rabobank.statementprocessor.model.Result;
+import nl.rabobank.statementprocessor.model.Statement;
+import nl.rabobank.statementprocessor.view.RecordView;
+import nl.rabobank.statementprocessor.view.ValidationResultView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares Gson's reflective adapters with the hand-written adapters of JsonCodecs
+ * Decoding parses a statement, encoding writes a ValidationResultView with one error record per record
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({ "reflective", "precompiled" })
+    private String codec;
+
+    @Param({ "1000" })
+    private int records;
+
+    private Gson gson;
+    private String statementJson;
+    private ValidationResultView validationResultView;
+
+    @Setup
+    public void setUp() {
+        gson = "reflective".equals(codec) ? new Gson() : JsonCodecs.gson();
+
+        List<Record> recordList = new ArrayList<>(records);
+        List<RecordView> recordViews = new ArrayList<>(records);
+        for (int index = 0; index < records; index++) {
+            recordList.add(Record.builder()
+                    .transactionReference(100_000_000L + index)
+                    .accountNumber("NL34RABO0" + (123_456_789 - index % 100))
+                    .description("Transaction " + index)
+                    .startBalance(10_000 + index)
+                    .mutation(index % 500)
+                    .endBalance(10_000 + index - index % 500)
+                    .build());
+            recordViews.add(new RecordView(100_000_000L + index, "NL34RABO0" + (123_456_789 - index % 100)));
+        }
+        statementJson = new Gson().toJson(new Statement(recordList));
+        validationResultView = new ValidationResultView(Result.DUPLICATE_REFERENCE, recordViews);
+    }
+
+    @Benchmark
+    public Statement decodeStatement() {
+        return gson.fromJson(statementJson, Statement.class);
+    }
+
+    @Benchmark
+    public String encodeValidationResultView() {
+        return gson.toJson(validationResultView);
+    }
+}
@@ -0,0 +1,135 @@
+package nl.rabobank.statementprocessor.benchmarks;
+
+import com.google.gson.Gson;
+import nl.rabobank.statementprocessor.codec.JsonCodecs;
+import nl.rabobank.statementprocessor.codec.ValidationResultJsonWriter;
+import nl.rabobank.statementprocessor.model.Statement;
+import nl.rabobank.statementprocessor.model.ValidationResult;
+import nl.rabobank.statementprocessor.services.ValidationService;
+import nl.rabobank.statementprocessor.services.ValidationServiceBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Weighs the CPU cost of compression against the bytes it saves, on statements of the StatementGenerator:
+ * - parsePlain and parseGzip: decoding the statement from the plain body, and inflating the gzipped body while decoding
+ *   it, like RequestDecompressionFilter does, so the difference is the cost of decompressing a request
+ * - compressStatement: gzipping the statement at the given level, the cost a client pays to send it compressed
+ * - compressResult: gzipping the rendered result with its error records, the cost of a compressed response
+ * The compression ratios are printed at setup, bytes saved per microsecond of CPU follows from both
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CompressionBenchmark {
+
+    @Param({ "1000", "100000" })
+    private int size;
+
+    @Param({ "1", "6" })
+    private int level;
+
+    @Param({ "0.1" })
+    private double duplicateRatio;
+
+    @Param({ "0.1" })
+    private double badBalanceRatio;
+
+    @Param({ "42" })
+    private long seed;
+
+    private Gson gson;
+    private byte[] statementJson;
+    private byte[] gzippedStatementJson;
+    private byte[] resultJson;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        gson = JsonCodecs.gson();
+        Statement statement = new StatementGenerator(size, duplicateRatio, badBalanceRatio, seed).generate();
+        statementJson = gson.toJson(statement).getBytes(StandardCharsets.UTF_8);
+        gzippedStatementJson = gzip(statementJson, level);
+
+        ValidationService validationService = new ValidationServiceBuilder().build();
+        ValidationResult validationResult = validationService.validateStatement(statement);
+        validationService.shutdown();
+        ByteArrayOutputStream rendered = new ByteArrayOutputStream();
+        Writer writer = new OutputStreamWriter(rendered, StandardCharsets.UTF_8);
+        ValidationResultJsonWriter.write(validationResult, writer);
+        writer.flush();
+        resultJson = rendered.toByteArray();
+
+        System.out.printf("%nstatement: %d -> %d bytes (%.1fx), result: %d -> %d bytes (%.1fx)%n",
+                statementJson.length, gzippedStatementJson.length, ratio(statementJson),
+                resultJson.length, gzip(resultJson, level).length, ratio(resultJson));
+    }
+
+    @Benchmark
+    public Statement parsePlain() {
+        return parse(new ByteArrayInputStream(statementJson));
+    }
+
+    @Benchmark
+    public Statement parseGzip() throws IOException {
+        try (InputStream body = new GZIPInputStream(new ByteArrayInputStream(gzippedStatementJson), 64 * 1024)) {
+            return parse(body);
+        }
+    }
+
+    @Benchmark
+    public byte[] compressStatement() throws IOException {
+        return gzip(statementJson, level);
+    }
+
+    @Benchmark
+    public byte[] compressResult() throws IOException {
+        return gzip(resultJson, level);
+    }
+
+    private Statement parse(final InputStream body) {
+        return gson.fromJson(new InputStreamReader(body, StandardCharsets.UTF_8), Statement.class);
+    }
+
+    private double ratio(final byte[] data) throws IOException {
+        return (double) data.length / gzip(data, level).length;
+    }
+
+    private static byte[] gzip(final byte[] data, final int level) throws IOException {
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream(data.length / 4);
+        try (OutputStream out = new GZIPOutputStream(gzipped) {
+            {
+                def.setLevel(level);
+            }
+        }) {
+            out.write(data);
+        }
+        return gzipped.toByteArray();
+    }
+}
@@ -0,0 +1,187 @@
+package nl.rabobank.statementprocessor.benchmarks;
+
+import com.google.gson.Gson;
+import nl.rabobank.statementprocessor.codec.BinaryStatementCodec;
+import nl.rabobank.statementprocessor.codec.JsonCodecs;
+import nl.rabobank.statementprocessor.codec.JsonStatementDecoder;
+import nl.rabobank.statementprocessor.codec.ValidationResultJsonWriter;
+import nl.rabobank.statementprocessor.model.ColumnarStatement;
+import nl.rabobank.statementprocessor.model.Statement;
+import nl.rabobank.statementprocessor.model.ValidationMode;
+import nl.rabobank.statementprocessor.model.ValidationResult;
+import nl.rabobank.statementprocessor.services.ValidationService;
+import nl.rabobank.statementprocessor.services.ValidationServiceBuilder;
+import nl.rabobank.statementprocessor.view.ValidationResultView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the stages of a validation request separately, on statements of the StatementGenerator:
+ * - parse: Gson decoding of the statement JSON, against decodeJson: the JsonStatementDecoder on the same JSON as bytes,
+ *   and decodeBinary and decodeBinaryFile: decoding the statement encoded by BinaryStatementCodec from a stream, and
+ *   from a memory-mapped file
+ * - validate: ValidationService.validateStatement, for a list of Records and for a ColumnarStatement, and in summary mode,
+ *   which stops as soon as the Result is decided (use -p duplicateRatio=0 -p badBalanceRatio=0 for its worst case)
+ * - render: building and serializing the ValidationResultView, or streaming the result with ValidationResultJsonWriter
+ * The benchmark profile adds the gc profiler, which reports the allocation rate (gc.alloc.rate.norm is bytes per call)
+ * Sizes up to StatementGenerator.MAX_SIZE can be passed with -p size=..., the largest ones need a bigger heap (-jvmArgs)
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StatementBenchmark {
+
+    @Param({ "10", "1000", "100000" })
+    private int size;
+
+    @Param({ "0.01" })
+    private double duplicateRatio;
+
+    @Param({ "0.01" })
+    private double badBalanceRatio;
+
+    @Param({ "42" })
+    private long seed;
+
+    private Gson gson;
+    private ValidationService validationService;
+    private String statementJson;
+    private byte[] statementJsonBytes;
+    private byte[] binaryStatement;
+    private Path binaryStatementFile;
+    private Statement statement;
+    private ColumnarStatement columnarStatement;
+    private ValidationResult validationResult;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        gson = JsonCodecs.gson();
+        validationService = new ValidationServiceBuilder().build();
+        statement = new StatementGenerator(size, duplicateRatio, badBalanceRatio, seed).generate();
+        columnarStatement = ColumnarStatement.of(statement);
+        statementJson = gson.toJson(statement);
+        statementJsonBytes = statementJson.getBytes(StandardCharsets.UTF_8);
+        validationResult = validationService.validateStatement(statement);
+
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        BinaryStatementCodec.encode(statement, encoded);
+        binaryStatement = encoded.toByteArray();
+        binaryStatementFile = Files.createTempFile("statement", ".bin");
+        Files.write(binaryStatementFile, binaryStatement);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        validationService.shutdown();
+        Files.deleteIfExists(binaryStatementFile);
+    }
+
+    @Benchmark
+    public Statement parse() {
+        return gson.fromJson(statementJson, Statement.class);
+    }
+
+    @Benchmark
+    public ColumnarStatement decodeJson() {
+        return JsonStatementDecoder.decode(statementJsonBytes);
+    }
+
+    @Benchmark
+    public ColumnarStatement decodeBinary() throws IOException {
+        return BinaryStatementCodec.decode(new ByteArrayInputStream(binaryStatement));
+    }
+
+    @Benchmark
+    public ColumnarStatement decodeBinaryFile() throws IOException {
+        return BinaryStatementCodec.decode(binaryStatementFile);
+    }
+
+    @Benchmark
+    public ValidationResult validate() {
+        return validationService.validateStatement(statement);
+    }
+
+    @Benchmark
+    public ValidationResult validateSummary() {
+        return validationService.validateStatement(statement, ValidationMode.SUMMARY);
+    }
+
+    @Benchmark
+    public ValidationResult validateColumnar() {
+        return validationService.validateColumnarStatement(columnarStatement);
+    }
+
+    @Benchmark
+    public long[] checkColumnarEndBalances() {
+        return columnarStatement.incorrectEndBalances();
+    }
+
+    @Benchmark
+    public ValidationResultView buildView() {
+        return new ValidationResultView(validationResult);
+    }
+
+    @Benchmark
+    public String renderView() {
+        return gson.toJson(new ValidationResultView(validationResult));
+    }
+
+    @Benchmark
+    public long renderStreaming() throws IOException {
+        CountingWriter writer = new CountingWriter();
+        ValidationResultJsonWriter.write(validationResult, writer);
+        return writer.count;
+    }
+
+    // Discards what is written, like a socket would from the point of view of the heap
+    private static final class CountingWriter extends Writer {
+        private long count;
+
+        @Override
+        public void write(final char[] buffer, final int offset, final int length) {
+            count += length;
+        }
+
+        @Override
+        public void write(final String string, final int offset, final int length) {
+            count += length;
+        }
+
+        @Override
+        public void write(final int character) {
+            count++;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
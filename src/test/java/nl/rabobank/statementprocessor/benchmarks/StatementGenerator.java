@@ -0,0 +1,104 @@
+package nl.rabobank.statementprocessor.benchmarks;
+
+import nl.rabobank.statementprocessor.model.Record;
+import nl.rabobank.statementprocessor.model.Statement;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+/**
+ * Class that generates synthetic statements for benchmarks and load tests
+ * The same settings always produce the same records, so results of different runs and versions can be compared
+ * - duplicateRatio is the chance that a record reuses the transaction reference of an earlier record
+ * - badBalanceRatio is the chance that the end balance of a record does not match its start balance and mutation
+ * Records are generated on the fly by records(), so very large statements can be streamed without keeping them all
+ */
+
+public class StatementGenerator {
+
+    public static final int MIN_SIZE = 10;
+    public static final int MAX_SIZE = 10_000_000;
+
+    private static final long FIRST_REFERENCE = 100_000_000L;
+    private static final int ACCOUNT_COUNT = 1000;
+
+    private final int size;
+    private final double duplicateRatio;
+    private final double badBalanceRatio;
+    private final long seed;
+    private final String[] accountNumbers = new String[ACCOUNT_COUNT];
+
+    public StatementGenerator(final int size, final double duplicateRatio, final double badBalanceRatio, final long seed) {
+        if (size < MIN_SIZE || size > MAX_SIZE) {
+            throw new IllegalArgumentException("Size must be between " + MIN_SIZE + " and " + MAX_SIZE);
+        }
+        if (duplicateRatio < 0 || duplicateRatio > 1 || badBalanceRatio < 0 || badBalanceRatio > 1) {
+            throw new IllegalArgumentException("Ratios must be between 0 and 1");
+        }
+        this.size = size;
+        this.duplicateRatio = duplicateRatio;
+        this.badBalanceRatio = badBalanceRatio;
+        this.seed = seed;
+        for (int account = 0; account < ACCOUNT_COUNT; account++) {
+            accountNumbers[account] = String.format("NL%02dRABO0%09d", 10 + account % 90, 123_456_789 - account);
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public Statement generate() {
+        List<Record> records = new ArrayList<>(size);
+        records().forEachRemaining(records::add);
+        return new Statement(records);
+    }
+
+    public Iterator<Record> records() {
+        SplittableRandom random = new SplittableRandom(seed);
+        return new Iterator<Record>() {
+            private int index;
+            private int uniqueReferences;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public Record next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                // A duplicate reuses one of the unique references generated so far
+                long reference;
+                if (uniqueReferences > 0 && random.nextDouble() < duplicateRatio) {
+                    reference = FIRST_REFERENCE + random.nextInt(uniqueReferences);
+                } else {
+                    reference = FIRST_REFERENCE + uniqueReferences++;
+                }
+                return createRecord(random, reference, index++);
+            }
+        };
+    }
+
+    private Record createRecord(final SplittableRandom random, final long reference, final int index) {
+        long startBalance = random.nextLong(-100_000, 1_000_000);
+        long mutation = random.nextLong(-50_000, 50_000);
+        long endBalance = startBalance - mutation;
+        if (random.nextDouble() < badBalanceRatio) {
+            endBalance += 1 + random.nextInt(1000);
+        }
+        return Record.builder()
+                .transactionReference(reference)
+                .accountNumber(accountNumbers[random.nextInt(ACCOUNT_COUNT)])
+                .description("Transaction " + index)
+                .startBalance(startBalance)
+                .mutation(mutation)
+                .endBalance(endBalance)
+                .build();
+    }
+}
@@ -0,0 +1,56 @@
+package nl.rabobank.statementprocessor.benchmarks;
+
+import nl.rabobank.statementprocessor.model.Record;
+import nl.rabobank.statementprocessor.model.Statement;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatementGeneratorTest {
+
+    @Test
+    void shouldGenerateSameStatement_whenSeedIsSame() {
+        Statement first = new StatementGenerator(1000, 0.1, 0.1, 7).generate();
+        Statement second = new StatementGenerator(1000, 0.1, 0.1, 7).generate();
+
+        assertEquals(1000, first.getRecords().size());
+        assertEquals(first, second);
+        assertNotEquals(first, new StatementGenerator(1000, 0.1, 0.1, 8).generate());
+    }
+
+    @Test
+    void shouldGenerateDuplicatesAndBadBalances_closeToRatios() {
+        Statement statement = new StatementGenerator(100_000, 0.05, 0.2, 1).generate();
+
+        Set<Long> references = new HashSet<>();
+        int duplicates = 0;
+        int badBalances = 0;
+        for (Record record : statement.getRecords()) {
+            if (!references.add(record.getTransactionReference())) {
+                duplicates++;
+            }
+            if (!record.validateEndBalance()) {
+                badBalances++;
+            }
+        }
+        assertEquals(5_000, duplicates, 500);
+        assertEquals(20_000, badBalances, 1_000);
+    }
+
+    @Test
+    void shouldGenerateValidStatement_whenRatiosAreZero() {
+        Statement statement = new StatementGenerator(10_000, 0, 0, 3).generate();
+
+        assertTrue(statement.getRecords().stream().allMatch(Record::validateEndBalance));
+        assertEquals(10_000, statement.getRecords().stream().map(Record::getTransactionReference).distinct().count());
+    }
+
+    @Test
+    void shouldThrowIllegalArgumentException_whenSizeIsOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new StatementGenerator(9, 0, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new StatementGenerator(StatementGenerator.MAX_SIZE + 1, 0, 0, 1));
+    }
+}
@@ -0,0 +1,122 @@
+package nl.rabobank.statementprocessor.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ValidationResultCacheTest {
+
+    private static final byte[] BODY = "{\"records\":[]}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RESULT = "{\"result\":\"SUCCESSFUL\",\"errorRecords\":[]}".getBytes(StandardCharsets.UTF_8);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void shouldReturnResult_whenSameBodyIsLookedUp() {
+        ValidationResultCache cache = new ValidationResultCache(1024 * 1024, Duration.ofMinutes(10), registry);
+
+        assertNull(cache.get(ValidationResultCache.bodyKey("json", BODY)));
+        cache.put(ValidationResultCache.bodyKey("json", BODY), RESULT);
+
+        assertSame(RESULT, cache.get(ValidationResultCache.bodyKey("json", BODY.clone())));
+        assertNull(cache.get(ValidationResultCache.bodyKey("csv", BODY)));
+        assertEquals(1, registry.get("statement.cache.requests").tag("result", "hit").counter().count());
+        assertEquals(2, registry.get("statement.cache.requests").tag("result", "miss").counter().count());
+        assertEquals(RESULT.length + ValidationResultCache.ENTRY_OVERHEAD,
+                registry.get("statement.cache.size").gauge().value());
+    }
+
+    @Test
+    void shouldKeyBody_byItsSha256Digest() throws Exception {
+        ByteBuffer digest = ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(BODY));
+
+        assertEquals(new ValidationResultCache.Key("json", digest.getLong(), digest.getLong()),
+                ValidationResultCache.bodyKey("json", BODY));
+    }
+
+    @Test
+    void shouldNotConfuseKeys_whenIdempotencyKeyEqualsBody() {
+        ValidationResultCache cache = new ValidationResultCache(1024 * 1024, Duration.ofMinutes(10), registry);
+        String body = new String(BODY, StandardCharsets.UTF_8);
+
+        cache.put(ValidationResultCache.idempotencyKey("json", body), RESULT);
+
+        assertNull(cache.get(ValidationResultCache.bodyKey("json", BODY)));
+        assertSame(RESULT, cache.get(ValidationResultCache.idempotencyKey("json", body)));
+    }
+
+    @Test
+    void shouldReturnResult_onlyForBodyOfIdempotencyKey() throws Exception {
+        ValidationResultCache cache = new ValidationResultCache(1024 * 1024, Duration.ofMinutes(10), registry);
+        ValidationResultCache.Key key = ValidationResultCache.idempotencyKey("json", "upload-42");
+        byte[] bodyDigest = ValidationResultCache.newBodyDigest().digest(BODY);
+        byte[] otherBodyDigest = ValidationResultCache.newBodyDigest().digest("{}".getBytes(StandardCharsets.UTF_8));
+
+        cache.put(key, RESULT, bodyDigest);
+
+        assertSame(RESULT, cache.get(key, () -> ValidationResultCache.newBodyDigest().digest(BODY)));
+        assertThrows(IdempotencyKeyReusedException.class, () -> cache.get(key, () -> otherBodyDigest));
+        assertNull(cache.get(ValidationResultCache.idempotencyKey("json", "upload-43"), () -> {
+            throw new AssertionError("Body must not be read without a cached result");
+        }));
+    }
+
+    @Test
+    void shouldEvictOldestResults_whenMaximumSizeIsExceeded() {
+        long entrySize = RESULT.length + ValidationResultCache.ENTRY_OVERHEAD;
+        ValidationResultCache cache = new ValidationResultCache(4 * entrySize, Duration.ofMinutes(10), registry);
+
+        for (int index = 0; index < 6; index++) {
+            cache.put(ValidationResultCache.idempotencyKey("json", "request-" + index), RESULT);
+        }
+
+        assertEquals(4, cache.entryCount());
+        assertEquals(4 * entrySize, cache.size());
+        assertNull(cache.get(ValidationResultCache.idempotencyKey("json", "request-1")));
+        assertNotNull(cache.get(ValidationResultCache.idempotencyKey("json", "request-2")));
+        assertEquals(2, registry.get("statement.cache.evictions").tag("cause", "size").counter().count());
+    }
+
+    @Test
+    void shouldNotCacheResult_whenItIsLargerThanAQuarterOfTheMaximumSize() {
+        ValidationResultCache cache = new ValidationResultCache(4 * 1024, Duration.ofMinutes(10), registry);
+
+        cache.put(ValidationResultCache.bodyKey("json", BODY), new byte[1024]);
+
+        assertEquals(0, cache.entryCount());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void shouldExpireResult_whenTtlHasPassed() {
+        Clock clock = mock(Clock.class);
+        ValidationResultCache cache = new ValidationResultCache(1024 * 1024, Duration.ofMinutes(10), registry, clock);
+        when(clock.millis()).thenReturn(0L);
+        cache.put(ValidationResultCache.bodyKey("json", BODY), RESULT);
+
+        when(clock.millis()).thenReturn(Duration.ofMinutes(9).toMillis());
+        assertSame(RESULT, cache.get(ValidationResultCache.bodyKey("json", BODY)));
+
+        when(clock.millis()).thenReturn(Duration.ofMinutes(10).toMillis());
+        assertNull(cache.get(ValidationResultCache.bodyKey("json", BODY)));
+        assertEquals(0, cache.size());
+        assertEquals(1, registry.get("statement.cache.evictions").tag("cause", "expired").counter().count());
+    }
+
+    @Test
+    void shouldRejectInvalidSettings_whenCacheIsCreated() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ValidationResultCache(0, Duration.ofMinutes(10), registry));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ValidationResultCache(1024, Duration.ZERO, registry));
+    }
+}
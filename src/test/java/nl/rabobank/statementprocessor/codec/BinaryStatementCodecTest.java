@@ -0,0 +1,129 @@
+package nl.rabobank.statementprocessor.codec;
+
+import nl.rabobank.statementprocessor.benchmarks.StatementGenerator;
+import nl.rabobank.statementprocessor.model.ColumnarStatement;
+import nl.rabobank.statementprocessor.model.Record;
+import nl.rabobank.statementprocessor.model.Statement;
+import nl.rabobank.statementprocessor.parsers.StatementParseException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryStatementCodecTest {
+
+    private static final Record RECORD = Record.builder()
+            .transactionReference(123456789)
+            .accountNumber("NL34RABO0123456789")
+            .startBalance(1234)
+            .mutation(-34)
+            .endBalance(1268)
+            .description("Groceries")
+            .build();
+
+    private static final Record RECORD_WITHOUT_TEXT = Record.builder()
+            .transactionReference(Long.MIN_VALUE)
+            .endBalance(Long.MAX_VALUE)
+            .build();
+
+    @Test
+    void shouldDecodeSameRecords_whenStatementIsEncoded() throws IOException {
+        Statement statement = new Statement(Arrays.asList(RECORD, RECORD_WITHOUT_TEXT, RECORD));
+
+        ColumnarStatement decoded = BinaryStatementCodec.decode(new ByteArrayInputStream(encode(statement)));
+
+        assertEquals(3, decoded.size());
+        assertEquals(2, decoded.getAccountCount());
+        assertEquals(withoutDescription(RECORD), decoded.toRecord(0));
+        assertEquals(RECORD_WITHOUT_TEXT, decoded.toRecord(1));
+        assertEquals(withoutDescription(RECORD), decoded.toRecord(2));
+    }
+
+    @Test
+    void shouldDecodeSameColumns_fromStreamBufferAndFile(@TempDir final Path directory) throws IOException {
+        Statement statement = new StatementGenerator(100_000, 0.01, 0.01, 7).generate();
+        byte[] encoded = encode(statement);
+        Path file = directory.resolve("statement.bin");
+        Files.write(file, encoded);
+
+        ColumnarStatement expected = ColumnarStatement.of(statement);
+        for (ColumnarStatement decoded : Arrays.asList(BinaryStatementCodec.decode(new ByteArrayInputStream(encoded)),
+                BinaryStatementCodec.decode(ByteBuffer.wrap(encoded)), BinaryStatementCodec.decode(file))) {
+            assertEquals(expected.size(), decoded.size());
+            for (int index = 0; index < expected.size(); index++) {
+                assertEquals(expected.toRecord(index), decoded.toRecord(index));
+            }
+        }
+    }
+
+    @Test
+    void shouldDecodeEmptyStatement() throws IOException {
+        byte[] encoded = encode(new Statement(Collections.emptyList()));
+
+        assertEquals(0, BinaryStatementCodec.decode(new ByteArrayInputStream(encoded)).size());
+        assertEquals(0, BinaryStatementCodec.decode(ByteBuffer.wrap(encoded)).size());
+    }
+
+    @Test
+    void shouldThrowStatementParseException_whenInputIsNotABinaryStatement() {
+        byte[] json = "{\"records\":[]}".getBytes();
+
+        assertThrows(StatementParseException.class, () -> BinaryStatementCodec.decode(new ByteArrayInputStream(json)));
+        assertThrows(StatementParseException.class, () -> BinaryStatementCodec.decode(ByteBuffer.wrap(json)));
+    }
+
+    @Test
+    void shouldThrowStatementParseException_whenStatementIsTruncated() throws IOException {
+        byte[] encoded = encode(new Statement(Arrays.asList(RECORD, RECORD_WITHOUT_TEXT)));
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length - 30);
+
+        assertThrows(StatementParseException.class, () -> BinaryStatementCodec.decode(new ByteArrayInputStream(truncated)));
+        assertThrows(StatementParseException.class, () -> BinaryStatementCodec.decode(ByteBuffer.wrap(truncated)));
+    }
+
+    @Test
+    void shouldThrowStatementParseException_whenAccountNumberIndexIsOutOfRange() throws IOException {
+        byte[] encoded = encode(new Statement(Collections.singletonList(RECORD)));
+        // The account number index of the record is followed by the length and bytes of its description
+        ByteBuffer.wrap(encoded).putInt(encoded.length - 2 * Integer.BYTES - "Groceries".length(), 1);
+
+        assertThrows(StatementParseException.class, () -> BinaryStatementCodec.decode(new ByteArrayInputStream(encoded)));
+        assertThrows(StatementParseException.class, () -> BinaryStatementCodec.decode(ByteBuffer.wrap(encoded)));
+    }
+
+    @Test
+    void shouldThrowStatementParseException_whenHeaderClaimsMoreAccountNumbersThanTheBodyHolds() {
+        // Only a header, that claims the maximum number of records and as many account numbers
+        byte[] header = ByteBuffer.allocate(4 * Integer.BYTES).putInt(BinaryStatementCodec.MAGIC)
+                .putInt(BinaryStatementCodec.VERSION).putInt(Integer.MAX_VALUE - 8).putInt(Integer.MAX_VALUE - 8)
+                .array();
+
+        assertThrows(StatementParseException.class, () -> BinaryStatementCodec.decode(new ByteArrayInputStream(header)));
+        assertThrows(StatementParseException.class, () -> BinaryStatementCodec.decode(ByteBuffer.wrap(header)));
+    }
+
+    private static byte[] encode(final Statement statement) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        BinaryStatementCodec.encode(statement, encoded);
+        return encoded.toByteArray();
+    }
+
+    private static Record withoutDescription(final Record record) {
+        return Record.builder()
+                .transactionReference(record.getTransactionReference())
+                .accountNumber(record.getAccountNumber())
+                .startBalance(record.getStartBalance())
+                .mutation(record.getMutation())
+                .endBalance(record.getEndBalance())
+                .build();
+    }
+}
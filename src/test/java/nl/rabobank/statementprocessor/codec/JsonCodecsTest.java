@@ -0,0 +1,105 @@
+package nl.rabobank.statementprocessor.codec;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import nl.rabobank.statementprocessor.model.Record;
+import nl.rabobank.statementprocessor.model.Result;
+import nl.rabobank.statementprocessor.model.Statement;
+import nl.rabobank.statementprocessor.view.RecordView;
+import nl.rabobank.statementprocessor.view.ValidationResultView;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonCodecsTest {
+
+    private static final Gson REFLECTIVE_GSON = new Gson();
+
+    private static final Record RECORD = Record.builder()
+            .transactionReference(123456789)
+            .accountNumber("NL34RABO0123456789")
+            .startBalance(1234)
+            .mutation(-34)
+            .endBalance(1268)
+            .description("Groceries \"Albert\"")
+            .build();
+
+    private static final Record RECORD_WITHOUT_TEXT = Record.builder()
+            .transactionReference(Long.MIN_VALUE)
+            .endBalance(Long.MAX_VALUE)
+            .build();
+
+    private static final String INPUT_STATEMENT = "{\n" +
+            "  \"id\": [1, {\"nested\": true}],\n" +
+            "  \"records\": [\n" +
+            "      {\n" +
+            "          \"transactionReference\": \"123456789\",\n" +
+            "          \"accountNumber\": \"NL34RABO0123456789\",\n" +
+            "          \"startBalance\": 1234,\n" +
+            "          \"mutation\": null,\n" +
+            "          \"unknown\": [\"skipped\"],\n" +
+            "          \"description\": null,\n" +
+            "          \"endBalance\": 1200 \n" +
+            "      }\n" +
+            "  ]\n" +
+            "}";
+
+    @Test
+    void shouldWriteSameJsonAsReflectiveGson_forStatement() {
+        Statement statement = new Statement(Arrays.asList(RECORD, RECORD_WITHOUT_TEXT));
+
+        assertEquals(REFLECTIVE_GSON.toJson(statement), JsonCodecs.gson().toJson(statement));
+    }
+
+    @Test
+    void shouldReadSameStatementAsReflectiveGson() {
+        assertEquals(REFLECTIVE_GSON.fromJson(INPUT_STATEMENT, Statement.class),
+                JsonCodecs.gson().fromJson(INPUT_STATEMENT, Statement.class));
+        assertEquals(REFLECTIVE_GSON.fromJson("{}", Statement.class), JsonCodecs.gson().fromJson("{}", Statement.class));
+    }
+
+    @Test
+    void shouldRoundTripRecords() {
+        String json = JsonCodecs.gson().toJson(new Statement(Arrays.asList(RECORD, RECORD_WITHOUT_TEXT)));
+
+        Statement statement = JsonCodecs.gson().fromJson(json, Statement.class);
+
+        assertEquals(Arrays.asList(RECORD, RECORD_WITHOUT_TEXT), statement.getRecords());
+    }
+
+    @Test
+    void shouldWriteAndReadSameJsonAsReflectiveGson_forValidationResultView() {
+        ValidationResultView view = new ValidationResultView(Result.DUPLICATE_REFERENCE,
+                Arrays.asList(new RecordView(123456789, "NL34RABO0123456789"), new RecordView(1, null)));
+        ValidationResultView emptyView = new ValidationResultView(Result.SUCCESSFUL, new ArrayList<>());
+
+        assertEquals(REFLECTIVE_GSON.toJson(view), JsonCodecs.gson().toJson(view));
+        assertEquals(REFLECTIVE_GSON.toJson(emptyView), JsonCodecs.gson().toJson(emptyView));
+        assertEquals(view, JsonCodecs.gson().fromJson(REFLECTIVE_GSON.toJson(view), ValidationResultView.class));
+        assertNull(JsonCodecs.gson().fromJson("{\"result\":\"UNKNOWN\"}", ValidationResultView.class).getResult());
+    }
+
+    @Test
+    void shouldThrowJsonSyntaxExceptionLikeReflectiveGson_whenNumberIsInvalid() {
+        for (String number : Arrays.asList("\"abc\"", "1.5", "99999999999999999999")) {
+            String statement = "{\"records\":[{\"transactionReference\":" + number + "}]}";
+            String recordView = "{\"errorRecords\":[{\"transactionReference\":" + number + "}]}";
+
+            assertThrows(JsonSyntaxException.class, () -> REFLECTIVE_GSON.fromJson(statement, Statement.class));
+            assertThrows(JsonSyntaxException.class, () -> JsonCodecs.gson().fromJson(statement, Statement.class));
+            assertThrows(JsonSyntaxException.class,
+                    () -> JsonCodecs.gson().fromJson(recordView, ValidationResultView.class));
+        }
+    }
+
+    @Test
+    void shouldReadBooleanAsStringLikeReflectiveGson() {
+        String statement = "{\"records\":[{\"transactionReference\":1,\"accountNumber\":true}]}";
+
+        assertEquals(REFLECTIVE_GSON.fromJson(statement, Statement.class),
+                JsonCodecs.gson().fromJson(statement, Statement.class));
+    }
+}
@@ -0,0 +1,121 @@
+package nl.rabobank.statementprocessor.codec;
+
+import nl.rabobank.statementprocessor.benchmarks.StatementGenerator;
+import nl.rabobank.statementprocessor.model.ColumnarStatement;
+import nl.rabobank.statementprocessor.model.Record;
+import nl.rabobank.statementprocessor.model.Statement;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonStatementDecoderTest {
+
+    private static final Record RECORD = Record.builder()
+            .transactionReference(123456789)
+            .accountNumber("NL34RABO0123456789")
+            .startBalance(1234)
+            .mutation(-34)
+            .endBalance(1268)
+            .description("Groceries \"and\" \\ caf\u00e9\n\u20ac \ud83d\ude00")
+            .build();
+
+    private static final Record RECORD_WITHOUT_TEXT = Record.builder()
+            .transactionReference(Long.MIN_VALUE)
+            .endBalance(Long.MAX_VALUE)
+            .build();
+
+    private static final String INPUT_NULLS_AND_WHITESPACE = " {\r\n\t\"records\" : [ { \"transactionReference\" : 1 ,"
+            + " \"accountNumber\" : null , \"description\" : \"\\u0041\\/\" , \"mutation\" : null } , { } ] } ";
+
+    @Test
+    void shouldDecodeSameRecordsAsGson_whenStatementIsGenerated() {
+        Statement statement = new StatementGenerator(10_000, 0.01, 0.01, 3).generate();
+
+        ColumnarStatement decoded = decode(JsonCodecs.gson().toJson(statement));
+
+        assertNotNull(decoded);
+        ColumnarStatement expected = ColumnarStatement.of(statement);
+        assertEquals(expected.size(), decoded.size());
+        assertEquals(expected.getAccountCount(), decoded.getAccountCount());
+        for (int index = 0; index < decoded.size(); index++) {
+            assertEquals(statement.getRecords().get(index), decoded.toRecord(index));
+            assertEquals(expected.getAccountId(index), decoded.getAccountId(index));
+        }
+    }
+
+    @Test
+    void shouldDecodeEscapesExtremesAndMissingFields() {
+        Statement statement = new Statement(Arrays.asList(RECORD, RECORD_WITHOUT_TEXT, RECORD));
+
+        ColumnarStatement decoded = decode(JsonCodecs.gson().toJson(statement));
+
+        assertNotNull(decoded);
+        assertEquals(2, decoded.getAccountCount());
+        assertEquals(RECORD, decoded.toRecord(0));
+        assertEquals(RECORD_WITHOUT_TEXT, decoded.toRecord(1));
+        assertEquals(RECORD, decoded.toRecord(2));
+    }
+
+    @Test
+    void shouldDecodeLikeGson_whenFieldsAreNullOrAbsent() {
+        ColumnarStatement decoded = decode(INPUT_NULLS_AND_WHITESPACE);
+
+        assertNotNull(decoded);
+        Statement expected = JsonCodecs.gson().fromJson(INPUT_NULLS_AND_WHITESPACE, Statement.class);
+        assertEquals(expected.getRecords().get(0), decoded.toRecord(0));
+        assertEquals(expected.getRecords().get(1), decoded.toRecord(1));
+        assertEquals("A/", decoded.toRecord(0).getDescription());
+    }
+
+    @Test
+    void shouldDecodeEmptyStatement_whenThereAreNoRecords() {
+        assertEquals(0, decode("{\"records\":[]}").size());
+    }
+
+    @Test
+    void shouldReturnNull_whenInputIsNotInTheDecodedForm() {
+        String[] inputs = {
+                "",
+                "{}",
+                "{\"records\":null}",
+                "{\"records\":[null]}",
+                "{\"records\":[],\"records\":[]}",
+                "{\"id\":1,\"records\":[]}",
+                "{\"records\":[{\"other\":1}]}",
+                "{\"records\":[{\"mutation\":\"1\"}]}",
+                "{\"records\":[{\"mutation\":1.0}]}",
+                "{\"records\":[{\"mutation\":1e2}]}",
+                "{\"records\":[{\"mutation\":01}]}",
+                "{\"records\":[{\"mutation\":-}]}",
+                "{\"records\":[{\"mutation\":9223372036854775808}]}",
+                "{\"records\":[{\"accountNumber\":\"NL\\u0041\"}]}",
+                "{\"records\":[{\"accountNumber\":123}]}",
+                "{\"records\":[{\"description\":\"\\x\"}]}",
+                "{\"records\":[{\"description\":\"tab\there\"}]}",
+                "{\"records\":[{\"mutation\":1}]} {}",
+                "{\"records\":[{\"mutation\":1}",
+                "{\"records\":[{\"mutation\":1},]}",
+                "{\"records\":[{\"description\":\"unterminated}]}",
+        };
+        for (String input : inputs) {
+            assertNull(decode(input), input);
+        }
+    }
+
+    @Test
+    void shouldOnlyReadUpToLength() {
+        byte[] json = "{\"records\":[{\"mutation\":12}]}garbage".getBytes(StandardCharsets.UTF_8);
+
+        ColumnarStatement decoded = JsonStatementDecoder.decode(json, json.length - "garbage".length());
+
+        assertEquals(12, decoded.getMutation(0));
+        assertNull(JsonStatementDecoder.decode(json, json.length - "garbage".length() - 1));
+    }
+
+    private static ColumnarStatement decode(final String json) {
+        return JsonStatementDecoder.decode(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,80 @@
+package nl.rabobank.statementprocessor.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.rabobank.statementprocessor.model.Record;
+import nl.rabobank.statementprocessor.model.Result;
+import nl.rabobank.statementprocessor.model.ValidationResult;
+import nl.rabobank.statementprocessor.view.ValidationResultView;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValidationResultJsonWriterTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Test
+    void shouldWriteSameJsonAsView_whenRecordsHaveAllFields() throws IOException {
+        Record errorRecord = Record.builder()
+                .transactionReference(123456789)
+                .accountNumber("NL34RABO0123456789 \"quoted\"")
+                .startBalance(1234)
+                .mutation(-34)
+                .endBalance(1268)
+                .description("Groceries")
+                .build();
+        ValidationResult validationResult = new ValidationResult(Result.DUPLICATE_REFERENCE_INCORRECT_END_BALANCE,
+                Arrays.asList(errorRecord, Record.builder().transactionReference(Long.MIN_VALUE).build()));
+
+        assertEquals(OBJECT_MAPPER.writeValueAsString(new ValidationResultView(validationResult)), write(validationResult));
+    }
+
+    @Test
+    void shouldWriteSameJsonAsView_whenThereAreNoErrorRecords() throws IOException {
+        ValidationResult validationResult = new ValidationResult(Result.SUCCESSFUL, new ArrayList<>());
+
+        assertEquals(OBJECT_MAPPER.writeValueAsString(new ValidationResultView(validationResult)), write(validationResult));
+    }
+
+    @Test
+    void shouldWriteNulls_whenResultIsEmpty() throws IOException {
+        assertEquals("{\"result\":null,\"errorRecords\":null}", write(new ValidationResult(null, null)));
+    }
+
+    @Test
+    void shouldWriteCountAndCursor_whenErrorRecordsAreCapped() throws IOException {
+        ValidationResult validationResult = new ValidationResult(Result.DUPLICATE_REFERENCE, Arrays.asList(
+                Record.builder().transactionReference(1).accountNumber("NL34RABO0123456789").build(),
+                Record.builder().transactionReference(2).build(),
+                Record.builder().transactionReference(3).build()));
+        StringWriter writer = new StringWriter();
+
+        ValidationResultJsonWriter.write(validationResult, 1, "abc.0", writer);
+
+        assertEquals("{\"result\":\"DUPLICATE_REFERENCE\",\"errorRecords\":[{\"transactionReference\":1,"
+                + "\"accountNumber\":\"NL34RABO0123456789\"}],\"errorRecordCount\":3,\"nextCursor\":\"abc.0\"}",
+                writer.toString());
+    }
+
+    @Test
+    void shouldWriteSameJsonAsView_whenErrorRecordsAreWithinCap() throws IOException {
+        ValidationResult validationResult = new ValidationResult(Result.DUPLICATE_REFERENCE,
+                Arrays.asList(Record.builder().transactionReference(1).build()));
+        StringWriter writer = new StringWriter();
+
+        ValidationResultJsonWriter.write(validationResult, 1, null, writer);
+
+        assertEquals(OBJECT_MAPPER.writeValueAsString(new ValidationResultView(validationResult)), writer.toString());
+    }
+
+    private static String write(final ValidationResult validationResult) throws IOException {
+        StringWriter writer = new StringWriter();
+        ValidationResultJsonWriter.write(validationResult, writer);
+        return writer.toString();
+    }
+}
@@ -0,0 +1,160 @@
+package nl.rabobank.statementprocessor.controllers;
+
+import com.google.gson.Gson;
+import nl.rabobank.statementprocessor.model.Result;
+import nl.rabobank.statementprocessor.view.ValidationResultView;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Arrays;
+import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The servlet on a real server, bodies are sent in small chunks with pauses, like a slow client sends them
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = { "server.tomcat.threads.max=2", "statement.decompression.max-inflated-size=4KB" })
+class NonBlockingValidationServletTest {
+
+    private static final String INPUT_DUPLICATE_REFERENCES = "{\"records\":[" +
+            "{\"transactionReference\":1,\"accountNumber\":\"NL34RABO0123456789\",\"startBalance\":1234,\"mutation\":34,\"endBalance\":1200}," +
+            "{\"transactionReference\":1,\"accountNumber\":\"NL34RABO0111111111\",\"startBalance\":1111,\"mutation\":11,\"endBalance\":1100}]}";
+
+    private static final String INPUT_JSON_PARSING_ERROR = "{\"records\":[{\"transactionReference\":1,}]}";
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    void shouldReturnValidationResult_whenBodyArrivesInChunks() throws IOException, InterruptedException {
+        HttpURLConnection connection = post("", INPUT_DUPLICATE_REFERENCES);
+
+        assertEquals(200, connection.getResponseCode());
+        ValidationResultView view = readView(connection.getInputStream());
+        assertEquals(Result.DUPLICATE_REFERENCE, view.getResult());
+        assertEquals(1, view.getErrorRecords().size());
+    }
+
+    @Test
+    void shouldServeMoreUploadsThanThreads_whenUploadsAreSlow() throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<Integer>> statuses = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                statuses.add(clients.submit(() -> post("", INPUT_DUPLICATE_REFERENCES).getResponseCode()));
+            }
+            for (Future<Integer> status : statuses) {
+                assertEquals(200, status.get());
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldReturnSummary_whenModeIsSummary() throws IOException, InterruptedException {
+        HttpURLConnection connection = post("?mode=summary", INPUT_DUPLICATE_REFERENCES);
+
+        assertEquals(200, connection.getResponseCode());
+        ValidationResultView view = readView(connection.getInputStream());
+        assertEquals(Result.DUPLICATE_REFERENCE, view.getResult());
+        assertTrue(view.getErrorRecords() == null || view.getErrorRecords().isEmpty());
+    }
+
+    @Test
+    void shouldReturn400_whenJsonIsInvalid() throws IOException, InterruptedException {
+        HttpURLConnection connection = post("", INPUT_JSON_PARSING_ERROR);
+
+        assertEquals(400, connection.getResponseCode());
+        assertEquals(Result.BAD_REQUEST, readView(connection.getErrorStream()).getResult());
+    }
+
+    @Test
+    void shouldReturn400_whenModeIsUnknown() throws IOException, InterruptedException {
+        assertEquals(400, post("?mode=unknown", INPUT_DUPLICATE_REFERENCES).getResponseCode());
+    }
+
+    @Test
+    void shouldReturnValidationResult_whenBodyIsCompressed() throws IOException, InterruptedException {
+        HttpURLConnection connection = post("", gzip(INPUT_DUPLICATE_REFERENCES.getBytes(StandardCharsets.UTF_8)), "gzip");
+
+        assertEquals(200, connection.getResponseCode());
+        assertEquals(Result.DUPLICATE_REFERENCE, readView(connection.getInputStream()).getResult());
+    }
+
+    @Test
+    void shouldReturn413_whenBodyInflatesBeyondMaximum() throws IOException, InterruptedException {
+        byte[] whitespace = new byte[8 * 1024];
+        Arrays.fill(whitespace, (byte) ' ');
+
+        HttpURLConnection connection = post("", gzip(whitespace), "gzip");
+
+        assertEquals(413, connection.getResponseCode());
+        assertEquals(Result.BAD_REQUEST, readView(connection.getErrorStream()).getResult());
+    }
+
+    @Test
+    void shouldReturn400_whenCompressedBodyIsCorrupt() throws IOException, InterruptedException {
+        byte[] corrupt = gzip(INPUT_DUPLICATE_REFERENCES.getBytes(StandardCharsets.UTF_8));
+        corrupt[corrupt.length / 2] ^= 0x55;
+
+        HttpURLConnection connection = post("", corrupt, "gzip");
+
+        assertEquals(400, connection.getResponseCode());
+        assertEquals(Result.BAD_REQUEST, readView(connection.getErrorStream()).getResult());
+    }
+
+    private HttpURLConnection post(final String query, final String body) throws IOException, InterruptedException {
+        return post(query, body.getBytes(StandardCharsets.UTF_8), null);
+    }
+
+    // Sends the body in chunks of 16 bytes with a pause after each
+    private HttpURLConnection post(final String query, final byte[] bytes, final String contentEncoding)
+            throws IOException, InterruptedException {
+        URL url = new URL("http://localhost:" + port + NonBlockingValidationServlet.PATH + query);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/json");
+        if (contentEncoding != null) {
+            connection.setRequestProperty("Content-Encoding", contentEncoding);
+        }
+        connection.setDoOutput(true);
+        connection.setChunkedStreamingMode(16);
+        try (OutputStream out = connection.getOutputStream()) {
+            for (int offset = 0; offset < bytes.length; offset += 16) {
+                out.write(bytes, offset, Math.min(16, bytes.length - offset));
+                out.flush();
+                Thread.sleep(5);
+            }
+        }
+        return connection;
+    }
+
+    private static byte[] gzip(final byte[] bytes) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(bytes);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static ValidationResultView readView(final InputStream input) {
+        try (Scanner scanner = new Scanner(input, StandardCharsets.UTF_8.name())) {
+            return new Gson().fromJson(scanner.useDelimiter("\\A").next(), ValidationResultView.class);
+        }
+    }
+}
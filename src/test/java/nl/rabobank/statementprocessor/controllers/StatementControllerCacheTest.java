@@ -0,0 +1,148 @@
+package nl.rabobank.statementprocessor.controllers;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.rabobank.statementprocessor.cache.ValidationResultCache;
+import nl.rabobank.statementprocessor.config.ValidationResultCacheConfiguration;
+import nl.rabobank.statementprocessor.metrics.ValidationMetrics;
+import nl.rabobank.statementprocessor.model.ColumnarStatement;
+import nl.rabobank.statementprocessor.model.Record;
+import nl.rabobank.statementprocessor.model.Result;
+import nl.rabobank.statementprocessor.model.ValidationMode;
+import nl.rabobank.statementprocessor.model.ValidationResult;
+import nl.rabobank.statementprocessor.services.ErrorRecordStore;
+import nl.rabobank.statementprocessor.services.ValidationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// The endpoints with the ValidationResultCache enabled, a repeated statement must not reach the ValidationService
+@WebMvcTest(controllers = StatementController.class, properties = "statement.cache.enabled=true")
+@Import({ ValidationResultCacheConfiguration.class, SimpleMeterRegistry.class })
+class StatementControllerCacheTest {
+
+    private static final String URI = "/statement/validate";
+
+    private static final String INPUT = "{\"records\":[{\"transactionReference\":123456789,"
+            + "\"accountNumber\":\"NL34RABO0123456789\",\"startBalance\":1234,\"mutation\":34,\"endBalance\":1200}]}";
+    private static final String CSV_INPUT = "transactionReference,accountNumber,startBalance,mutation,endBalance\n"
+            + "123456789,NL34RABO0123456789,1234,34,1200\n";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ValidationService validationService;
+
+    @Autowired
+    private ValidationResultCache cache;
+
+    @MockBean
+    private ValidationMetrics validationMetrics;
+
+    @MockBean
+    private ErrorRecordStore errorRecordStore;
+
+    // The application context, and so the cache, is shared by the tests
+    @BeforeEach
+    void setUp() {
+        cache.clear();
+    }
+
+    @Test
+    void shouldValidateOnce_whenSameBodyIsPostedTwice() throws Exception {
+        Record errorRecord = Record.builder().transactionReference(123456789).accountNumber("NL34RABO0123456789").build();
+        ValidationResult validationResult = new ValidationResult(Result.INCORRECT_END_BALANCE, Arrays.asList(errorRecord));
+        doReturn(validationResult).when(validationService)
+                .validateColumnarStatement(isA(ColumnarStatement.class), eq(ValidationMode.FULL));
+
+        String first = validate(INPUT, MediaType.APPLICATION_JSON, null);
+        String second = validate(INPUT, MediaType.APPLICATION_JSON, null);
+
+        assertEquals(first, second);
+        assertTrue(second.contains("INCORRECT_END_BALANCE"));
+        verify(validationService, times(1))
+                .validateColumnarStatement(isA(ColumnarStatement.class), eq(ValidationMode.FULL));
+    }
+
+    @Test
+    void shouldValidateAgain_whenBodyDiffers() throws Exception {
+        ValidationResult validationResult = new ValidationResult(Result.SUCCESSFUL, new ArrayList<>());
+        doReturn(validationResult).when(validationService)
+                .validateColumnarStatement(isA(ColumnarStatement.class), eq(ValidationMode.FULL));
+
+        validate(INPUT, MediaType.APPLICATION_JSON, null);
+        validate(INPUT.replace("1234", "1235"), MediaType.APPLICATION_JSON, null);
+
+        verify(validationService, times(2))
+                .validateColumnarStatement(isA(ColumnarStatement.class), eq(ValidationMode.FULL));
+    }
+
+    @Test
+    void shouldAnswerFromCache_whenIdempotencyKeyIsRepeated() throws Exception {
+        ValidationResult validationResult = new ValidationResult(Result.SUCCESSFUL, new ArrayList<>());
+        doReturn(validationResult).when(validationService).validateRecords(any(), eq(ValidationMode.FULL));
+        MediaType csv = MediaType.valueOf(StatementController.TEXT_CSV_VALUE);
+
+        String first = validate(CSV_INPUT, csv, "upload-42");
+        String second = validate(CSV_INPUT, csv, "upload-42");
+
+        assertEquals(first, second);
+        verify(validationService, times(1)).validateRecords(any(), eq(ValidationMode.FULL));
+    }
+
+    @Test
+    void shouldRejectRequest_whenIdempotencyKeyIsRepeatedWithOtherBody() throws Exception {
+        ValidationResult validationResult = new ValidationResult(Result.SUCCESSFUL, new ArrayList<>());
+        doReturn(validationResult).when(validationService)
+                .validateColumnarStatement(isA(ColumnarStatement.class), eq(ValidationMode.FULL));
+        validate(INPUT, MediaType.APPLICATION_JSON, "upload-43");
+
+        String response = mockMvc.perform(post(URI).contentType(MediaType.APPLICATION_JSON)
+                        .content(INPUT.replace("1200", "1199")).header(StatementController.IDEMPOTENCY_KEY, "upload-43"))
+                .andExpect(status().isUnprocessableEntity())
+                .andReturn().getResponse().getContentAsString();
+
+        assertTrue(response.contains("BAD_REQUEST"));
+        verify(validationService, times(1))
+                .validateColumnarStatement(isA(ColumnarStatement.class), eq(ValidationMode.FULL));
+    }
+
+    @Test
+    void shouldNotCacheResult_whenStreamedBodyHasNoIdempotencyKey() throws Exception {
+        ValidationResult validationResult = new ValidationResult(Result.SUCCESSFUL, new ArrayList<>());
+        doReturn(validationResult).when(validationService).validateRecords(any(), eq(ValidationMode.FULL));
+        MediaType csv = MediaType.valueOf(StatementController.TEXT_CSV_VALUE);
+
+        validate(CSV_INPUT, csv, null);
+        validate(CSV_INPUT, csv, null);
+
+        verify(validationService, times(2)).validateRecords(any(), eq(ValidationMode.FULL));
+    }
+
+    private String validate(final String content, final MediaType contentType, final String idempotencyKey) throws Exception {
+        return mockMvc.perform(idempotencyKey == null
+                        ? post(URI).contentType(contentType).content(content)
+                        : post(URI).contentType(contentType).content(content)
+                                .header(StatementController.IDEMPOTENCY_KEY, idempotencyKey))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+    }
+}
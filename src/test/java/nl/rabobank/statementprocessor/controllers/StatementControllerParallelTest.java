@@ -0,0 +1,68 @@
+package nl.rabobank.statementprocessor.controllers;
+
+import nl.rabobank.statementprocessor.metrics.ValidationMetrics;
+import nl.rabobank.statementprocessor.metrics.ValidationMetrics.Stage;
+import nl.rabobank.statementprocessor.services.ErrorRecordStore;
+import nl.rabobank.statementprocessor.services.ValidationService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// The JSON endpoint with a real ValidationService, statements of at least the threshold must be validated in parallel
+@WebMvcTest(controllers = StatementController.class, properties = {
+        "statement.validation.parallel-threshold=2", "statement.validation.parallelism=2" })
+@Import(ValidationService.class)
+class StatementControllerParallelTest {
+
+    private static final String URI = "/statement/validate";
+
+    private static final String RECORD = "{\"transactionReference\":%d,\"accountNumber\":\"NL34RABO0123456789\","
+            + "\"startBalance\":1234,\"mutation\":34,\"endBalance\":%d}";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ValidationMetrics validationMetrics;
+
+    @MockBean
+    private ErrorRecordStore errorRecordStore;
+
+    @Test
+    void shouldValidateInParallel_whenStatementReachesThreshold() throws Exception {
+        String response = validate(String.format(RECORD, 1, 1268), String.format(RECORD, 1, 1200));
+
+        assertTrue(response.contains("DUPLICATE_REFERENCE_INCORRECT_END_BALANCE"));
+        verify(validationMetrics, times(1)).recordStage(eq(Stage.PARTITION), anyLong());
+        verify(validationMetrics, never()).recordStage(eq(Stage.SCAN), anyLong());
+    }
+
+    @Test
+    void shouldValidateSequentially_whenStatementIsBelowThreshold() throws Exception {
+        String response = validate(String.format(RECORD, 1, 1268));
+
+        assertTrue(response.contains("INCORRECT_END_BALANCE"));
+        verify(validationMetrics, times(1)).recordStage(eq(Stage.SCAN), anyLong());
+        verify(validationMetrics, never()).recordStage(eq(Stage.PARTITION), anyLong());
+    }
+
+    private String validate(final String... records) throws Exception {
+        return mockMvc.perform(post(URI).contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"records\":[" + String.join(",", records) + "]}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+    }
+}
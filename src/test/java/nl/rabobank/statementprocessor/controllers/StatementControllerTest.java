@@ -1,34 +1,51 @@
 package nl.rabobank.statementprocessor.controllers;
 
 import com.google.gson.Gson;
+import nl.rabobank.statementprocessor.metrics.ValidationMetrics;
+import nl.rabobank.statementprocessor.model.ColumnarStatement;
 import nl.rabobank.statementprocessor.model.Record;
 import nl.rabobank.statementprocessor.model.Result;
 import nl.rabobank.statementprocessor.model.Statement;
+import nl.rabobank.statementprocessor.model.ValidationMode;
 import nl.rabobank.statementprocessor.model.ValidationResult;
+import nl.rabobank.statementprocessor.services.ErrorRecordStore;
 import nl.rabobank.statementprocessor.services.ValidationService;
 import nl.rabobank.statementprocessor.view.ValidationResultView;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isA;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
-@WebMvcTest
+@WebMvcTest(controllers = StatementController.class, properties = {
+        "statement.decompression.max-inflated-size=64KB", "statement.validation.max-buffered-body=4KB" })
 class StatementControllerTest {
 
     private static final String URI = "/statement/validate";
+    private static final String STREAM_URI = "/statement/validate/stream";
 
     private static final String INPUT_HAPPY_FLOW = "{\n" +
             "  \"records\": [\n" +
@@ -91,10 +108,17 @@ class StatementControllerTest {
     @MockBean
     private ValidationService validationService;
 
+    @MockBean
+    private ValidationMetrics validationMetrics;
+
+    @MockBean
+    private ErrorRecordStore errorRecordStore;
+
     @Test
     void shouldReturn200_whenValidationIsExecuted() throws Exception {
         ValidationResult validationResult = new ValidationResult(Result.SUCCESSFUL, new ArrayList<>());
-        doReturn(validationResult).when(validationService).validateStatement(isA(Statement.class));
+        doReturn(validationResult).when(validationService)
+                .validateColumnarStatement(isA(ColumnarStatement.class), eq(ValidationMode.FULL));
 
         this.mockMvc.perform(post(URI)
                 .contentType(MediaType.APPLICATION_JSON)
@@ -105,7 +129,8 @@ class StatementControllerTest {
     @Test
     void shouldReturnValidationResult_whenControllerIsCalled() throws Exception {
         ValidationResult validationResult = new ValidationResult(Result.SUCCESSFUL, new ArrayList<>());
-        doReturn(validationResult).when(validationService).validateStatement(isA(Statement.class));
+        doReturn(validationResult).when(validationService)
+                .validateColumnarStatement(isA(ColumnarStatement.class), eq(ValidationMode.FULL));
 
         ValidationResultView validationResultView = new ValidationResultView(validationResult);
         String expectedContent = new Gson().toJson(validationResultView);
@@ -128,7 +153,8 @@ class StatementControllerTest {
                 .endBalance(1100)
                 .build();
         ValidationResult validationResult = new ValidationResult(Result.DUPLICATE_REFERENCE, Arrays.asList(errorRecord));
-        doReturn(validationResult).when(validationService).validateStatement(isA(Statement.class));
+        doReturn(validationResult).when(validationService)
+                .validateColumnarStatement(isA(ColumnarStatement.class), eq(ValidationMode.FULL));
 
         ValidationResultView validationResultView = new ValidationResultView(validationResult);
         String expectedContent = new Gson().toJson(validationResultView);
@@ -152,7 +178,7 @@ class StatementControllerTest {
 
     @Test
     void shouldReturn500_whenOtherExceptionsOccur() throws Exception {
-        when(validationService.validateStatement(isA(Statement.class)))
+        when(validationService.validateColumnarStatement(isA(ColumnarStatement.class), eq(ValidationMode.FULL)))
                 .thenThrow(new RuntimeException("Error occurred"));
 
         this.mockMvc.perform(post(URI)
@@ -160,4 +186,174 @@ class StatementControllerTest {
                 .content(INPUT_DUPLICATE_REFERENCES))
                 .andExpect(status().isInternalServerError());
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldParseWithGson_whenStatementIsNotInDecodedForm() throws Exception {
+        ValidationResult validationResult = new ValidationResult(Result.SUCCESSFUL, new ArrayList<>());
+        doReturn(validationResult).when(validationService).validateStatement(isA(Statement.class), eq(ValidationMode.FULL));
+
+        // Quoted numbers are accepted by Gson, not by the JsonStatementDecoder
+        this.mockMvc.perform(post(URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(INPUT_HAPPY_FLOW.replace("\"startBalance\": 1234", "\"startBalance\": \"1234\"")))
+                .andExpect(status().isOk());
+
+        verify(validationService).validateStatement(
+                argThat(statement -> statement.getRecords().get(0).getStartBalance() == 1234), eq(ValidationMode.FULL));
+    }
+
+    @Test
+    void shouldParseWhileReading_whenStatementExceedsBufferLimit() throws Exception {
+        ValidationResult validationResult = new ValidationResult(Result.SUCCESSFUL, new ArrayList<>());
+        doReturn(validationResult).when(validationService).validateStatement(isA(Statement.class), eq(ValidationMode.FULL));
+        StringBuilder records = new StringBuilder();
+        for (int reference = 1; reference <= 100; reference++) {
+            records.append(reference > 1 ? "," : "").append("{\"transactionReference\":").append(reference)
+                    .append(",\"accountNumber\":\"NL34RABO0123456789\",\"startBalance\":1234,\"mutation\":34,")
+                    .append("\"endBalance\":1200}");
+        }
+
+        // 100 records are about 10KB, more than the 4KB buffer limit of this test
+        this.mockMvc.perform(post(URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"records\":[" + records + "]}"))
+                .andExpect(status().isOk());
+
+        verify(validationService).validateStatement(argThat(statement -> statement.getRecords().size() == 100),
+                eq(ValidationMode.FULL));
+        verify(validationService, never()).validateColumnarStatement(any(), any());
+    }
+
+    /* Tests for the streaming variant of the endpoint */
+
+    @Test
+    void shouldReturnErrorRecords_whenStreamingControllerIsCalled() throws Exception {
+        Record errorRecord = Record.builder()
+                .transactionReference(123456789)
+                .accountNumber("NL34RABO0111111111")
+                .build();
+        ValidationResult validationResult = new ValidationResult(Result.DUPLICATE_REFERENCE, Arrays.asList(errorRecord));
+        doReturn(validationResult).when(validationService).validateRecords(any(), eq(ValidationMode.FULL));
+
+        ValidationResultView validationResultView = new ValidationResultView(validationResult);
+        String expectedContent = new Gson().toJson(validationResultView);
+
+        MvcResult mvcResult = this.mockMvc.perform(post(STREAM_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(INPUT_DUPLICATE_REFERENCES))
+                .andExpect(status().isOk())
+                .andReturn();
+        assertEquals(expectedContent, mvcResult.getResponse().getContentAsString());
+    }
+
+    @Test
+    void shouldReturn400_whenJsonSyntaxExceptionOccursWhileStreaming() throws Exception {
+        when(validationService.validateRecords(any(), eq(ValidationMode.FULL))).thenAnswer(invocation -> {
+            Iterator<Record> records = invocation.getArgument(0);
+            records.forEachRemaining(record -> { });
+            return new ValidationResult(Result.SUCCESSFUL, new ArrayList<>());
+        });
+
+        this.mockMvc.perform(post(STREAM_URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(INPUT_JSON_PARSING_ERROR))
+                .andExpect(status().isBadRequest());
+    }
+
+    /* Tests for the validation mode */
+
+    @Test
+    void shouldPassMode_whenModeParameterIsGiven() throws Exception {
+        ValidationResult validationResult = new ValidationResult(Result.DUPLICATE_REFERENCE, new ArrayList<>());
+        doReturn(validationResult).when(validationService)
+                .validateColumnarStatement(isA(ColumnarStatement.class), eq(ValidationMode.SUMMARY));
+        doReturn(validationResult).when(validationService).validateRecords(any(), eq(ValidationMode.FAILFAST));
+
+        this.mockMvc.perform(post(URI).param("mode", "summary")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(INPUT_DUPLICATE_REFERENCES))
+                .andExpect(status().isOk());
+        this.mockMvc.perform(post(STREAM_URI).param("mode", "FAILFAST")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(INPUT_DUPLICATE_REFERENCES))
+                .andExpect(status().isOk());
+
+        verify(validationService).validateColumnarStatement(isA(ColumnarStatement.class), eq(ValidationMode.SUMMARY));
+        verify(validationService).validateRecords(any(), eq(ValidationMode.FAILFAST));
+    }
+
+    @Test
+    void shouldReturn400_whenModeIsUnknown() throws Exception {
+        this.mockMvc.perform(post(URI).param("mode", "partial")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(INPUT_HAPPY_FLOW))
+                .andExpect(status().isBadRequest());
+    }
+
+    /* Tests for compressed request bodies, which are decompressed by the RequestDecompressionFilter */
+
+    @Test
+    void shouldValidateStatement_whenBodyIsGzipped() throws Exception {
+        ValidationResult validationResult = new ValidationResult(Result.SUCCESSFUL, new ArrayList<>());
+        doReturn(validationResult).when(validationService)
+                .validateColumnarStatement(isA(ColumnarStatement.class), eq(ValidationMode.FULL));
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(gzipped)) {
+            out.write(INPUT_HAPPY_FLOW.getBytes(StandardCharsets.UTF_8));
+        }
+
+        this.mockMvc.perform(post(URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .content(gzipped.toByteArray()))
+                .andExpect(status().isOk());
+
+        verify(validationService).validateColumnarStatement(argThat(statement -> statement.size() == 2),
+                eq(ValidationMode.FULL));
+    }
+
+    @Test
+    void shouldReturn400_whenGzippedBodyIsCorrupt() throws Exception {
+        this.mockMvc.perform(post(URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .content(INPUT_HAPPY_FLOW))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldReturn413_whenGzippedBodyInflatesBeyondMaximum() throws Exception {
+        // Whitespace, which the parser reads on until the maximum is exceeded
+        byte[] body = new byte[64 * 1024 + 1];
+        Arrays.fill(body, (byte) ' ');
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(gzipped)) {
+            out.write(body);
+        }
+
+        this.mockMvc.perform(post(URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .content(gzipped.toByteArray()))
+                .andExpect(status().isPayloadTooLarge());
+    }
+
+    @Test
+    void shouldReturn400_whenNumberIsInvalid() throws Exception {
+        // Neither is decoded by the JsonStatementDecoder, so both reach the Gson adapters
+        for (String startBalance : new String[] { "\"abc\"", "12.5" }) {
+            this.mockMvc.perform(post(URI)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(INPUT_HAPPY_FLOW.replace("\"startBalance\": 1234", "\"startBalance\": " + startBalance)))
+                    .andExpect(status().isBadRequest());
+        }
+    }
+
+    @Test
+    void shouldReturn400_whenStatementIsEmpty() throws Exception {
+        this.mockMvc.perform(post(URI)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(""))
+                .andExpect(status().isBadRequest());
+    }
+}
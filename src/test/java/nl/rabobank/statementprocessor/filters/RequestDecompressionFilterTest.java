@@ -0,0 +1,133 @@
+package nl.rabobank.statementprocessor.filters;
+
+import nl.rabobank.statementprocessor.parsers.StatementParseException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.unit.DataSize;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestDecompressionFilterTest {
+
+    private static final String BODY = "{\"records\":[{\"transactionReference\":123456789,"
+            + "\"accountNumber\":\"NL34RABO0123456789\",\"startBalance\":1234,\"mutation\":34,\"endBalance\":1200}]}";
+
+    private final RequestDecompressionFilter filter = new RequestDecompressionFilter(DataSize.ofMegabytes(1));
+
+    // The body is read within the chain, like a controller does, the filter closes it afterwards
+    @Test
+    void shouldInflateBodyAndHideHeaders_whenBodyIsGzipped() throws Exception {
+        MockHttpServletRequest request = request("gzip", gzip(BODY.getBytes(StandardCharsets.UTF_8)));
+        List<String> bodies = new ArrayList<>();
+
+        filter.doFilter(request, new MockHttpServletResponse(), (filtered, response) -> {
+            HttpServletRequest httpRequest = (HttpServletRequest) filtered;
+            bodies.add(StreamUtils.copyToString(httpRequest.getInputStream(), StandardCharsets.UTF_8));
+            assertNull(httpRequest.getHeader(HttpHeaders.CONTENT_ENCODING));
+            assertEquals(-1, httpRequest.getContentLength());
+            assertFalse(Collections.list(httpRequest.getHeaderNames()).contains(HttpHeaders.CONTENT_LENGTH));
+        });
+
+        assertEquals(Collections.singletonList(BODY), bodies);
+    }
+
+    @Test
+    void shouldInflateBody_whenBodyIsDeflated() throws Exception {
+        ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(deflated)) {
+            out.write(BODY.getBytes(StandardCharsets.UTF_8));
+        }
+        List<String> bodies = new ArrayList<>();
+
+        filter.doFilter(request("Deflate", deflated.toByteArray()), new MockHttpServletResponse(), (filtered, response) ->
+                bodies.add(StreamUtils.copyToString(filtered.getInputStream(), StandardCharsets.UTF_8)));
+
+        assertEquals(Collections.singletonList(BODY), bodies);
+    }
+
+    @Test
+    void shouldPassRequestOn_whenBodyIsNotCompressed() throws Exception {
+        MockHttpServletRequest request = request(null, BODY.getBytes(StandardCharsets.UTF_8));
+        MockFilterChain filterChain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), filterChain);
+
+        assertSame(request, filterChain.getRequest());
+    }
+
+    @Test
+    void shouldReturn415_whenEncodingIsNotSupported() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain filterChain = new MockFilterChain();
+
+        filter.doFilter(request("br", new byte[] { 1, 2, 3 }), response, filterChain);
+
+        assertEquals(415, response.getStatus());
+        assertEquals(RequestDecompressionFilter.SUPPORTED_ENCODINGS, response.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        assertNull(filterChain.getRequest());
+    }
+
+    @Test
+    void shouldThrowStatementParseException_whenGzipBodyIsCorrupt() throws Exception {
+        byte[] gzipped = gzip(BODY.getBytes(StandardCharsets.UTF_8));
+        byte[] truncated = Arrays.copyOf(gzipped, gzipped.length / 2);
+
+        assertThrows(StatementParseException.class, () -> filter.doFilter(request("gzip", truncated),
+                new MockHttpServletResponse(), (filtered, response) -> StreamUtils.copyToByteArray(filtered.getInputStream())));
+    }
+
+    @Test
+    void shouldThrowInflatedBodyTooLargeException_whenBodyInflatesBeyondMaximum() throws Exception {
+        // 1 MB of zeros compresses to about a kilobyte
+        byte[] bomb = gzip(new byte[(int) DataSize.ofMegabytes(1).toBytes() + 1]);
+
+        assertThrows(InflatedBodyTooLargeException.class, () -> filter.doFilter(request("gzip", bomb),
+                new MockHttpServletResponse(), (filtered, response) -> StreamUtils.copyToByteArray(filtered.getInputStream())));
+    }
+
+    @Test
+    void shouldInflateBody_whenBodyInflatesToExactlyMaximum() throws Exception {
+        byte[] body = new byte[(int) DataSize.ofMegabytes(1).toBytes()];
+        List<Integer> lengths = new ArrayList<>();
+
+        filter.doFilter(request("gzip", gzip(body)), new MockHttpServletResponse(), (filtered, response) ->
+                lengths.add(StreamUtils.copyToByteArray(filtered.getInputStream()).length));
+
+        assertEquals(Collections.singletonList(body.length), lengths);
+    }
+
+    private static MockHttpServletRequest request(final String contentEncoding, final byte[] body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/statement/validate");
+        request.setContentType("application/json");
+        request.setContent(body);
+        request.addHeader(HttpHeaders.CONTENT_LENGTH, body.length);
+        if (contentEncoding != null) {
+            request.addHeader(HttpHeaders.CONTENT_ENCODING, contentEncoding);
+        }
+        return request;
+    }
+
+    private static byte[] gzip(final byte[] data) throws IOException {
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(gzipped)) {
+            out.write(data);
+        }
+        return gzipped.toByteArray();
+    }
+}
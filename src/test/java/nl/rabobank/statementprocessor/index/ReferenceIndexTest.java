@@ -0,0 +1,132 @@
+package nl.rabobank.statementprocessor.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReferenceIndexTest {
+
+    private static final long WINDOW = 60_000;
+    private static final long NOW = 1_600_000_000_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldReturnTrue_whenReferenceWasSeenWithinWindow() throws IOException {
+        try (ReferenceIndex index = new ReferenceIndex(directory.resolve("index.dat"), 1024, WINDOW)) {
+            assertFalse(index.checkAndAdd(123456789, NOW));
+            assertTrue(index.checkAndAdd(123456789, NOW + WINDOW / 2));
+            assertTrue(index.contains(123456789, NOW + WINDOW));
+            assertFalse(index.contains(111111111, NOW));
+        }
+    }
+
+    @Test
+    void shouldReturnFalse_whenReferenceWasSeenBeforeWindow() throws IOException {
+        try (ReferenceIndex index = new ReferenceIndex(directory.resolve("index.dat"), 1024, WINDOW)) {
+            assertFalse(index.checkAndAdd(0, NOW));
+            assertFalse(index.checkAndAdd(0, NOW + WINDOW + 1));
+            assertTrue(index.checkAndAdd(0, NOW + WINDOW + 2));
+        }
+    }
+
+    @Test
+    void shouldRemoveReference_onlyWhenItWasAddedAtTheGivenTime() throws IOException {
+        try (ReferenceIndex index = new ReferenceIndex(directory.resolve("index.dat"), 1024, WINDOW)) {
+            index.checkAndAdd(123456789, NOW);
+            index.checkAndAdd(111111111, NOW);
+
+            index.remove(123456789, NOW + 1);
+            index.remove(111111111, NOW);
+
+            assertTrue(index.contains(123456789, NOW + 1));
+            assertFalse(index.contains(111111111, NOW + 1));
+            assertFalse(index.checkAndAdd(111111111, NOW + 2));
+        }
+    }
+
+    @Test
+    void shouldReturnDistinctStatementTimes() throws IOException {
+        try (ReferenceIndex index = new ReferenceIndex(directory.resolve("index.dat"), 1024, WINDOW)) {
+            long previous = index.nextStatementTime();
+            for (int statement = 0; statement < 1_000; statement++) {
+                long next = index.nextStatementTime();
+                assertTrue(next > previous);
+                previous = next;
+            }
+        }
+    }
+
+    @Test
+    void shouldKeepReferences_whenIndexIsReopened() throws IOException {
+        Path file = directory.resolve("index.dat");
+        try (ReferenceIndex index = new ReferenceIndex(file, 1024, WINDOW)) {
+            index.checkAndAdd(123456789, NOW);
+        }
+        try (ReferenceIndex index = new ReferenceIndex(file, 1024, WINDOW)) {
+            assertTrue(index.contains(123456789, NOW));
+        }
+        try (ReferenceIndex index = new ReferenceIndex(file, 2048, WINDOW)) {
+            assertFalse(index.contains(123456789, NOW));
+        }
+    }
+
+    @Test
+    void shouldEvictOldestReferences_whenCapacityIsExceeded() throws IOException {
+        int capacity = 64;
+        try (ReferenceIndex index = new ReferenceIndex(directory.resolve("index.dat"), capacity, WINDOW)) {
+            for (long reference = 0; reference < 10 * capacity; reference++) {
+                index.checkAndAdd(reference, NOW + reference);
+            }
+            int retained = 0;
+            for (long reference = 0; reference < 10 * capacity; reference++) {
+                retained += index.contains(reference, NOW + 10 * capacity) ? 1 : 0;
+            }
+            assertTrue(retained <= capacity);
+            assertTrue(index.contains(10 * capacity - 1, NOW + 10 * capacity));
+        }
+    }
+
+    @Test
+    void shouldAddEveryReferenceOnce_whenThreadsAddConcurrently() throws Exception {
+        int threads = 4;
+        int references = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (ReferenceIndex index = new ReferenceIndex(directory.resolve("index.dat"), 1 << 20, WINDOW)) {
+            // Every thread adds all references, exactly one of them must find a reference new, the index is large enough
+            // not to evict any
+            List<Future<Integer>> newReferences = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                newReferences.add(executor.submit(() -> {
+                    int added = 0;
+                    for (long reference = 0; reference < references; reference++) {
+                        added += index.checkAndAdd(reference, NOW) ? 0 : 1;
+                    }
+                    return added;
+                }));
+            }
+            int added = 0;
+            for (Future<Integer> future : newReferences) {
+                added += future.get();
+            }
+            assertEquals(references, added);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void shouldRejectCapacity_whenNotAPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new ReferenceIndex(directory.resolve("index.dat"), 1000, WINDOW));
+    }
+}
@@ -0,0 +1,316 @@
+package nl.rabobank.statementprocessor.loadtest;
+
+import nl.rabobank.statementprocessor.benchmarks.StatementGenerator;
+import nl.rabobank.statementprocessor.codec.JsonCodecs;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load generator for /statement/validate, to be run against a locally started application:
+ * mvn -P loadtest test-compile exec:java -Dexec.args="mode=open rate=200 duration=60"
+ * - open mode sends requests at a fixed arrival rate, whether or not earlier requests have completed
+ * - closed mode keeps a fixed number of connections, each sends a request when its previous one completes, or with an
+ *   interval once per interval
+ * Latency is measured from the moment a request was due to be sent, not when it was actually sent, so that a stalled
+ * server is not hidden by a stalled client (coordinated omission). Closed mode without an interval has no due moment,
+ * so its latencies are not corrected: a statement mix takes very different times, there is no single expected interval
+ * Payloads are generated by StatementGenerator, for a weighted mix of statement sizes
+ */
+
+public final class LoadGenerator {
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(10);
+    private static final int PAYLOADS_PER_SIZE = 8;
+
+    private final Settings settings;
+    private final ExecutorService clientExecutor;
+    private final HttpClient client;
+    private final List<byte[]> payloads = new ArrayList<>();
+    private final List<Integer> payloadWeights = new ArrayList<>();
+    private int totalWeight;
+    private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_NANOS, 3);
+    private final Map<Integer, AtomicLong> statusCounts = new ConcurrentHashMap<>();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+
+    LoadGenerator(final Settings settings) {
+        this.settings = settings;
+        this.clientExecutor = Executors.newFixedThreadPool(settings.concurrency);
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(clientExecutor)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    public static void main(final String[] args) throws InterruptedException {
+        Settings settings = Settings.parse(args);
+        LoadGenerator generator = new LoadGenerator(settings);
+        generator.generatePayloads();
+        generator.run(System.out);
+    }
+
+    void generatePayloads() {
+        long seed = settings.seed;
+        for (Map.Entry<Integer, Integer> size : settings.sizeMix.entrySet()) {
+            for (int index = 0; index < PAYLOADS_PER_SIZE; index++) {
+                StatementGenerator generator = new StatementGenerator(size.getKey(), settings.duplicateRatio,
+                        settings.badBalanceRatio, seed++);
+                payloads.add(JsonCodecs.gson().toJson(generator.generate()).getBytes(StandardCharsets.UTF_8));
+                payloadWeights.add(size.getValue());
+                totalWeight += size.getValue();
+            }
+        }
+    }
+
+    void run(final PrintStream out) throws InterruptedException {
+        out.printf("%s load on %s, warm-up %ds, measurement %ds, sizes %s%n", settings.mode, settings.uri,
+                settings.warmupSeconds, settings.durationSeconds, settings.sizeMix);
+
+        long warmupNanos = TimeUnit.SECONDS.toNanos(settings.warmupSeconds);
+        long measurementNanos = TimeUnit.SECONDS.toNanos(settings.durationSeconds);
+        long start = System.nanoTime();
+        long measurementStart = start + warmupNanos;
+        long end = measurementStart + measurementNanos;
+
+        if (settings.mode == Mode.OPEN) {
+            runOpen(start, measurementStart, end);
+        } else {
+            runClosed(measurementStart, end);
+        }
+        clientExecutor.shutdown();
+
+        report(out, recorder.getIntervalHistogram(), System.nanoTime() - measurementStart);
+    }
+
+    // Sends one request every 1/rate seconds, however many requests are still outstanding
+    private void runOpen(final long start, final long measurementStart, final long end) throws InterruptedException {
+        long intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / settings.rate));
+        SplittableRandom random = new SplittableRandom(settings.seed);
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicLong outstanding = new AtomicLong(1);
+        for (long intended = start; intended < end; intended += intervalNanos) {
+            long delay = intended - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            long intendedStart = intended;
+            outstanding.incrementAndGet();
+            client.sendAsync(request(random), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        complete(response, error, intendedStart, measurementStart);
+                        if (outstanding.decrementAndGet() == 0) {
+                            done.countDown();
+                        }
+                    });
+        }
+        if (outstanding.decrementAndGet() == 0) {
+            done.countDown();
+        }
+        done.await();
+    }
+
+    // Every worker sends a request when its previous one has completed, but not before it is due when there is an interval
+    private void runClosed(final long measurementStart, final long end) throws InterruptedException {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(settings.intervalMillis);
+        ExecutorService workers = Executors.newFixedThreadPool(settings.concurrency);
+        Semaphore stopped = new Semaphore(0);
+        for (int worker = 0; worker < settings.concurrency; worker++) {
+            SplittableRandom random = new SplittableRandom(settings.seed + worker);
+            workers.execute(() -> {
+                long due = System.nanoTime();
+                while (due < end && System.nanoTime() < end) {
+                    long delay = due - System.nanoTime();
+                    if (delay > 0) {
+                        LockSupport.parkNanos(delay);
+                    }
+                    long requestStart = intervalNanos > 0 ? due : System.nanoTime();
+                    due = requestStart + intervalNanos;
+                    try {
+                        HttpResponse<Void> response = client.send(request(random), HttpResponse.BodyHandlers.discarding());
+                        complete(response, null, requestStart, measurementStart);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    } catch (Exception e) {
+                        complete(null, e, requestStart, measurementStart);
+                    }
+                }
+                stopped.release();
+            });
+        }
+        stopped.acquire(settings.concurrency);
+        workers.shutdown();
+    }
+
+    private void complete(final HttpResponse<Void> response, final Throwable error, final long intendedStart,
+                          final long measurementStart) {
+        if (intendedStart < measurementStart) {
+            // Warm-up requests are not counted
+            return;
+        }
+        recorder.recordValue(Math.min(System.nanoTime() - intendedStart, HIGHEST_TRACKABLE_NANOS));
+        completed.incrementAndGet();
+        if (error != null) {
+            failures.incrementAndGet();
+        } else {
+            statusCounts.computeIfAbsent(response.statusCode(), status -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    private HttpRequest request(final SplittableRandom random) {
+        return HttpRequest.newBuilder(settings.uri)
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofMinutes(1))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(pickPayload(random)))
+                .build();
+    }
+
+    private byte[] pickPayload(final SplittableRandom random) {
+        int pick = random.nextInt(totalWeight);
+        for (int index = 0; index < payloads.size(); index++) {
+            pick -= payloadWeights.get(index);
+            if (pick < 0) {
+                return payloads.get(index);
+            }
+        }
+        return payloads.get(payloads.size() - 1);
+    }
+
+    private void report(final PrintStream out, final Histogram histogram, final long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        out.printf("Completed %d requests in %.1fs: %.1f requests/s%n", completed.get(), seconds, completed.get() / seconds);
+        out.printf("Status codes %s, failed requests %d%n", statusCounts, failures.get());
+        boolean corrected = settings.mode == Mode.OPEN || settings.intervalMillis > 0;
+        out.printf("Latency (ms, %s): p50 %.2f, p90 %.2f, p99 %.2f, p99.9 %.2f, max %.2f%n",
+                corrected ? "from the due moment" : "not corrected for coordinated omission",
+                millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+                millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue()));
+        if (settings.printHistogram) {
+            histogram.outputPercentileDistribution(out, 1e6);
+        }
+    }
+
+    private static double millis(final long nanos) {
+        return nanos / 1e6;
+    }
+
+    enum Mode {
+        OPEN,
+        CLOSED
+    }
+
+    /**
+     * Settings are passed as key=value arguments, for example: mode=closed concurrency=16 sizes=10:70,1000:25,100000:5
+     * sizes is a list of statement size:weight pairs, rate is in requests per second and is used in open mode only,
+     * interval is the time in milliseconds from one request of a connection to the next in closed mode, 0 for none
+     */
+    static final class Settings {
+        URI uri = URI.create("http://localhost:8080/statement/validate");
+        Mode mode = Mode.OPEN;
+        double rate = 100;
+        int concurrency = 16;
+        long intervalMillis;
+        int warmupSeconds = 10;
+        int durationSeconds = 30;
+        Map<Integer, Integer> sizeMix = new TreeMap<>(Map.of(10, 70, 1000, 25, 100_000, 5));
+        double duplicateRatio = 0.01;
+        double badBalanceRatio = 0.01;
+        long seed = 42;
+        boolean printHistogram;
+
+        static Settings parse(final String[] args) {
+            Settings settings = new Settings();
+            for (String argument : args) {
+                int separator = argument.indexOf('=');
+                if (separator < 0) {
+                    throw new IllegalArgumentException("Expected key=value but found '" + argument + "'");
+                }
+                String value = argument.substring(separator + 1);
+                switch (argument.substring(0, separator)) {
+                    case "url":
+                        settings.uri = URI.create(value);
+                        break;
+                    case "mode":
+                        settings.mode = Mode.valueOf(value.toUpperCase(Locale.ROOT));
+                        break;
+                    case "rate":
+                        settings.rate = Double.parseDouble(value);
+                        break;
+                    case "concurrency":
+                        settings.concurrency = Integer.parseInt(value);
+                        break;
+                    case "interval":
+                        settings.intervalMillis = Long.parseLong(value);
+                        break;
+                    case "warmup":
+                        settings.warmupSeconds = Integer.parseInt(value);
+                        break;
+                    case "duration":
+                        settings.durationSeconds = Integer.parseInt(value);
+                        break;
+                    case "sizes":
+                        settings.sizeMix = parseSizeMix(value);
+                        break;
+                    case "duplicateRatio":
+                        settings.duplicateRatio = Double.parseDouble(value);
+                        break;
+                    case "badBalanceRatio":
+                        settings.badBalanceRatio = Double.parseDouble(value);
+                        break;
+                    case "seed":
+                        settings.seed = Long.parseLong(value);
+                        break;
+                    case "histogram":
+                        settings.printHistogram = Boolean.parseBoolean(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown setting '" + argument + "'");
+                }
+            }
+            if (settings.rate <= 0 || settings.concurrency <= 0 || settings.durationSeconds <= 0 || settings.warmupSeconds < 0) {
+                throw new IllegalArgumentException("rate, concurrency and duration must be positive");
+            }
+            if (settings.intervalMillis < 0) {
+                throw new IllegalArgumentException("interval must not be negative");
+            }
+            return settings;
+        }
+
+        private static Map<Integer, Integer> parseSizeMix(final String value) {
+            Map<Integer, Integer> sizeMix = new TreeMap<>();
+            for (String entry : value.split(",")) {
+                String[] sizeAndWeight = entry.split(":");
+                int weight = sizeAndWeight.length > 1 ? Integer.parseInt(sizeAndWeight[1]) : 1;
+                if (weight <= 0) {
+                    throw new IllegalArgumentException("Weights must be positive");
+                }
+                sizeMix.put(Integer.parseInt(sizeAndWeight[0]), weight);
+            }
+            return sizeMix;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package nl.rabobank.statementprocessor.loadtest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadGeneratorSettingsTest {
+
+    @Test
+    void shouldParseSettings_whenArgumentsAreKeyValuePairs() {
+        LoadGenerator.Settings settings = LoadGenerator.Settings.parse(new String[] {
+                "mode=closed", "concurrency=8", "duration=5", "sizes=10:3,5000", "url=http://localhost:9090/statement/validate",
+                "interval=250" });
+
+        assertEquals(LoadGenerator.Mode.CLOSED, settings.mode);
+        assertEquals(8, settings.concurrency);
+        assertEquals(250, settings.intervalMillis);
+        assertEquals(5, settings.durationSeconds);
+        assertEquals(Map.of(10, 3, 5000, 1), settings.sizeMix);
+        assertEquals(9090, settings.uri.getPort());
+    }
+
+    @Test
+    void shouldThrowIllegalArgumentException_whenSettingIsUnknown() {
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.Settings.parse(new String[] { "speed=fast" }));
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.Settings.parse(new String[] { "rate" }));
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.Settings.parse(new String[] { "rate=0" }));
+        assertThrows(IllegalArgumentException.class, () -> LoadGenerator.Settings.parse(new String[] { "interval=-1" }));
+    }
+}
@@ -0,0 +1,85 @@
+package nl.rabobank.statementprocessor.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarStatementTest {
+
+    private static final Record RECORD_CORRECT = Record.builder()
+            .transactionReference(123456789)
+            .accountNumber("NL34RABO0123456789")
+            .startBalance(1234)
+            .mutation(34)
+            .endBalance(1200)
+            .description("Groceries")
+            .build();
+
+    private static final Record RECORD_INCORRECT = Record.builder()
+            .transactionReference(111111111)
+            .accountNumber("NL34RABO0111111111")
+            .startBalance(1234)
+            .mutation(31)
+            .endBalance(1200)
+            .description("Something else")
+            .build();
+
+    @Test
+    void shouldEncodeAccountNumbersOnce_whenTheyRepeat() {
+        ColumnarStatement statement = ColumnarStatement.of(new Statement(
+                Arrays.asList(RECORD_CORRECT, RECORD_INCORRECT, RECORD_CORRECT)));
+
+        assertEquals(3, statement.size());
+        assertEquals(2, statement.getAccountCount());
+        assertEquals(statement.getAccountId(0), statement.getAccountId(2));
+        assertEquals("NL34RABO0111111111", statement.getAccountNumber(1));
+    }
+
+    @Test
+    void shouldRebuildRecordWithoutDescription() {
+        ColumnarStatement statement = ColumnarStatement.of(Arrays.asList(RECORD_INCORRECT).iterator());
+
+        Record record = statement.toRecord(0);
+
+        assertNull(record.getDescription());
+        record.setDescription(RECORD_INCORRECT.getDescription());
+        assertEquals(RECORD_INCORRECT, record);
+    }
+
+    @Test
+    void shouldMarkSameRecordsAsValidateEndBalance_whenSizeIsNotAMultipleOf64() {
+        Random random = new Random(11);
+        List<Record> records = new ArrayList<>();
+        BitSet expected = new BitSet();
+        for (int index = 0; index < 1000; index++) {
+            long startBalance = random.nextLong();
+            long mutation = random.nextInt(100);
+            long endBalance = random.nextInt(4) == 0 ? startBalance - mutation + 1 : startBalance - mutation;
+            Record record = Record.builder()
+                    .transactionReference(index)
+                    .startBalance(startBalance)
+                    .mutation(mutation)
+                    .endBalance(endBalance)
+                    .build();
+            records.add(record);
+            expected.set(index, !record.validateEndBalance());
+        }
+
+        long[] mask = ColumnarStatement.of(new Statement(records)).incorrectEndBalances();
+
+        assertEquals(16, mask.length);
+        assertEquals(expected, BitSet.valueOf(mask));
+    }
+
+    @Test
+    void shouldThrowIllegalArgumentException_whenColumnIsTooShort() {
+        assertThrows(IllegalArgumentException.class, () -> new ColumnarStatement(2, new long[2], new long[2],
+                new long[1], new long[2], new int[2], new String[] { "NL34RABO0123456789" }));
+    }
+}
@@ -0,0 +1,89 @@
+package nl.rabobank.statementprocessor.parsers;
+
+import nl.rabobank.statementprocessor.model.Record;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvStatementReaderTest {
+
+    private static final String INPUT_TWO_RECORDS = "Reference,Account Number,Description,Start Balance,Mutation,End Balance\n" +
+            "123456789,NL34RABO0123456789,Groceries,1234,34,1200\n" +
+            "111111111,NL34RABO0111111111,Something else,1111,-11,1122\n";
+
+    private static final String INPUT_QUOTED_FIELDS = "transactionReference,description,startBalance,mutation,endBalance,other\r\n" +
+            "1,\"Rent, \"\"May\"\"\",-9223372036854775808,+0,5,ignored\r\n" +
+            "\r\n" +
+            "2,\"Two\r\nlines\",0,0,0,\"\"";
+
+    private static final String INPUT_MISSING_COLUMN = "Reference,Account Number,Start Balance,Mutation\n" +
+            "123456789,NL34RABO0123456789,1234,34\n";
+
+    private static final String INPUT_INVALID_NUMBER = "Reference,Start Balance,Mutation,End Balance\n" +
+            "123456789,12.34,34,1200\n";
+
+    private static final String INPUT_NUMBER_OUT_OF_RANGE = "Reference,Start Balance,Mutation,End Balance\n" +
+            "9223372036854775808,1234,34,1200\n";
+
+    private static final String INPUT_MISSING_FIELD = "Reference,Start Balance,Mutation,End Balance\n" +
+            "123456789,1234,34\n";
+
+    @Test
+    void shouldReadAllRecords_inInputOrder() {
+        List<Record> records = readAll(INPUT_TWO_RECORDS);
+
+        assertEquals(2, records.size());
+        assertEquals(Record.builder().transactionReference(123456789).accountNumber("NL34RABO0123456789")
+                .description("Groceries").startBalance(1234).mutation(34).endBalance(1200).build(), records.get(0));
+        assertEquals(111111111, records.get(1).getTransactionReference());
+        assertEquals(-11, records.get(1).getMutation());
+    }
+
+    @Test
+    void shouldUnquoteFields_andSkipBlankLines() {
+        List<Record> records = readAll(INPUT_QUOTED_FIELDS);
+
+        assertEquals(2, records.size());
+        assertEquals("Rent, \"May\"", records.get(0).getDescription());
+        assertEquals(Long.MIN_VALUE, records.get(0).getStartBalance());
+        assertNull(records.get(0).getAccountNumber());
+        assertEquals("Two\r\nlines", records.get(1).getDescription());
+    }
+
+    @Test
+    void shouldReadNoRecords_whenThereIsOnlyAHeader() {
+        assertTrue(readAll("Reference,Start Balance,Mutation,End Balance").isEmpty());
+    }
+
+    @Test
+    void shouldThrowStatementParseException_whenColumnIsMissing() {
+        assertThrows(StatementParseException.class, () -> readAll(INPUT_MISSING_COLUMN));
+    }
+
+    @Test
+    void shouldThrowStatementParseException_whenNumberIsInvalid() {
+        assertThrows(StatementParseException.class, () -> readAll(INPUT_INVALID_NUMBER));
+    }
+
+    @Test
+    void shouldThrowStatementParseException_whenNumberIsOutOfRange() {
+        assertThrows(StatementParseException.class, () -> readAll(INPUT_NUMBER_OUT_OF_RANGE));
+    }
+
+    @Test
+    void shouldThrowStatementParseException_whenFieldIsMissing() {
+        assertThrows(StatementParseException.class, () -> readAll(INPUT_MISSING_FIELD));
+    }
+
+    private List<Record> readAll(final String csv) {
+        CsvStatementReader reader = new CsvStatementReader(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+        List<Record> records = new ArrayList<>();
+        reader.forEachRemaining(records::add);
+        return records;
+    }
+}
@@ -0,0 +1,82 @@
+package nl.rabobank.statementprocessor.parsers;
+
+import com.google.gson.JsonSyntaxException;
+import nl.rabobank.statementprocessor.benchmarks.StatementGenerator;
+import nl.rabobank.statementprocessor.codec.JsonCodecs;
+import nl.rabobank.statementprocessor.model.Record;
+import nl.rabobank.statementprocessor.model.Statement;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonRecordDecoderTest {
+
+    private static final String INPUT_OTHER_FIELDS = "{ \"id\": { \"value\": [1, {\"records\": []}] }, \"records\": [ "
+            + "{ \"transactionReference\": \"1\", \"extra\": {\"a\": [1]}, \"accountNumber\": 123, \"mutation\": 2.0, "
+            + "\"description\": null } ], \"note\": \"x\", \"records\": [ { \"transactionReference\": 2 } ] }";
+
+    private static final String INPUT_TRAILING_PARSING_ERROR = "{ \"records\": [ { \"transactionReference\": 1 } ] ";
+
+    @Test
+    void shouldDecodeSameRecordsAsGson_whenBytesArriveOneByOne() {
+        Statement statement = new StatementGenerator(200, 0.05, 0.05, 3).generate();
+        byte[] json = JsonCodecs.gson().toJson(statement).getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(statement.getRecords(), decode(json, 1));
+        assertEquals(statement.getRecords(), decode(json, 4096));
+    }
+
+    @Test
+    void shouldSkipOtherFieldsAndReadNumbersLikeGson() {
+        List<Record> records = decode(INPUT_OTHER_FIELDS.getBytes(StandardCharsets.UTF_8), 3);
+
+        assertEquals(1, records.size());
+        assertEquals(Record.builder().transactionReference(1).accountNumber("123").mutation(2).build(), records.get(0));
+    }
+
+    @Test
+    void shouldDecodeNoRecords_whenStatementHasNone() {
+        assertTrue(decode("{ \"records\": [] }".getBytes(StandardCharsets.UTF_8), 2).isEmpty());
+        assertTrue(decode("{}".getBytes(StandardCharsets.UTF_8), 2).isEmpty());
+    }
+
+    @Test
+    void shouldThrowJsonSyntaxException_whenStatementIsIncomplete() {
+        assertThrows(JsonSyntaxException.class, () -> decode(INPUT_TRAILING_PARSING_ERROR.getBytes(StandardCharsets.UTF_8), 5));
+        assertThrows(JsonSyntaxException.class, () -> decode(new byte[0], 1));
+    }
+
+    @Test
+    void shouldThrowJsonSyntaxException_whenJsonIsInvalid() {
+        assertThrows(JsonSyntaxException.class, () -> decode("[1]".getBytes(StandardCharsets.UTF_8), 1));
+        assertThrows(JsonSyntaxException.class, () -> decode("{\"records\": [1]}".getBytes(StandardCharsets.UTF_8), 1));
+        assertThrows(JsonSyntaxException.class,
+                () -> decode("{\"records\": [{\"mutation\": 1.5}]}".getBytes(StandardCharsets.UTF_8), 1));
+        assertThrows(JsonSyntaxException.class, () -> decode("{} {}".getBytes(StandardCharsets.UTF_8), 1));
+    }
+
+    // Feeds the input in chunks of the given size, like a body that arrives in pieces
+    private static List<Record> decode(final byte[] json, final int chunkSize) {
+        JsonRecordDecoder decoder = new JsonRecordDecoder();
+        List<Record> records = new ArrayList<>();
+        for (int offset = 0; offset < json.length; offset += chunkSize) {
+            assertTrue(decoder.needsInput());
+            decoder.feed(json, offset, Math.min(chunkSize, json.length - offset));
+            Record record;
+            while ((record = decoder.nextRecord()) != null) {
+                records.add(record);
+            }
+        }
+        decoder.endOfInput();
+        Record record;
+        while ((record = decoder.nextRecord()) != null) {
+            records.add(record);
+        }
+        assertTrue(decoder.isFinished());
+        return records;
+    }
+}
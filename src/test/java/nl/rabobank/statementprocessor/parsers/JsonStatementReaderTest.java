@@ -0,0 +1,86 @@
+package nl.rabobank.statementprocessor.parsers;
+
+import com.google.gson.JsonSyntaxException;
+import nl.rabobank.statementprocessor.model.Record;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonStatementReaderTest {
+
+    private static final String INPUT_TWO_RECORDS = "{\n" +
+            "  \"records\": [\n" +
+            "      {\n" +
+            "          \"transactionReference\": 123456789,\n" +
+            "          \"accountNumber\": \"NL34RABO0123456789\",\n" +
+            "          \"startBalance\": 1234,\n" +
+            "          \"mutation\": 34,\n" +
+            "          \"description\": \"Groceries\",\n" +
+            "          \"endBalance\": 1200 \n" +
+            "      },\n" +
+            "      {\n" +
+            "          \"transactionReference\": 111111111,\n" +
+            "          \"accountNumber\": \"NL34RABO0111111111\",\n" +
+            "          \"startBalance\": 1111,\n" +
+            "          \"mutation\": 11,\n" +
+            "          \"description\": \"Something else\",\n" +
+            "          \"endBalance\": 1100 \n" +
+            "      }\n" +
+            "  ]\n" +
+            "}";
+
+    private static final String INPUT_NO_RECORDS = "{ \"records\": [] }";
+
+    private static final String INPUT_OTHER_FIELDS = "{ \"id\": { \"value\": 1 }, \"records\": [ { \"transactionReference\": 1 } ], \"note\": \"x\" }";
+
+    // The first curly brace is missing here
+    private static final String INPUT_JSON_PARSING_ERROR = "  \"records\": [ { \"transactionReference\": 1 } ] }";
+
+    private static final String INPUT_TRAILING_PARSING_ERROR = "{ \"records\": [ { \"transactionReference\": 1 } ] ";
+
+    @Test
+    void shouldReadAllRecords_inInputOrder() {
+        List<Record> records = readAll(INPUT_TWO_RECORDS);
+
+        assertEquals(2, records.size());
+        assertEquals(123456789, records.get(0).getTransactionReference());
+        assertEquals("NL34RABO0123456789", records.get(0).getAccountNumber());
+        assertEquals(1200, records.get(0).getEndBalance());
+        assertEquals(111111111, records.get(1).getTransactionReference());
+        assertEquals("Something else", records.get(1).getDescription());
+    }
+
+    @Test
+    void shouldReadNoRecords_whenRecordsAreEmpty() {
+        assertTrue(readAll(INPUT_NO_RECORDS).isEmpty());
+    }
+
+    @Test
+    void shouldSkipOtherFields_whenReadingRecords() {
+        List<Record> records = readAll(INPUT_OTHER_FIELDS);
+
+        assertEquals(1, records.size());
+        assertEquals(1, records.get(0).getTransactionReference());
+    }
+
+    @Test
+    void shouldThrowJsonSyntaxException_whenJsonIsInvalid() {
+        assertThrows(JsonSyntaxException.class, () -> readAll(INPUT_JSON_PARSING_ERROR));
+    }
+
+    @Test
+    void shouldThrowJsonSyntaxException_whenStatementIsIncomplete() {
+        assertThrows(JsonSyntaxException.class, () -> readAll(INPUT_TRAILING_PARSING_ERROR));
+    }
+
+    private List<Record> readAll(final String json) {
+        JsonStatementReader reader = new JsonStatementReader(new StringReader(json));
+        List<Record> records = new ArrayList<>();
+        reader.forEachRemaining(records::add);
+        return records;
+    }
+}
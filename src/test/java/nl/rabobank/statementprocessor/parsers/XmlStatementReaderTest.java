@@ -0,0 +1,79 @@
+package nl.rabobank.statementprocessor.parsers;
+
+import nl.rabobank.statementprocessor.model.Record;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class XmlStatementReaderTest {
+
+    private static final String INPUT_TWO_RECORDS = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<records>\n" +
+            "  <record reference=\"123456789\">\n" +
+            "    <accountNumber>NL34RABO0123456789</accountNumber>\n" +
+            "    <description>Groceries</description>\n" +
+            "    <startBalance>1234</startBalance>\n" +
+            "    <mutation>34</mutation>\n" +
+            "    <endBalance>1200</endBalance>\n" +
+            "  </record>\n" +
+            "  <record>\n" +
+            "    <transactionReference>111111111</transactionReference>\n" +
+            "    <!-- Elements that are not fields are skipped -->\n" +
+            "    <metadata><source>upstream</source></metadata>\n" +
+            "    <startBalance> 1111 </startBalance>\n" +
+            "    <mutation>-11</mutation>\n" +
+            "    <endBalance>1122</endBalance>\n" +
+            "  </record>\n" +
+            "</records>";
+
+    private static final String INPUT_INVALID_NUMBER = "<records><record reference=\"1\"><mutation>3.4</mutation></record></records>";
+
+    private static final String INPUT_MALFORMED = "<records><record reference=\"1\"></records>";
+
+    private static final String INPUT_DTD = "<!DOCTYPE records [<!ENTITY x SYSTEM \"file:///etc/passwd\">]>" +
+            "<records><record reference=\"1\"><description>&x;</description></record></records>";
+
+    @Test
+    void shouldReadAllRecords_inInputOrder() {
+        List<Record> records = readAll(INPUT_TWO_RECORDS);
+
+        assertEquals(2, records.size());
+        assertEquals(Record.builder().transactionReference(123456789).accountNumber("NL34RABO0123456789")
+                .description("Groceries").startBalance(1234).mutation(34).endBalance(1200).build(), records.get(0));
+        assertEquals(111111111, records.get(1).getTransactionReference());
+        assertEquals(1111, records.get(1).getStartBalance());
+        assertEquals(-11, records.get(1).getMutation());
+    }
+
+    @Test
+    void shouldReadNoRecords_whenStatementIsEmpty() {
+        assertTrue(readAll("<records/>").isEmpty());
+    }
+
+    @Test
+    void shouldThrowStatementParseException_whenNumberIsInvalid() {
+        assertThrows(StatementParseException.class, () -> readAll(INPUT_INVALID_NUMBER));
+    }
+
+    @Test
+    void shouldThrowStatementParseException_whenXmlIsMalformed() {
+        assertThrows(StatementParseException.class, () -> readAll(INPUT_MALFORMED));
+    }
+
+    @Test
+    void shouldThrowStatementParseException_whenXmlContainsADocumentType() {
+        assertThrows(StatementParseException.class, () -> readAll(INPUT_DTD));
+    }
+
+    private List<Record> readAll(final String xml) {
+        XmlStatementReader reader = new XmlStatementReader(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+        List<Record> records = new ArrayList<>();
+        reader.forEachRemaining(records::add);
+        return records;
+    }
+}
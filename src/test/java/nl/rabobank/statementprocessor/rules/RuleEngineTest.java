@@ -0,0 +1,148 @@
+package nl.rabobank.statementprocessor.rules;
+
+import nl.rabobank.statementprocessor.model.Record;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RuleEngineTest {
+
+    private static final Record RECORD = Record.builder()
+            .transactionReference(123456789)
+            .accountNumber("NL34RABO0123456789")
+            .startBalance(1234)
+            .mutation(34)
+            .endBalance(1200)
+            .build();
+
+    @Test
+    void shouldRunRulesInOrderOfCost() {
+        List<String> calls = new ArrayList<>();
+        RuleEngine engine = new RuleEngine(Arrays.asList(
+                new RecordingRule("expensive", 10, false, calls),
+                new RecordingRule("cheap", 1, false, calls),
+                new RecordingRule("medium", 5, false, calls)));
+
+        engine.start(1).test(RECORD);
+
+        assertEquals(Arrays.asList("cheap", "medium", "expensive"), calls);
+    }
+
+    @Test
+    void shouldSkipRecordRule_whenRecordIsAlreadyAnErrorAndViolationIsReported() {
+        List<String> calls = new ArrayList<>();
+        RuleEngine engine = new RuleEngine(Arrays.asList(
+                new RecordingRule("first", 1, true, calls),
+                new RecordingRule("second", 2, true, calls)));
+        RuleEngine.Run run = engine.start(2);
+
+        assertTrue(run.test(RECORD));
+        assertTrue(run.test(RECORD));
+
+        // The second rule reports the same violation as the first one, so it cannot change the outcome of either record
+        assertEquals(Arrays.asList("first", "first"), calls);
+    }
+
+    @Test
+    void shouldAlwaysRunStatefulRules() {
+        List<Record> seen = new ArrayList<>();
+        ValidationRule statefulRule = new ValidationRule() {
+            @Override
+            public Violation getViolation() {
+                return Violation.INCORRECT_END_BALANCE;
+            }
+
+            @Override
+            public int getCost() {
+                return 2;
+            }
+
+            @Override
+            public Check createCheck(final int expectedSize) {
+                return record -> seen.add(record);
+            }
+        };
+        RuleEngine.Run run = new RuleEngine(Arrays.asList(statefulRule,
+                new RecordingRule("first", 1, true, new ArrayList<>()))).start(-1);
+
+        run.test(RECORD);
+        run.test(RECORD);
+
+        assertEquals(2, seen.size());
+    }
+
+    @Test
+    void shouldReportStatementLevelViolation_whenStatementIsFinished() {
+        ValidationRule notEmptyRule = new ValidationRule() {
+            @Override
+            public Violation getViolation() {
+                return Violation.INCORRECT_END_BALANCE;
+            }
+
+            @Override
+            public int getCost() {
+                return 1;
+            }
+
+            @Override
+            public Check createCheck(final int expectedSize) {
+                return new Check() {
+                    private int count;
+
+                    @Override
+                    public boolean test(final Record record) {
+                        count++;
+                        return false;
+                    }
+
+                    @Override
+                    public boolean testStatement() {
+                        return count == 0;
+                    }
+                };
+            }
+        };
+        RuleEngine.Run run = new RuleEngine(Arrays.asList(notEmptyRule)).start(0);
+
+        assertFalse(run.hasViolation(Violation.INCORRECT_END_BALANCE));
+        run.finish();
+
+        assertTrue(run.hasViolation(Violation.INCORRECT_END_BALANCE));
+        assertFalse(run.hasViolation(Violation.DUPLICATE_REFERENCE));
+        assertTrue(run.isDecided());
+    }
+
+    private static final class RecordingRule implements RecordRule {
+        private final String name;
+        private final int cost;
+        private final boolean violated;
+        private final List<String> calls;
+
+        RecordingRule(final String name, final int cost, final boolean violated, final List<String> calls) {
+            this.name = name;
+            this.cost = cost;
+            this.violated = violated;
+            this.calls = calls;
+        }
+
+        @Override
+        public Violation getViolation() {
+            return Violation.INCORRECT_END_BALANCE;
+        }
+
+        @Override
+        public int getCost() {
+            return cost;
+        }
+
+        @Override
+        public boolean test(final Record record) {
+            calls.add(name);
+            return violated;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package nl.rabobank.statementprocessor.services;
+
+import nl.rabobank.statementprocessor.model.Result;
+import nl.rabobank.statementprocessor.model.ValidationResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchValidationServiceTest {
+
+    private static final String STATEMENT_SUCCESSFUL = "{\"records\":[" +
+            "{\"transactionReference\":1,\"accountNumber\":\"NL34RABO0123456789\",\"startBalance\":1234,\"mutation\":34,\"endBalance\":1200}]}";
+
+    private static final String STATEMENT_DUPLICATE_REFERENCE = "{\"records\":[" +
+            "{\"transactionReference\":1,\"accountNumber\":\"NL34RABO0123456789\",\"startBalance\":1234,\"mutation\":34,\"endBalance\":1200}," +
+            "{\"transactionReference\":1,\"accountNumber\":\"NL34RABO0111111111\",\"startBalance\":1111,\"mutation\":11,\"endBalance\":1100}]}";
+
+    private static final String STATEMENT_JSON_PARSING_ERROR = "{\"records\":[{\"transactionReference\":1";
+
+    private final ValidationService validationService = new ValidationServiceBuilder().build();
+    private final BatchValidationService batchValidationService = new BatchValidationService(validationService, 2, 3);
+
+    @AfterEach
+    void tearDown() {
+        batchValidationService.shutdown();
+        validationService.shutdown();
+    }
+
+    @Test
+    void shouldReturnOneResultPerStatement_indexedByPosition() throws IOException {
+        StringBuilder batch = new StringBuilder();
+        for (int index = 0; index < 100; index++) {
+            batch.append(index % 2 == 0 ? STATEMENT_SUCCESSFUL : STATEMENT_DUPLICATE_REFERENCE).append('\n');
+        }
+
+        Map<Long, ValidationResult> results = validateBatch(batch.toString());
+
+        assertEquals(100, results.size());
+        for (long index = 0; index < 100; index++) {
+            Result expected = index % 2 == 0 ? Result.SUCCESSFUL : Result.DUPLICATE_REFERENCE;
+            assertEquals(expected, results.get(index).getResult());
+        }
+    }
+
+    @Test
+    void shouldReturnBadRequestForInvalidStatementOnly_andSkipBlankLines() throws IOException {
+        String batch = STATEMENT_SUCCESSFUL + "\n\n" + STATEMENT_JSON_PARSING_ERROR + "\r\n" + STATEMENT_DUPLICATE_REFERENCE;
+
+        Map<Long, ValidationResult> results = validateBatch(batch);
+
+        assertEquals(3, results.size());
+        assertEquals(Result.SUCCESSFUL, results.get(0L).getResult());
+        assertEquals(Result.BAD_REQUEST, results.get(1L).getResult());
+        assertEquals(Result.DUPLICATE_REFERENCE, results.get(2L).getResult());
+    }
+
+    @Test
+    void shouldReturnBadRequest_whenStatementHasNoRecords() throws IOException {
+        String batch = "{}\nnull\n" + STATEMENT_SUCCESSFUL;
+
+        Map<Long, ValidationResult> results = validateBatch(batch);
+
+        assertEquals(Result.BAD_REQUEST, results.get(0L).getResult());
+        assertEquals(Result.BAD_REQUEST, results.get(1L).getResult());
+        assertEquals(Result.SUCCESSFUL, results.get(2L).getResult());
+    }
+
+    private Map<Long, ValidationResult> validateBatch(final String batch) throws IOException {
+        Map<Long, ValidationResult> results = new TreeMap<>();
+        batchValidationService.validateBatch(new BufferedReader(new StringReader(batch)), new BatchResultWriter() {
+            @Override
+            public void write(final long index, final ValidationResult validationResult) {
+                assertNull(results.put(index, validationResult));
+            }
+
+            @Override
+            public void flush() {
+            }
+        });
+        return results;
+    }
+}
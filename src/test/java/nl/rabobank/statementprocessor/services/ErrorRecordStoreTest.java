@@ -0,0 +1,97 @@
+package nl.rabobank.statementprocessor.services;
+
+import nl.rabobank.statementprocessor.model.ErrorRecordPage;
+import nl.rabobank.statementprocessor.model.Record;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ErrorRecordStoreTest {
+
+    private final Clock clock = mock(Clock.class);
+    private final ErrorRecordStore errorRecordStore = new ErrorRecordStore(Duration.ofMinutes(10), 10, clock);
+
+    @Test
+    void shouldReturnAllRecordsInPages_whenCursorsAreFollowed() {
+        List<Record> errorRecords = records(1, 7);
+        String cursor = errorRecordStore.store(errorRecords);
+
+        List<Record> fetched = new ArrayList<>();
+        int pages = 0;
+        while (cursor != null) {
+            ErrorRecordPage page = errorRecordStore.getPage(cursor, 3).orElseThrow(AssertionError::new);
+            fetched.addAll(page.getErrorRecords());
+            cursor = page.getNextCursor();
+            pages++;
+        }
+
+        assertEquals(3, pages);
+        assertEquals(errorRecords, fetched);
+    }
+
+    @Test
+    void shouldKeepReferenceAndAccountNumberOnly_whenRecordsAreStored() {
+        Record errorRecord = Record.builder().transactionReference(123456789).accountNumber("NL34RABO0123456789")
+                .startBalance(1234).mutation(34).endBalance(1100).description("Groceries").build();
+        Record withoutAccount = Record.builder().transactionReference(111111111).build();
+
+        String cursor = errorRecordStore.store(Arrays.asList(errorRecord, withoutAccount));
+        List<Record> fetched = errorRecordStore.getPage(cursor, 10).orElseThrow(AssertionError::new).getErrorRecords();
+
+        assertEquals(Arrays.asList(Record.builder().transactionReference(123456789).accountNumber("NL34RABO0123456789").build(),
+                withoutAccount), fetched);
+    }
+
+    @Test
+    void shouldReturnEmpty_whenCursorIsUnknownOrInvalid() {
+        String cursor = errorRecordStore.store(records(1, 2));
+        String id = cursor.substring(0, cursor.lastIndexOf('.'));
+
+        assertFalse(errorRecordStore.getPage("unknown.0", 10).isPresent());
+        assertFalse(errorRecordStore.getPage("unknown", 10).isPresent());
+        assertFalse(errorRecordStore.getPage(id + ".x", 10).isPresent());
+        assertFalse(errorRecordStore.getPage(id + ".2", 10).isPresent());
+        assertFalse(errorRecordStore.getPage(id + ".-1", 10).isPresent());
+    }
+
+    @Test
+    void shouldExpireRecords_whenRetentionHasPassed() {
+        when(clock.millis()).thenReturn(0L);
+        String cursor = errorRecordStore.store(records(1, 2));
+
+        when(clock.millis()).thenReturn(Duration.ofMinutes(10).toMillis());
+
+        assertFalse(errorRecordStore.getPage(cursor, 10).isPresent());
+        assertEquals(0, errorRecordStore.getStoredRecords());
+    }
+
+    @Test
+    void shouldEvictOldestRecords_whenMaximumIsExceeded() {
+        String first = errorRecordStore.store(records(1, 6));
+        String second = errorRecordStore.store(records(7, 6));
+
+        assertFalse(errorRecordStore.getPage(first, 10).isPresent());
+        assertTrue(errorRecordStore.getPage(second, 10).isPresent());
+        assertEquals(6, errorRecordStore.getStoredRecords());
+        assertNull(errorRecordStore.store(records(13, 11)));
+    }
+
+    private static List<Record> records(final long firstReference, final int count) {
+        return LongStream.range(firstReference, firstReference + count)
+                .mapToObj(reference -> Record.builder()
+                        .transactionReference(reference)
+                        .accountNumber("NL34RABO000000000" + reference % 3)
+                        .build())
+                .collect(Collectors.toList());
+    }
+}
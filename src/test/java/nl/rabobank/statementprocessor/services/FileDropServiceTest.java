@@ -0,0 +1,154 @@
+package nl.rabobank.statementprocessor.services;
+
+import com.google.gson.Gson;
+import nl.rabobank.statementprocessor.codec.BinaryStatementCodec;
+import nl.rabobank.statementprocessor.model.FileDropSummary;
+import nl.rabobank.statementprocessor.model.Record;
+import nl.rabobank.statementprocessor.model.Result;
+import nl.rabobank.statementprocessor.model.Statement;
+import nl.rabobank.statementprocessor.rules.RecordRule;
+import nl.rabobank.statementprocessor.rules.Violation;
+import nl.rabobank.statementprocessor.view.FileReportView;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileDropServiceTest {
+
+    private static final String STATEMENT_DUPLICATE_REFERENCE = "{\"records\":[" +
+            "{\"transactionReference\":1,\"accountNumber\":\"NL34RABO0123456789\",\"startBalance\":1234,\"mutation\":34,\"endBalance\":1200}," +
+            "{\"transactionReference\":1,\"accountNumber\":\"NL34RABO0111111111\",\"startBalance\":1111,\"mutation\":11,\"endBalance\":1100}]}";
+
+    private static final String STATEMENT_CSV = "Reference,Account Number,Description,Start Balance,Mutation,End Balance\n" +
+            "1,NL34RABO0123456789,Groceries,1234,34,1200\n";
+
+    private static final String STATEMENT_JSON_PARSING_ERROR = "{\"records\":[{\"transactionReference\":1";
+
+    private final ValidationService validationService = new ValidationServiceBuilder().build();
+    private final FileDropService fileDropService = fileDropService(validationService, DataSize.ofMegabytes(1));
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void tearDown() {
+        validationService.shutdown();
+    }
+
+    @Test
+    void shouldFindStatementFilesWithoutReport_inOrderOfName() throws IOException {
+        Path reports = directory.resolve("reports");
+        write("b.csv", STATEMENT_CSV);
+        write("a.json", STATEMENT_DUPLICATE_REFERENCE);
+        write("notes.txt", "not a statement");
+        write(".c.json", STATEMENT_DUPLICATE_REFERENCE);
+        write("d.json", STATEMENT_DUPLICATE_REFERENCE);
+        Files.createDirectories(reports);
+        Files.write(FileDropService.reportFile(reports, directory.resolve("d.json")), new byte[0]);
+
+        List<Path> files = fileDropService.findPendingFiles(directory, reports);
+
+        assertEquals(Arrays.asList(directory.resolve("a.json"), directory.resolve("b.csv")), files);
+    }
+
+    @Test
+    void shouldWriteReportPerFile_andIsolateFilesThatCannotBeParsed() throws IOException, InterruptedException {
+        Path reports = directory.resolve("reports");
+        write("duplicate.json", STATEMENT_DUPLICATE_REFERENCE);
+        write("broken.json", STATEMENT_JSON_PARSING_ERROR);
+        write("correct.csv", STATEMENT_CSV);
+        Record record = Record.builder().transactionReference(5).accountNumber("NL34RABO0123456789")
+                .startBalance(100).mutation(10).endBalance(80).build();
+        try (OutputStream out = Files.newOutputStream(directory.resolve("incorrect.bin"))) {
+            BinaryStatementCodec.encode(new Statement(Arrays.asList(record)), out);
+        }
+
+        FileDropSummary summary = fileDropService.validateFiles(fileDropService.findPendingFiles(directory, reports), reports);
+
+        assertEquals(4, summary.getFiles());
+        assertEquals(1, summary.getFailedFiles());
+        assertTrue(summary.getBytes() > 0);
+        assertEquals(Result.DUPLICATE_REFERENCE, readReport(reports, "duplicate.json").getResult());
+        assertEquals(Result.SUCCESSFUL, readReport(reports, "correct.csv").getResult());
+        FileReportView incorrect = readReport(reports, "incorrect.bin");
+        assertEquals(Result.INCORRECT_END_BALANCE, incorrect.getResult());
+        assertEquals(5, incorrect.getErrorRecords().get(0).getTransactionReference());
+        FileReportView broken = readReport(reports, "broken.json");
+        assertEquals(Result.BAD_REQUEST, broken.getResult());
+        assertNotNull(broken.getError());
+        assertTrue(fileDropService.findPendingFiles(directory, reports).isEmpty());
+    }
+
+    @Test
+    void shouldWriteFailureReport_whenValidationThrowsError() throws IOException, InterruptedException {
+        Path reports = directory.resolve("reports");
+        write("overflowing.json", STATEMENT_DUPLICATE_REFERENCE);
+        RecordRule overflowingRule = new RecordRule() {
+            @Override
+            public Violation getViolation() {
+                return Violation.INCORRECT_END_BALANCE;
+            }
+
+            @Override
+            public int getCost() {
+                return 1;
+            }
+
+            @Override
+            public boolean test(final Record record) {
+                throw new StackOverflowError();
+            }
+        };
+        ValidationService overflowingService = new ValidationServiceBuilder().customRule(overflowingRule).build();
+        FileDropService overflowingFileDropService = fileDropService(overflowingService, DataSize.ofMegabytes(1));
+
+        FileDropSummary summary = overflowingFileDropService.validateFiles(
+                overflowingFileDropService.findPendingFiles(directory, reports), reports);
+        overflowingService.shutdown();
+
+        assertEquals(1, summary.getFailedFiles());
+        FileReportView overflowing = readReport(reports, "overflowing.json");
+        assertEquals(Result.INTERNAL_SERVER_ERROR, overflowing.getResult());
+        assertTrue(overflowing.getError().contains("StackOverflowError"));
+    }
+
+    @Test
+    void shouldReturnBadRequest_whenFileExceedsMaximumSizeOfItsFormat() throws IOException, InterruptedException {
+        Path reports = directory.resolve("reports");
+        write("large.json", STATEMENT_DUPLICATE_REFERENCE);
+        write("small.csv", STATEMENT_CSV);
+        FileDropService limitedFileDropService = fileDropService(validationService, DataSize.ofBytes(STATEMENT_CSV.length()));
+
+        limitedFileDropService.validateFiles(limitedFileDropService.findPendingFiles(directory, reports), reports);
+
+        FileReportView large = readReport(reports, "large.json");
+        assertEquals(Result.BAD_REQUEST, large.getResult());
+        assertTrue(large.getError().contains("exceeds the maximum"));
+        assertEquals(Result.SUCCESSFUL, readReport(reports, "small.csv").getResult());
+    }
+
+    private static FileDropService fileDropService(final ValidationService validationService, final DataSize maxSize) {
+        return new FileDropService(validationService, 2, maxSize, maxSize);
+    }
+
+    private void write(final String name, final String content) throws IOException {
+        Files.write(directory.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static FileReportView readReport(final Path reports, final String name) throws IOException {
+        String report = new String(Files.readAllBytes(reports.resolve(name + FileDropService.REPORT_SUFFIX)),
+                StandardCharsets.UTF_8);
+        return new Gson().fromJson(report, FileReportView.class);
+    }
+}
@@ -0,0 +1,144 @@
+package nl.rabobank.statementprocessor.services;
+
+import nl.rabobank.statementprocessor.benchmarks.StatementGenerator;
+import nl.rabobank.statementprocessor.index.ReferenceIndex;
+import nl.rabobank.statementprocessor.metrics.ValidationMetrics;
+import nl.rabobank.statementprocessor.model.Record;
+import nl.rabobank.statementprocessor.model.Result;
+import nl.rabobank.statementprocessor.model.Statement;
+import nl.rabobank.statementprocessor.model.ValidationMode;
+import nl.rabobank.statementprocessor.model.ValidationResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelStatementValidatorTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    private final ParallelStatementValidator parallelValidator = new ParallelStatementValidator(pool, null, false, ValidationMetrics.noop());
+    private final ValidationService sequentialService = new ValidationServiceBuilder().build();
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+        sequentialService.shutdown();
+    }
+
+    @Test
+    void shouldReturnSameResultAsSequentialValidation_forLargeStatement() {
+        List<Record> records = randomRecords(200_000, 150_000, 0.001);
+
+        ValidationResult expected = sequentialService.validateStatement(new Statement(records));
+        ValidationResult actual = parallelValidator.validate(records, ValidationMode.FULL);
+
+        assertEquals(Result.DUPLICATE_REFERENCE_INCORRECT_END_BALANCE, actual.getResult());
+        assertEquals(expected.getResult(), actual.getResult());
+        assertIdenticalRecords(expected.getErrorRecords(), actual.getErrorRecords());
+    }
+
+    @Test
+    void shouldReturnSameResultAsSequentialValidation_whenModeIsSummaryOrFailFast() {
+        List<Record> records = randomRecords(200_000, 150_000, 0.001);
+
+        for (ValidationMode mode : Arrays.asList(ValidationMode.SUMMARY, ValidationMode.FAILFAST)) {
+            ValidationResult expected = sequentialService.validateStatement(new Statement(records), mode);
+            ValidationResult actual = parallelValidator.validate(records, mode);
+
+            assertEquals(expected.getResult(), actual.getResult());
+            assertIdenticalRecords(expected.getErrorRecords(), actual.getErrorRecords());
+        }
+    }
+
+    @Test
+    void shouldReturnSameResultAsSequentialValidation_whenBalanceChainsAreChecked() {
+        ParallelStatementValidator chainValidator = new ParallelStatementValidator(pool, null, true, ValidationMetrics.noop());
+        ValidationService chainService = new ValidationServiceBuilder().balanceChains().build();
+        List<Record> records = new StatementGenerator(100_000, 0.001, 0.001, 9).generate().getRecords();
+
+        ValidationResult expected = chainService.validateStatement(new Statement(records));
+        ValidationResult actual = chainValidator.validate(records, ValidationMode.FULL);
+        chainService.shutdown();
+
+        assertEquals(expected.getResult(), actual.getResult());
+        assertIdenticalRecords(expected.getErrorRecords(), actual.getErrorRecords());
+    }
+
+    @Test
+    void shouldReportLaterOccurrenceAsDuplicate() {
+        Record first = record(1, 100, 10, 90);
+        Record second = record(1, 200, 10, 190);
+        Record third = record(2, 300, 10, 280);
+
+        ValidationResult validationResult =
+                parallelValidator.validate(Arrays.asList(first, second, third), ValidationMode.FULL);
+
+        assertEquals(Result.DUPLICATE_REFERENCE_INCORRECT_END_BALANCE, validationResult.getResult());
+        assertIdenticalRecords(Arrays.asList(second, third), validationResult.getErrorRecords());
+    }
+
+    @Test
+    void shouldNotIndexReferences_whenSequentialValidationWouldStopEarly(@TempDir final Path directory) throws IOException {
+        try (ReferenceIndex referenceIndex = new ReferenceIndex(directory.resolve("index.dat"), 1024, 60_000)) {
+            ParallelStatementValidator indexedValidator =
+                    new ParallelStatementValidator(pool, referenceIndex, false, ValidationMetrics.noop());
+            List<Record> rejected = Arrays.asList(record(1, 100, 10, 100), record(1, 200, 10, 190));
+            List<Record> corrected = Arrays.asList(record(1, 100, 10, 90), record(2, 200, 10, 190));
+
+            indexedValidator.validate(rejected, ValidationMode.FAILFAST);
+            ValidationResult reuploaded = indexedValidator.validate(corrected, ValidationMode.FULL);
+            ValidationResult uploadedAgain = indexedValidator.validate(corrected, ValidationMode.FULL);
+
+            assertEquals(Result.SUCCESSFUL, reuploaded.getResult());
+            assertEquals(Result.DUPLICATE_REFERENCE, uploadedAgain.getResult());
+        }
+    }
+
+    @Test
+    void shouldReturnSuccessful_whenStatementIsEmpty() {
+        ValidationResult validationResult = parallelValidator.validate(new ArrayList<>(), ValidationMode.FULL);
+
+        assertEquals(Result.SUCCESSFUL, validationResult.getResult());
+        assertTrue(validationResult.getErrorRecords().isEmpty());
+    }
+
+    // Error records must be the very same instances, equal records in other positions do not count
+    private static void assertIdenticalRecords(final List<Record> expected, final List<Record> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int index = 0; index < expected.size(); index++) {
+            assertSame(expected.get(index), actual.get(index));
+        }
+    }
+
+    private static List<Record> randomRecords(final int size, final int referenceRange, final double incorrectRatio) {
+        Random random = new Random(7);
+        List<Record> records = new ArrayList<>(size);
+        for (int index = 0; index < size; index++) {
+            long startBalance = random.nextInt(10_000);
+            long mutation = random.nextInt(1_000);
+            long endBalance = random.nextDouble() < incorrectRatio ? startBalance : startBalance - mutation;
+            records.add(record(random.nextInt(referenceRange), startBalance, mutation, endBalance));
+        }
+        return records;
+    }
+
+    private static Record record(final long reference, final long startBalance, final long mutation, final long endBalance) {
+        return Record.builder()
+                .transactionReference(reference)
+                .accountNumber("NL34RABO0123456789")
+                .startBalance(startBalance)
+                .mutation(mutation)
+                .endBalance(endBalance)
+                .description("Groceries")
+                .build();
+    }
+}
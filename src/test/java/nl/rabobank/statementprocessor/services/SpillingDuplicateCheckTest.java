@@ -0,0 +1,155 @@
+package nl.rabobank.statementprocessor.services;
+
+import nl.rabobank.statementprocessor.benchmarks.StatementGenerator;
+import nl.rabobank.statementprocessor.index.ReferenceIndex;
+import nl.rabobank.statementprocessor.model.ColumnarStatement;
+import nl.rabobank.statementprocessor.model.Record;
+import nl.rabobank.statementprocessor.model.Result;
+import nl.rabobank.statementprocessor.model.Statement;
+import nl.rabobank.statementprocessor.model.ValidationMode;
+import nl.rabobank.statementprocessor.model.ValidationResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Statements whose references exceed a tiny memory budget, so that they are spilled and partitioned more than once
+class SpillingDuplicateCheckTest {
+
+    private static final long MEMORY_BUDGET = 4 * 1024;
+
+    private final ValidationService inMemoryService = new ValidationServiceBuilder().build();
+    private ValidationService spillingService;
+
+    @TempDir
+    Path spillDirectory;
+
+    @AfterEach
+    void tearDown() {
+        inMemoryService.shutdown();
+        if (spillingService != null) {
+            spillingService.shutdown();
+        }
+    }
+
+    @Test
+    void shouldReturnSameResultAsInMemory_whenReferencesAreSpilled() throws IOException {
+        spillingService = spillingService(Optional.empty());
+        Statement statement = new StatementGenerator(20_000, 0.05, 0.02, 7).generate();
+        ValidationResult expected = inMemoryService.validateStatement(statement);
+
+        assertEquals(expected, spillingService.validateStatement(statement));
+        assertEquals(expected, spillingService.validateRecords(statement.getRecords().iterator()));
+        // Columnar error records have no description
+        ColumnarStatement columnarStatement = ColumnarStatement.of(statement);
+        assertEquals(inMemoryService.validateColumnarStatement(columnarStatement),
+                spillingService.validateColumnarStatement(columnarStatement));
+        assertSpillFilesDeleted();
+    }
+
+    @Test
+    void shouldReturnSameResultAsInMemory_whenModeIsSummary() throws IOException {
+        spillingService = spillingService(Optional.empty());
+        Statement statement = new StatementGenerator(20_000, 0.05, 0, 7).generate();
+
+        ValidationResult result = spillingService.validateRecords(statement.getRecords().iterator(), ValidationMode.SUMMARY);
+
+        assertEquals(Result.DUPLICATE_REFERENCE, result.getResult());
+        assertTrue(result.getErrorRecords().isEmpty());
+        assertSpillFilesDeleted();
+    }
+
+    @Test
+    void shouldListDuplicateOnce_whenItAlsoHasIncorrectEndBalance() throws IOException {
+        spillingService = spillingService(Optional.empty());
+        List<Record> records = new ArrayList<>();
+        for (long reference = 1; reference <= 5_000; reference++) {
+            records.add(Record.builder().transactionReference(reference).startBalance(10).mutation(5).endBalance(5).build());
+        }
+        Record duplicate = Record.builder().transactionReference(1).startBalance(10).mutation(5).endBalance(1).build();
+        records.add(duplicate);
+
+        ValidationResult result = spillingService.validateRecords(records.iterator());
+
+        assertEquals(Result.DUPLICATE_REFERENCE_INCORRECT_END_BALANCE, result.getResult());
+        assertEquals(Collections.singletonList(duplicate), result.getErrorRecords());
+        assertSpillFilesDeleted();
+    }
+
+    @Test
+    void shouldReturnSameResultAsInMemory_whenPartitionCannotBeSplit() throws IOException {
+        spillingService = spillingService(Optional.empty());
+        // Enough distinct references to spill, then one reference so often that its partition exceeds the budget
+        List<Record> records = new ArrayList<>();
+        for (int index = 0; index < 10_000; index++) {
+            long reference = index < 5_000 ? index + 1 : 7;
+            records.add(Record.builder().transactionReference(reference).startBalance(index).mutation(5).endBalance(index - 5).build());
+        }
+        ValidationResult expected = inMemoryService.validateStatement(new Statement(records));
+
+        ValidationResult result = spillingService.validateRecords(records.iterator());
+
+        assertEquals(Result.DUPLICATE_REFERENCE, result.getResult());
+        assertEquals(expected, result);
+        assertSpillFilesDeleted();
+    }
+
+    @Test
+    void shouldReportSameRecordsAsInMemory_whenReferenceIndexIsEnabled() throws IOException {
+        Statement statement = new StatementGenerator(10_000, 0.05, 0, 11).generate();
+        ValidationResult expected;
+        try (ReferenceIndex referenceIndex = new ReferenceIndex(spillDirectory.resolve("expected.dat"), 1 << 16, 60_000)) {
+            ValidationService service = new ValidationServiceBuilder().referenceIndex(referenceIndex).build();
+            expected = service.validateStatement(statement);
+            service.shutdown();
+        }
+        try (ReferenceIndex referenceIndex = new ReferenceIndex(spillDirectory.resolve("index.dat"), 1 << 16, 60_000)) {
+            spillingService = spillingService(Optional.of(referenceIndex));
+
+            assertEquals(expected, spillingService.validateRecords(statement.getRecords().iterator()));
+        }
+    }
+
+    @Test
+    void shouldRemoveSpilledReferencesFromIndex_whenValidationStopsEarly() throws IOException {
+        List<Record> rejected = new ArrayList<>();
+        List<Record> corrected = new ArrayList<>();
+        for (long reference = 1; reference <= 5_000; reference++) {
+            rejected.add(Record.builder().transactionReference(reference).startBalance(10).mutation(5).endBalance(5).build());
+            corrected.add(Record.builder().transactionReference(reference).startBalance(10).mutation(5).endBalance(5).build());
+        }
+        // Both violations, so that fail-fast stops before the statement is checked as a whole
+        rejected.add(Record.builder().transactionReference(1).startBalance(10).mutation(5).endBalance(1).build());
+        try (ReferenceIndex referenceIndex = new ReferenceIndex(spillDirectory.resolve("index.dat"), 1 << 16, 60_000)) {
+            spillingService = spillingService(Optional.of(referenceIndex));
+
+            spillingService.validateRecords(rejected.iterator(), ValidationMode.FAILFAST);
+
+            assertEquals(Result.SUCCESSFUL, spillingService.validateRecords(corrected.iterator()).getResult());
+            assertEquals(Result.DUPLICATE_REFERENCE, spillingService.validateRecords(corrected.iterator()).getResult());
+        }
+    }
+
+    private ValidationService spillingService(final Optional<ReferenceIndex> referenceIndex) {
+        return new ValidationServiceBuilder()
+                .referenceIndex(referenceIndex.orElse(null))
+                .spill(MEMORY_BUDGET, spillDirectory)
+                .build();
+    }
+
+    private void assertSpillFilesDeleted() throws IOException {
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            assertEquals(0, files.count());
+        }
+    }
+}
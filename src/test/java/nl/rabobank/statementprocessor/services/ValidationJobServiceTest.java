@@ -0,0 +1,154 @@
+package nl.rabobank.statementprocessor.services;
+
+import nl.rabobank.statementprocessor.model.JobStatus;
+import nl.rabobank.statementprocessor.model.Record;
+import nl.rabobank.statementprocessor.model.Result;
+import nl.rabobank.statementprocessor.model.ValidationJob;
+import nl.rabobank.statementprocessor.model.ValidationResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class ValidationJobServiceTest {
+
+    private static final Instant NOW = Instant.parse("2020-10-01T10:00:00Z");
+    private static final String STATEMENT = "{\"records\":[]}";
+
+    @TempDir
+    Path spoolDirectory;
+
+    private final ValidationService validationService = mock(ValidationService.class);
+    private final Clock clock = mock(Clock.class);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ValidationJobService validationJobService;
+
+    @BeforeEach
+    void setUp() {
+        validationJobService = new ValidationJobService(validationService, 1, 1, Duration.ofMinutes(10), spoolDirectory,
+                clock);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        validationJobService.shutdown();
+    }
+
+    @Test
+    void shouldReturnResult_whenJobHasCompleted() throws Exception {
+        when(clock.instant()).thenReturn(NOW);
+        when(validationService.validateRecords(any(), any())).thenReturn(new ValidationResult(Result.SUCCESSFUL, new ArrayList<>()));
+
+        ValidationJob submitted = validationJobService.submit(body(STATEMENT));
+        ValidationJob finished = awaitFinished(submitted.getId());
+
+        assertEquals(JobStatus.QUEUED, submitted.getStatus());
+        assertEquals(JobStatus.COMPLETED, finished.getStatus());
+        assertEquals(Result.SUCCESSFUL, finished.getValidationResult().getResult());
+    }
+
+    @Test
+    void shouldReturnBadRequest_whenStatementIsMalformed() throws Exception {
+        when(clock.instant()).thenReturn(NOW);
+        when(validationService.validateRecords(any(), any())).thenAnswer(invocation -> {
+            Iterator<Record> records = invocation.getArgument(0);
+            records.forEachRemaining(record -> { });
+            return new ValidationResult(Result.SUCCESSFUL, new ArrayList<>());
+        });
+
+        ValidationJob finished = awaitFinished(validationJobService.submit(body("{\"records\":[{]}")).getId());
+
+        assertEquals(JobStatus.FAILED, finished.getStatus());
+        assertEquals(Result.BAD_REQUEST, finished.getValidationResult().getResult());
+    }
+
+    @Test
+    void shouldReturnFailedJob_whenValidationThrows() throws Exception {
+        when(clock.instant()).thenReturn(NOW);
+        when(validationService.validateRecords(any(), any())).thenThrow(new RuntimeException("Error occurred"));
+
+        ValidationJob finished = awaitFinished(validationJobService.submit(body(STATEMENT)).getId());
+
+        assertEquals(JobStatus.FAILED, finished.getStatus());
+        assertEquals(Result.INTERNAL_SERVER_ERROR, finished.getValidationResult().getResult());
+    }
+
+    @Test
+    void shouldRejectJob_whenQueueIsFull() throws Exception {
+        when(clock.instant()).thenReturn(NOW);
+        when(validationService.validateRecords(any(), any())).thenAnswer(invocation -> {
+            release.await();
+            return new ValidationResult(Result.SUCCESSFUL, new ArrayList<>());
+        });
+
+        validationJobService.submit(body(STATEMENT));
+        validationJobService.submit(body(STATEMENT));
+        InputStream unreadBody = mock(InputStream.class);
+
+        assertThrows(RejectedExecutionException.class, () -> validationJobService.submit(unreadBody));
+        verifyNoInteractions(unreadBody);
+    }
+
+    @Test
+    void shouldRemoveSpoolFile_whenJobHasFinished() throws Exception {
+        when(clock.instant()).thenReturn(NOW);
+        when(validationService.validateRecords(any(), any())).thenReturn(new ValidationResult(Result.SUCCESSFUL, new ArrayList<>()));
+
+        awaitFinished(validationJobService.submit(body(STATEMENT)).getId());
+
+        try (Stream<Path> files = Files.list(spoolDirectory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void shouldRemoveJob_whenRetentionHasPassed() throws Exception {
+        when(clock.instant()).thenReturn(NOW);
+        when(validationService.validateRecords(any(), any())).thenReturn(new ValidationResult(Result.SUCCESSFUL, new ArrayList<>()));
+        String id = awaitFinished(validationJobService.submit(body(STATEMENT)).getId()).getId();
+
+        when(clock.instant()).thenReturn(NOW.plus(Duration.ofMinutes(10)));
+        assertTrue(validationJobService.getJob(id).isPresent());
+
+        when(clock.instant()).thenReturn(NOW.plus(Duration.ofMinutes(11)));
+        assertFalse(validationJobService.getJob(id).isPresent());
+    }
+
+    private static InputStream body(final String statement) {
+        return new ByteArrayInputStream(statement.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private ValidationJob awaitFinished(final String id) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            ValidationJob job = validationJobService.getJob(id).orElseThrow(AssertionError::new);
+            if (job.getFinishedAt() != null) {
+                return job;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Job did not finish in time");
+    }
+}
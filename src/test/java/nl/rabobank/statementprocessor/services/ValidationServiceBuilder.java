@@ -0,0 +1,64 @@
+package nl.rabobank.statementprocessor.services;
+
+import nl.rabobank.statementprocessor.index.ReferenceIndex;
+import nl.rabobank.statementprocessor.metrics.ValidationMetrics;
+import nl.rabobank.statementprocessor.rules.ValidationRule;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Class that builds a ValidationService outside a Spring context, through its injected constructor
+ * Without settings the service validates sequentially with the defaults of application.properties
+ */
+public final class ValidationServiceBuilder {
+
+    private int parallelThreshold = Integer.MAX_VALUE;
+    private int parallelism = 1;
+    private boolean checkBalanceChains;
+    private long referenceMemoryBudget;
+    private Path spillDirectory;
+    private ReferenceIndex referenceIndex;
+    private ValidationMetrics metrics = ValidationMetrics.noop();
+    private final StaticListableBeanFactory customRules = new StaticListableBeanFactory();
+
+    public ValidationServiceBuilder parallel(final int threshold, final int parallelism) {
+        this.parallelThreshold = threshold;
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public ValidationServiceBuilder balanceChains() {
+        this.checkBalanceChains = true;
+        return this;
+    }
+
+    public ValidationServiceBuilder spill(final long referenceMemoryBudget, final Path spillDirectory) {
+        this.referenceMemoryBudget = referenceMemoryBudget;
+        this.spillDirectory = spillDirectory;
+        return this;
+    }
+
+    public ValidationServiceBuilder referenceIndex(final ReferenceIndex referenceIndex) {
+        this.referenceIndex = referenceIndex;
+        return this;
+    }
+
+    public ValidationServiceBuilder metrics(final ValidationMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    // Rules are checked in the order in which they are added
+    public ValidationServiceBuilder customRule(final ValidationRule rule) {
+        customRules.addBean("customRule" + customRules.getBeanDefinitionCount(), rule);
+        return this;
+    }
+
+    public ValidationService build() {
+        return new ValidationService(parallelThreshold, parallelism, checkBalanceChains,
+                Long.toString(referenceMemoryBudget), spillDirectory == null ? "" : spillDirectory.toString(),
+                Optional.ofNullable(referenceIndex), metrics, customRules.getBeanProvider(ValidationRule.class));
+    }
+}
@@ -1,22 +1,40 @@
 package nl.rabobank.statementprocessor.services;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.rabobank.statementprocessor.benchmarks.StatementGenerator;
+import nl.rabobank.statementprocessor.index.ReferenceIndex;
+import nl.rabobank.statementprocessor.metrics.ValidationMetrics;
+import nl.rabobank.statementprocessor.model.ColumnarStatement;
 import nl.rabobank.statementprocessor.model.Record;
 import nl.rabobank.statementprocessor.model.Result;
 import nl.rabobank.statementprocessor.model.Statement;
+import nl.rabobank.statementprocessor.model.ValidationMode;
 import nl.rabobank.statementprocessor.model.ValidationResult;
+import nl.rabobank.statementprocessor.rules.RecordRule;
+import nl.rabobank.statementprocessor.rules.Violation;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @ExtendWith(SpringExtension.class)
-@ContextConfiguration(classes = { ValidationService.class })
+@ContextConfiguration(classes = { ValidationService.class, ValidationMetrics.class, SimpleMeterRegistry.class })
 class ValidationServiceTest {
 
     private static final Record RECORD_CORRECT_123 = Record.builder()
@@ -201,4 +219,326 @@ class ValidationServiceTest {
         assertEquals(1, errorRecords.size());
         assertTrue(errorRecords.contains(RECORD_DUPLICATE_AND_INCORRECT_ENDBALANCE_123));
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldReturnSameResult_whenRecordsAreValidatedIncrementally() {
+        List<Record> records = Arrays.asList(RECORD_INCORRECT_ENDBALANCE_111, RECORD_CORRECT_111, RECORD_CORRECT_123);
+        ValidationResult validationResult = validationService.validateRecords(records.iterator());
+
+        assertEquals(Result.DUPLICATE_REFERENCE_INCORRECT_END_BALANCE, validationResult.getResult());
+        assertEquals(Arrays.asList(RECORD_INCORRECT_ENDBALANCE_111, RECORD_CORRECT_111), validationResult.getErrorRecords());
+    }
+
+    @Test
+    void shouldReturnSuccessful_whenNoRecordsAreValidatedIncrementally() {
+        ValidationResult validationResult = validationService.validateRecords(Collections.emptyIterator());
+
+        assertEquals(Result.SUCCESSFUL, validationResult.getResult());
+        assertEquals(0, validationResult.getErrorRecords().size());
+    }
+
+    @Test
+    void shouldReturnErrorRecordsInInputOrder_whenSeveralRecordsFail() {
+        List<Record> records = Arrays.asList(RECORD_INCORRECT_ENDBALANCE_111, RECORD_CORRECT_123, RECORD_CORRECT_111,
+                RECORD_DUPLICATE_123, RECORD_SECOND_DUPLICATE_123);
+        Statement statement = new Statement(records);
+        List<Record> errorRecords = validationService.validateStatement(statement).getErrorRecords();
+
+        assertEquals(Arrays.asList(RECORD_INCORRECT_ENDBALANCE_111, RECORD_CORRECT_111, RECORD_DUPLICATE_123,
+                RECORD_SECOND_DUPLICATE_123), errorRecords);
+    }
+
+    @Test
+    void shouldListEqualRecordsSeparately_whenBothFail() {
+        List<Record> records = Arrays.asList(RECORD_INCORRECT_ENDBALANCE_123, RECORD_DUPLICATE_AND_INCORRECT_ENDBALANCE_123);
+        Statement statement = new Statement(records);
+        List<Record> errorRecords = validationService.validateStatement(statement).getErrorRecords();
+
+        assertEquals(2, errorRecords.size());
+    }
+
+    @Test
+    void shouldReturnDuplicateReference_whenReferenceOccurredInEarlierStatement(@TempDir final Path directory) throws IOException {
+        try (ReferenceIndex referenceIndex = new ReferenceIndex(directory.resolve("index.dat"), 1024, 60_000)) {
+            ValidationService indexedService = new ValidationServiceBuilder().referenceIndex(referenceIndex).build();
+            ValidationResult first = indexedService.validateStatement(new Statement(Arrays.asList(RECORD_CORRECT_123)));
+            ValidationResult second = indexedService.validateRecords(Arrays.asList(RECORD_CORRECT_111, RECORD_DUPLICATE_123).iterator());
+            indexedService.shutdown();
+
+            assertEquals(Result.SUCCESSFUL, first.getResult());
+            assertEquals(Result.DUPLICATE_REFERENCE, second.getResult());
+            assertEquals(Arrays.asList(RECORD_DUPLICATE_123), second.getErrorRecords());
+        }
+    }
+
+    @Test
+    void shouldReturnDuplicateReference_whenSameStatementIsValidatedConcurrently(@TempDir final Path directory) throws Exception {
+        Statement statement = new StatementGenerator(20_000, 0, 0, 13).generate();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try (ReferenceIndex referenceIndex = new ReferenceIndex(directory.resolve("index.dat"), 1 << 16, 60_000)) {
+            ValidationService indexedService = new ValidationServiceBuilder().referenceIndex(referenceIndex).build();
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<ValidationResult>> uploads = new ArrayList<>();
+            for (int upload = 0; upload < 2; upload++) {
+                uploads.add(executor.submit(() -> {
+                    start.await();
+                    return indexedService.validateStatement(statement, ValidationMode.SUMMARY);
+                }));
+            }
+            start.countDown();
+            Result first = uploads.get(0).get().getResult();
+            Result second = uploads.get(1).get().getResult();
+            indexedService.shutdown();
+
+            // Whichever upload reserves a reference first, the other one finds it
+            assertTrue(first == Result.DUPLICATE_REFERENCE || second == Result.DUPLICATE_REFERENCE);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void shouldNotIndexReferences_whenStatementIsNotValidatedToTheEnd(@TempDir final Path directory) throws IOException {
+        try (ReferenceIndex referenceIndex = new ReferenceIndex(directory.resolve("index.dat"), 1024, 60_000)) {
+            ValidationService indexedService = new ValidationServiceBuilder().referenceIndex(referenceIndex).build();
+            Iterator<Record> failingRecords = new Iterator<Record>() {
+                private boolean read;
+
+                @Override
+                public boolean hasNext() {
+                    return true;
+                }
+
+                @Override
+                public Record next() {
+                    if (read) {
+                        throw new IllegalStateException("Malformed record");
+                    }
+                    read = true;
+                    return RECORD_CORRECT_123;
+                }
+            };
+            assertThrows(IllegalStateException.class, () -> indexedService.validateRecords(failingRecords));
+            indexedService.validateStatement(
+                    new Statement(Arrays.asList(RECORD_INCORRECT_ENDBALANCE_123, RECORD_DUPLICATE_123)), ValidationMode.FAILFAST);
+            ValidationResult corrected = indexedService.validateStatement(
+                    new Statement(Arrays.asList(RECORD_CORRECT_111, RECORD_DUPLICATE_123)));
+            indexedService.shutdown();
+
+            assertEquals(Result.SUCCESSFUL, corrected.getResult());
+        }
+    }
+
+    @Test
+    void shouldRecordMetrics_whenStatementIsValidated() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ValidationService measuredService = new ValidationServiceBuilder()
+                .metrics(new ValidationMetrics(registry))
+                .build();
+        measuredService.validateStatement(new Statement(Arrays.asList(RECORD_CORRECT_123, RECORD_DUPLICATE_123)));
+        measuredService.validateRecords(Arrays.asList(RECORD_CORRECT_111).iterator());
+        measuredService.shutdown();
+
+        assertEquals(1, registry.get("statement.results").tag("result", "DUPLICATE_REFERENCE").counter().count());
+        assertEquals(1, registry.get("statement.results").tag("result", "SUCCESSFUL").counter().count());
+        assertEquals(3, registry.get("statement.records").summary().totalAmount());
+        assertEquals(1, registry.get("statement.error.records").summary().totalAmount());
+        assertEquals(1, registry.get("statement.stage").tag("stage", "scan").timer().count());
+        assertEquals(1, registry.get("statement.stage").tag("stage", "collect").timer().count());
+        assertEquals(1, registry.get("statement.stage").tag("stage", "stream").timer().count());
+    }
+
+    @Test
+    void shouldReturnSameResult_whenStatementIsColumnar() {
+        Statement statement = new StatementGenerator(10_000, 0.05, 0.05, 5).generate();
+        ValidationResult expected = validationService.validateStatement(statement);
+
+        ValidationResult columnar = validationService.validateColumnarStatement(ColumnarStatement.of(statement));
+
+        assertEquals(expected.getResult(), columnar.getResult());
+        assertEquals(expected.getErrorRecords().size(), columnar.getErrorRecords().size());
+        for (int index = 0; index < expected.getErrorRecords().size(); index++) {
+            Record expectedRecord = expected.getErrorRecords().get(index);
+            assertEquals(expectedRecord.getTransactionReference(), columnar.getErrorRecords().get(index).getTransactionReference());
+            assertEquals(expectedRecord.getAccountNumber(), columnar.getErrorRecords().get(index).getAccountNumber());
+        }
+    }
+
+    @Test
+    void shouldReturnIncorrectEndBalance_whenBalanceChainOfAccountIsBroken() {
+        ValidationService chainService = new ValidationServiceBuilder().balanceChains().build();
+        Record first = chainRecord(1, "NL34RABO0123456789", 1000, 100);
+        Record otherAccount = chainRecord(2, "NL34RABO0111111111", 5000, 10);
+        Record chained = chainRecord(3, "NL34RABO0123456789", 900, 50);
+        Record broken = chainRecord(4, "NL34RABO0123456789", 800, 50);
+        List<Record> records = Arrays.asList(first, otherAccount, chained, broken);
+
+        ValidationResult listResult = chainService.validateStatement(new Statement(records));
+        ValidationResult streamResult = chainService.validateRecords(records.iterator());
+        ValidationResult columnarResult = chainService.validateColumnarStatement(ColumnarStatement.of(new Statement(records)));
+        chainService.shutdown();
+
+        assertEquals(Result.INCORRECT_END_BALANCE, listResult.getResult());
+        assertEquals(Arrays.asList(broken), listResult.getErrorRecords());
+        assertEquals(listResult, streamResult);
+        assertEquals(Result.INCORRECT_END_BALANCE, columnarResult.getResult());
+        assertEquals(4, columnarResult.getErrorRecords().get(0).getTransactionReference());
+    }
+
+    @Test
+    void shouldReturnSameResultAsRuleEngine_whenOnlyBuiltInRulesAreConfigured() {
+        ValidationService chainService = new ValidationServiceBuilder().balanceChains().build();
+        List<Record> records = new StatementGenerator(10_000, 0.01, 0.01, 17).generate().getRecords();
+
+        // The list is validated by the fused loop, the stream by the rule engine
+        for (ValidationMode mode : ValidationMode.values()) {
+            ValidationResult listResult = chainService.validateStatement(new Statement(records), mode);
+            ValidationResult streamResult = chainService.validateRecords(records.iterator(), mode);
+
+            assertEquals(streamResult, listResult, mode.name());
+        }
+        chainService.shutdown();
+    }
+
+    @Test
+    void shouldIgnoreBalanceChains_whenRuleIsDisabled() {
+        List<Record> records = Arrays.asList(chainRecord(1, "NL34RABO0123456789", 1000, 100),
+                chainRecord(2, "NL34RABO0123456789", 500, 50));
+
+        assertEquals(Result.SUCCESSFUL, validationService.validateStatement(new Statement(records)).getResult());
+    }
+
+    private static Record chainRecord(final long reference, final String accountNumber, final long startBalance,
+                                      final long mutation) {
+        return Record.builder()
+                .transactionReference(reference)
+                .accountNumber(accountNumber)
+                .startBalance(startBalance)
+                .mutation(mutation)
+                .endBalance(startBalance - mutation)
+                .build();
+    }
+
+    @Test
+    void shouldReportViolationsOfCustomRule_inSamePass() {
+        RecordRule noEmptyAccountRule = new RecordRule() {
+            @Override
+            public Violation getViolation() {
+                return Violation.INCORRECT_END_BALANCE;
+            }
+
+            @Override
+            public int getCost() {
+                return 2;
+            }
+
+            @Override
+            public boolean test(final Record record) {
+                return record.getAccountNumber() == null;
+            }
+        };
+        ValidationService ruleService = new ValidationServiceBuilder().customRule(noEmptyAccountRule).build();
+        Record withoutAccount = chainRecord(5, null, 100, 10);
+        List<Record> records = Arrays.asList(RECORD_CORRECT_123, withoutAccount, RECORD_DUPLICATE_123);
+
+        ValidationResult listResult = ruleService.validateStatement(new Statement(records));
+        ValidationResult streamResult = ruleService.validateRecords(records.iterator());
+        ruleService.shutdown();
+
+        assertEquals(Result.DUPLICATE_REFERENCE_INCORRECT_END_BALANCE, listResult.getResult());
+        assertEquals(Arrays.asList(withoutAccount, RECORD_DUPLICATE_123), listResult.getErrorRecords());
+        assertEquals(listResult, streamResult);
+    }
+
+    @Test
+    void shouldReturnResultWithoutErrorRecords_whenModeIsSummary() {
+        List<Record> records = Arrays.asList(RECORD_CORRECT_123, RECORD_INCORRECT_ENDBALANCE_111, RECORD_DUPLICATE_123);
+
+        ValidationResult listResult = validationService.validateStatement(new Statement(records), ValidationMode.SUMMARY);
+        ValidationResult streamResult = validationService.validateRecords(records.iterator(), ValidationMode.SUMMARY);
+
+        assertEquals(Result.DUPLICATE_REFERENCE_INCORRECT_END_BALANCE, listResult.getResult());
+        assertTrue(listResult.getErrorRecords().isEmpty());
+        assertEquals(listResult, streamResult);
+    }
+
+    @Test
+    void shouldStopReading_whenResultIsDecidedInSummaryMode() {
+        Iterator<Record> records = Arrays.asList(RECORD_INCORRECT_ENDBALANCE_123, RECORD_SECOND_DUPLICATE_123,
+                RECORD_CORRECT_111, RECORD_INCORRECT_ENDBALANCE_111).iterator();
+
+        ValidationResult validationResult = validationService.validateRecords(records, ValidationMode.SUMMARY);
+
+        assertEquals(Result.DUPLICATE_REFERENCE_INCORRECT_END_BALANCE, validationResult.getResult());
+        assertSame(RECORD_CORRECT_111, records.next());
+    }
+
+    @Test
+    void shouldReturnSameResultAsFullValidation_whenModeIsSummary() {
+        Statement statement = new StatementGenerator(10_000, 0.0001, 0, 11).generate();
+
+        ValidationResult full = validationService.validateStatement(statement);
+        ValidationResult summary = validationService.validateStatement(statement, ValidationMode.SUMMARY);
+
+        assertEquals(Result.DUPLICATE_REFERENCE, full.getResult());
+        assertEquals(full.getResult(), summary.getResult());
+        assertTrue(summary.getErrorRecords().isEmpty());
+    }
+
+    @Test
+    void shouldReturnFirstErrorRecordOnly_whenModeIsFailFast() {
+        List<Record> records = Arrays.asList(RECORD_CORRECT_123, RECORD_DUPLICATE_123, RECORD_INCORRECT_ENDBALANCE_111,
+                RECORD_SECOND_DUPLICATE_123);
+        Iterator<Record> recordIterator = records.iterator();
+
+        ValidationResult listResult = validationService.validateStatement(new Statement(records), ValidationMode.FAILFAST);
+        ValidationResult streamResult = validationService.validateRecords(recordIterator, ValidationMode.FAILFAST);
+
+        // The Result covers the incorrect end balance after the first error record too
+        assertEquals(Result.DUPLICATE_REFERENCE_INCORRECT_END_BALANCE, listResult.getResult());
+        assertEquals(Arrays.asList(RECORD_DUPLICATE_123), listResult.getErrorRecords());
+        assertEquals(listResult, streamResult);
+        assertSame(RECORD_SECOND_DUPLICATE_123, recordIterator.next());
+    }
+
+    @Test
+    void shouldReturnSameResultAsFullValidation_whenModeIsFailFast() {
+        Statement statement = new StatementGenerator(10_000, 0, 0.0001, 11).generate();
+
+        ValidationResult full = validationService.validateStatement(statement);
+        ValidationResult failFast = validationService.validateStatement(statement, ValidationMode.FAILFAST);
+        ValidationResult streamed = validationService.validateRecords(statement.getRecords().iterator(), ValidationMode.FAILFAST);
+
+        assertEquals(full.getResult(), failFast.getResult());
+        assertEquals(full.getErrorRecords().subList(0, 1), failFast.getErrorRecords());
+        assertEquals(failFast, streamed);
+    }
+
+    @Test
+    void shouldReturnSuccessful_whenStatementIsCorrectInFailFastMode() {
+        List<Record> records = Arrays.asList(RECORD_CORRECT_123, RECORD_CORRECT_111);
+
+        ValidationResult validationResult = validationService.validateStatement(new Statement(records), ValidationMode.FAILFAST);
+
+        assertEquals(Result.SUCCESSFUL, validationResult.getResult());
+        assertTrue(validationResult.getErrorRecords().isEmpty());
+    }
+
+    @Test
+    void shouldReturnSameResultAsListValidation_whenColumnarStatementIsValidatedInEveryMode() {
+        Statement statement = new StatementGenerator(10_000, 0.01, 0.01, 13).generate();
+        ColumnarStatement columnarStatement = ColumnarStatement.of(statement);
+
+        for (ValidationMode mode : ValidationMode.values()) {
+            ValidationResult expected = validationService.validateStatement(statement, mode);
+            ValidationResult columnar = validationService.validateColumnarStatement(columnarStatement, mode);
+
+            assertEquals(expected.getResult(), columnar.getResult(), mode.name());
+            assertEquals(expected.getErrorRecords().size(), columnar.getErrorRecords().size(), mode.name());
+            for (int index = 0; index < expected.getErrorRecords().size(); index++) {
+                assertEquals(expected.getErrorRecords().get(index).getTransactionReference(),
+                        columnar.getErrorRecords().get(index).getTransactionReference());
+            }
+        }
+    }
+}
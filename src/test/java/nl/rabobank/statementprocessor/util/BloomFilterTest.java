@@ -0,0 +1,49 @@
+package nl.rabobank.statementprocessor.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    void shouldReturnFalse_whenValueIsAddedTwice() {
+        BloomFilter filter = new BloomFilter(1024);
+
+        assertTrue(filter.add(123456789));
+        assertFalse(filter.add(123456789));
+        assertTrue(filter.add(0));
+        assertFalse(filter.add(0));
+        assertTrue(filter.mightContain(123456789));
+    }
+
+    @Test
+    void shouldNeverMissAddedValues_andRarelyReportOthers() {
+        BloomFilter filter = new BloomFilter(128 * 1024);
+        Random random = new Random(42);
+        long[] values = random.longs(65_536).toArray();
+        for (long value : values) {
+            filter.add(value);
+        }
+
+        for (long value : values) {
+            assertTrue(filter.mightContain(value));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(random.nextLong())) {
+                falsePositives++;
+            }
+        }
+        // 16 bits per value
+        assertTrue(falsePositives < 1_000, "False positives: " + falsePositives);
+    }
+
+    @Test
+    void shouldRoundSizeDownToPowerOfTwo() {
+        assertEquals(1024, new BloomFilter(1500).sizeInBytes());
+        assertEquals(8, new BloomFilter(0).sizeInBytes());
+    }
+}
@@ -0,0 +1,35 @@
+package nl.rabobank.statementprocessor.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ByteBufferInputStreamTest {
+
+    @Test
+    void shouldReadRemainingBytes_withoutMovingBuffer() throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap("skip,statement".getBytes(StandardCharsets.UTF_8));
+        buffer.position(5);
+
+        ByteBufferInputStream input = new ByteBufferInputStream(buffer);
+
+        assertEquals(9, input.available());
+        assertEquals("statement", StreamUtils.copyToString(input, StandardCharsets.UTF_8));
+        assertEquals(-1, input.read());
+        assertEquals(5, buffer.position());
+    }
+
+    @Test
+    void shouldReturnUnsignedBytes_whenReadOneByOne() {
+        ByteBufferInputStream input = new ByteBufferInputStream(ByteBuffer.wrap(new byte[] { (byte) 0xFF, 1 }));
+
+        assertEquals(0xFF, input.read());
+        assertEquals(1, input.skip(10));
+        assertEquals(-1, input.read(new byte[4], 0, 4));
+    }
+}
@@ -0,0 +1,75 @@
+package nl.rabobank.statementprocessor.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongHashSetTest {
+
+    @Test
+    void shouldReturnFalse_whenValueIsAddedTwice() {
+        LongHashSet set = new LongHashSet();
+
+        assertTrue(set.add(123456789));
+        assertFalse(set.add(123456789));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    void shouldTrackZeroAndNegativeValues() {
+        LongHashSet set = new LongHashSet();
+
+        assertTrue(set.add(0));
+        assertTrue(set.add(-1));
+        assertTrue(set.add(Long.MIN_VALUE));
+        assertFalse(set.add(0));
+        assertTrue(set.contains(0));
+        assertTrue(set.contains(Long.MIN_VALUE));
+        assertFalse(set.contains(1));
+        assertEquals(3, set.size());
+    }
+
+    @Test
+    void shouldBehaveLikeHashSet_whenTableGrows() {
+        LongHashSet set = new LongHashSet();
+        Set<Long> expected = new HashSet<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100_000; i++) {
+            long value = random.nextInt(50_000);
+            assertEquals(expected.add(value), set.add(value));
+        }
+        assertEquals(expected.size(), set.size());
+        for (long value = 0; value < 50_000; value++) {
+            assertEquals(expected.contains(value), set.contains(value));
+        }
+    }
+
+    @Test
+    void shouldNotGrow_whenPreSizedForExpectedValues() {
+        LongHashSet set = new LongHashSet(1000);
+        int capacity = set.capacity();
+
+        for (long value = 1; value <= 1000; value++) {
+            set.add(value);
+        }
+        assertEquals(capacity, set.capacity());
+    }
+
+    @Test
+    void shouldBeEmpty_whenCleared() {
+        LongHashSet set = new LongHashSet();
+        set.add(0);
+        set.add(42);
+        set.clear();
+
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(0));
+        assertFalse(set.contains(42));
+        assertTrue(set.add(42));
+    }
+}
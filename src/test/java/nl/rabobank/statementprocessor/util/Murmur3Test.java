@@ -0,0 +1,39 @@
+package nl.rabobank.statementprocessor.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Murmur3Test {
+
+    @Test
+    void shouldMatchReferenceImplementation_whenTextIsHashed() {
+        byte[] text = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.UTF_8);
+
+        assertArrayEquals(new long[] { 0xE34BBC7BBC071B6CL, 0x7A433CA9C49A9347L }, Murmur3.hash128(text, 0));
+        assertArrayEquals(new long[] { 0xCBD8A7B341BD9B02L, 0x5B1E906A48AE1D19L },
+                Murmur3.hash128("hello".getBytes(StandardCharsets.UTF_8), 0));
+        assertArrayEquals(new long[] { 0, 0 }, Murmur3.hash128(new byte[0], 0));
+    }
+
+    @Test
+    void shouldHashOnlyTheRange_whenOffsetAndLengthAreGiven() {
+        byte[] data = "xxThe quick brown fox jumps over the lazy dogxx".getBytes(StandardCharsets.UTF_8);
+        byte[] text = Arrays.copyOfRange(data, 2, data.length - 2);
+
+        assertArrayEquals(Murmur3.hash128(text, 7), Murmur3.hash128(data, 2, text.length, 7));
+    }
+
+    @Test
+    void shouldReturnDifferentHashes_whenSeedOrLastByteDiffers() {
+        byte[] data = new byte[33];
+        long[] hash = Murmur3.hash128(data, 0);
+        data[32] = 1;
+
+        assertFalse(Arrays.equals(hash, Murmur3.hash128(data, 0)));
+        assertFalse(Arrays.equals(Murmur3.hash128(data, 0), Murmur3.hash128(data, 1)));
+    }
+}
@@ -0,0 +1,56 @@
+package nl.rabobank.statementprocessor.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeededHashTest {
+
+    // "Aa" and "BB" have the same String.hashCode, so do all strings of as many of those blocks
+    @Test
+    void shouldSpreadKeys_whenTheirStringHashCodesCollide() {
+        Set<Integer> stringHashCodes = new HashSet<>();
+        Set<Integer> stringHashes = new HashSet<>();
+        Set<Integer> byteHashes = new HashSet<>();
+
+        for (int blocks = 0; blocks < 1 << 12; blocks++) {
+            StringBuilder key = new StringBuilder("NL");
+            for (int bit = 0; bit < 12; bit++) {
+                key.append((blocks & (1 << bit)) == 0 ? "Aa" : "BB");
+            }
+            byte[] bytes = key.toString().getBytes(StandardCharsets.UTF_8);
+            stringHashCodes.add(key.toString().hashCode());
+            stringHashes.add(SeededHash.hash(key.toString()) & 0xFFFF);
+            byteHashes.add(SeededHash.hash(bytes, 0, bytes.length) & 0xFFFF);
+        }
+
+        assertEquals(1, stringHashCodes.size());
+        // 4096 random slots of 65536 leave about 4000 distinct ones
+        assertTrue(stringHashes.size() > 3500, "Distinct slots: " + stringHashes.size());
+        assertTrue(byteHashes.size() > 3500, "Distinct slots: " + byteHashes.size());
+    }
+
+    // Values whose product with the Fibonacci multiplier has equal halves all folded to 0 before there was a seed
+    @Test
+    void shouldSpreadValues_whenTheirUnseededHashesCollide() {
+        long multiplier = 0x9E3779B97F4A7C15L;
+        long inverse = multiplier;
+        for (int step = 0; step < 5; step++) {
+            inverse *= 2 - multiplier * inverse;
+        }
+        Set<Integer> hashes = new HashSet<>();
+
+        for (long half = 1; half <= 1 << 12; half++) {
+            long value = ((half << 32) | half) * inverse;
+            long unseeded = value * multiplier;
+            assertEquals(0, (int) (unseeded ^ (unseeded >>> 32)));
+            hashes.add(SeededHash.hash(value) & 0xFFFF);
+        }
+
+        assertTrue(hashes.size() > 3500, "Distinct slots: " + hashes.size());
+    }
+}
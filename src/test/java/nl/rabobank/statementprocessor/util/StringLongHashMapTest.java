@@ -0,0 +1,60 @@
+package nl.rabobank.statementprocessor.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StringLongHashMapTest {
+
+    @Test
+    void shouldReturnPreviousValue_whenKeyIsPutAgain() {
+        StringLongHashMap map = new StringLongHashMap();
+
+        assertEquals(-1, map.put("NL34RABO0123456789", 1200, -1));
+        assertEquals(1200, map.put("NL34RABO0123456789", 1100, -1));
+        assertEquals(1100, map.get("NL34RABO0123456789", -1));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void shouldReturnAbsentValue_whenKeyIsMissing() {
+        StringLongHashMap map = new StringLongHashMap();
+        map.put("NL34RABO0123456789", 0, 7);
+
+        assertEquals(7, map.get("NL34RABO0111111111", 7));
+        assertFalse(map.containsKey("NL34RABO0111111111"));
+        assertTrue(map.containsKey("NL34RABO0123456789"));
+    }
+
+    @Test
+    void shouldBehaveLikeHashMap_whenItGrows() {
+        StringLongHashMap map = new StringLongHashMap();
+        Map<String, Long> expected = new HashMap<>();
+        Random random = new Random(3);
+
+        for (int index = 0; index < 50_000; index++) {
+            String key = "NL34RABO0" + random.nextInt(20_000);
+            long value = random.nextLong();
+            Long previous = expected.put(key, value);
+            assertEquals(previous == null ? Long.MIN_VALUE : previous, map.put(key, value, Long.MIN_VALUE));
+        }
+
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, value) -> assertEquals((long) value, map.get(key, 0)));
+    }
+
+    @Test
+    void shouldBeEmpty_whenCleared() {
+        StringLongHashMap map = new StringLongHashMap();
+        map.put("NL34RABO0123456789", 1200, 0);
+
+        map.clear();
+
+        assertTrue(map.isEmpty());
+        assertFalse(map.containsKey("NL34RABO0123456789"));
+    }
+}